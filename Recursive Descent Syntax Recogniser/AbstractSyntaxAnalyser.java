@@ -1,50 +1,261 @@
-
-/**
- *
- * (Abstract) Syntax analyser for exercise course 312.
- * 
- * This class has been provided to students
- *
- * @Author: Roger Garside, John Mariani, John Vidler, Paul Rayson
- *
- *
- **/
-
-import java.io.* ;
-
-public abstract class AbstractSyntaxAnalyser
-{
-	/** The lexical analyser to process input using. */
-	LexicalAnalyser lex ;
-	/** A cache of the token to be processed next. */
-	Token nextToken ;
-	/** A code generator, descendant of AbstractGenerate. */
-	Generate myGenerate = null;
-
-	/** Begin processing the first (top level) token.*/
-	public abstract void _statementPart_() throws IOException, CompilationException;
-
-	/** Accept a token based on context.  Requires implementation. */
-	public abstract void acceptTerminal(int symbol) throws IOException, CompilationException;
-
-	/** Parses the given PrintStream with this instance's LexicalAnalyser.
-		
-	  @param ps The PrintStream object to read tokens from.
-	  @throws IOException in the event that the PrintStream object can no longer read.
-	*/
-	public void parse( PrintStream ps ) throws IOException
-	{
-		myGenerate = new Generate();
-		try {
-			nextToken = lex.getNextToken() ;
-			_statementPart_() ;
-			acceptTerminal(Token.eofSymbol) ;
-			myGenerate.reportSuccess() ;
-		}
-		catch( CompilationException ex )
-		{
-			ps.println( "Compilation Exception" );
-			ps.println( ex.toTraceString() );
-		}
-	} // end of method parse
-} // end of class AbstractSyntaxAnalyser
+
+/**
+ *
+ * (Abstract) Syntax analyser for exercise course 312.
+ * 
+ * This class has been provided to students
+ *
+ * @Author: Roger Garside, John Mariani, John Vidler, Paul Rayson
+ *
+ *
+ **/
+
+import java.io.* ;
+import java.util.* ;
+
+public abstract class AbstractSyntaxAnalyser
+{
+	/** The lexical analyser to process input using. */
+	LexicalAnalyser lex ;
+	/** A cache of the token to be processed next. */
+	Token nextToken ;
+	/** A code generator, descendant of AbstractGenerate. */
+	Generate myGenerate = null;
+
+	/** Should the parser resynchronise and carry on after an error? */
+	boolean recoverErrors = false ;
+	/** The most errors to collect for one file before giving up. */
+	int maxErrors = 25 ;
+	/** The errors collected so far for this file. */
+	List<CompilationException> errors = new ArrayList<CompilationException>() ;
+	/** Has the limit or a time-out stopped errors being collected?  What unwinds after that is the last one again. */
+	boolean stopped = false ;
+
+	/** Have resource limits been set with setLimits? */
+	boolean hardened = false ;
+	/** The deepest nesting of statements and brackets allowed, or zero for no limit. */
+	int maxDepth = 0 ;
+	/** The current nesting of statements and brackets. */
+	int depth = 0 ;
+
+	/** Polled to see whether the parse should be abandoned, or null. */
+	CancellationToken cancel = null ;
+	/** Was the last parse abandoned through the cancellation token? */
+	boolean timedOut = false ;
+
+	/** Should semantic checks be made while parsing? */
+	boolean checkSemantics = false ;
+	/** Makes the semantic checks; kept between files so its tables are reused. */
+	SemanticChecker semantics = null ;
+
+	/** Begin processing the first (top level) token.*/
+	public abstract void _statementPart_() throws IOException, CompilationException;
+
+	/** Accept a token based on context.  Requires implementation. */
+	public abstract void acceptTerminal(int symbol) throws IOException, CompilationException;
+
+	/** Switches on panic-mode error recovery for this analyser.
+
+	  @param limit The most errors to collect before abandoning the file.
+	*/
+	public void setErrorRecovery( int limit )
+	{
+		recoverErrors = true ;
+		maxErrors = Math.max( 1, limit ) ;
+	} // end of method setErrorRecovery
+
+	/** Puts limits on how much work a single input can cause, so that a bad file
+	  produces a diagnostic instead of hanging or crashing the run.  Zero means no limit.
+
+	  @param maxTokenLength The longest identifier, number or string allowed.
+	  @param nesting The deepest nesting of statements and brackets allowed.
+	  @param maxTokens The most tokens to read from the file.
+	*/
+	public void setLimits( int maxTokenLength, int nesting, int maxTokens )
+	{
+		hardened = true ;
+		maxDepth = nesting ;
+		lex.setLimits( maxTokenLength, maxTokens ) ;
+	} // end of method setLimits
+
+	/** Uses the given code generator for events instead of the default Generate.
+
+	  @param g The generator to send terminals, nonterminals and errors to.
+	*/
+	public void setGenerate( Generate g )
+	{
+		myGenerate = g ;
+	} // end of method setGenerate
+
+	/** Hands the analyser a cancellation token.  The lexical analyser polls it every
+	  so often and the parse stops with a time-out instead of a result once it fires.
+
+	  @param c The token to poll, or null to always parse to the end.
+	*/
+	public void setCancellation( CancellationToken c )
+	{
+		cancel = c ;
+		lex.setCancellation( c ) ;
+	} // end of method setCancellation
+
+	/** Switches on the semantic checks made alongside the parse: reads of variables
+	  before they are assigned, strings used in arithmetic and calls to unknown procedures.
+
+	  @param procedures The procedures that calls may name.
+	*/
+	public void setSemanticChecks( Collection<String> procedures )
+	{
+		checkSemantics = true ;
+		if( semantics == null )
+			semantics = new SemanticChecker() ;
+		semantics.setProcedures( procedures ) ;
+	} // end of method setSemanticChecks
+
+	/** @return the number of problems found by the semantic checks in the last parse. */
+	public int semanticErrorCount()
+	{
+		return checkSemantics ? semantics.problems().size() : 0 ;
+	} // end of method semanticErrorCount
+
+	/** @return the name of the input, for messages.  Subclasses that know it override this. */
+	String sourceName()
+	{
+		return "" ;
+	} // end of method sourceName
+
+	/** @return true if the last parse was abandoned through the cancellation token. */
+	public boolean timedOut()
+	{
+		return timedOut ;
+	} // end of method timedOut
+
+	/** @return the number of errors reported by the last parse. */
+	public int errorCount()
+	{
+		return errors.size() ;
+	} // end of method errorCount
+
+	/** @return the number of tokens read so far. */
+	public int tokensRead()
+	{
+		return lex.getTokenCount() ;
+	} // end of method tokensRead
+
+	/** Puts the options and the state of the last parse back as they are in a new
+	  analyser, keeping the code generator for reuse.  Subclasses point the lexical
+	  analyser at the next input. */
+	void reset()
+	{
+		nextToken = null ;
+		recoverErrors = false ;
+		maxErrors = 25 ;
+		errors.clear() ;
+		stopped = false ;
+		hardened = false ;
+		maxDepth = 0 ;
+		depth = 0 ;
+		cancel = null ;
+		timedOut = false ;
+		checkSemantics = false ;
+	} // end of method reset
+
+	/** Records an error if recovery is enabled and the limit has not been reached.
+
+	  @param ex The error to record.
+	  @return true if the caller should resynchronise and carry on parsing.
+	*/
+	boolean recordError( CompilationException ex )
+	{
+		if( !recoverErrors || stopped )
+			return false ;
+		// a cancelled lexer ends the file early, and the error that makes is not the program's
+		if( lex.wasCancelled() )
+		{
+			timedOut = true ;
+			stopped = true ;
+			return false ;
+		}
+		errors.add( ex ) ;
+		// this is a cheap point to give up, once per error rather than per token
+		if( cancel != null && cancel.isCancelled() )
+			timedOut = true ;
+		stopped = timedOut || errors.size() >= maxErrors ;
+		return !stopped ;
+	} // end of method recordError
+
+	/** Parses the given PrintStream with this instance's LexicalAnalyser.
+		
+	  @param ps The PrintStream object to read tokens from.
+	  @throws IOException in the event that the PrintStream object can no longer read.
+	*/
+	public void parse( PrintStream ps ) throws IOException
+	{
+		if( myGenerate == null )
+			myGenerate = new Generate();
+		errors.clear() ;
+		stopped = false ;
+		depth = 0 ;
+		timedOut = false ;
+		if( checkSemantics )
+			semantics.reset( sourceName(), lex.getLineIndex() ) ;
+		Generate generate = myGenerate ;
+		ParseProfiler.Recorder recorder = null ;
+		if( ParseProfiler.isEnabled() )
+		{
+			recorder = ParseProfiler.start() ;
+			myGenerate = new ParseProfiler.ProfilingGenerate( generate, recorder ) ;
+			lex.setProfile( recorder ) ;
+		}
+		try {
+			nextToken = lex.getNextToken() ;
+			_statementPart_() ;
+			acceptTerminal(Token.eofSymbol) ;
+			if( errors.isEmpty() )
+				myGenerate.reportSuccess() ;
+		}
+		catch( CompilationException ex )
+		{
+			// a time-out is reported on its own rather than as the error it unwinds with
+			if( lex.wasCancelled() )
+				timedOut = true ;
+			// once the limit or a time-out is hit this is just the last recorded error unwinding
+			else if( !stopped )
+				errors.add( ex ) ;
+		}
+		catch( StackOverflowError err )
+		{
+			// long flat lists recurse too, so the depth limit alone cannot rule this out
+			if( !hardened )
+				throw err ;
+			errors.add( new CompilationException( "Error at line " + nextToken.lineNumber + " : program too deeply nested to parse" ) ) ;
+		}
+		finally
+		{
+			if( recorder != null )
+			{
+				recorder.flush() ;
+				lex.setProfile( null ) ;
+				myGenerate = generate ;
+			}
+		}
+
+		for( CompilationException ex : errors )
+		{
+			ps.println( "Compilation Exception" );
+			ps.println( ex.toTraceString() );
+		}
+		if( checkSemantics )
+			for( CompilationException ex : semantics.problems() )
+			{
+				ps.println( "Semantic Error" );
+				ps.println( ex.toTraceString() );
+			}
+		if( recoverErrors && errors.size() >= maxErrors )
+			ps.println( "Too many errors, stopped after " + maxErrors );
+		if( timedOut )
+		{
+			ps.println( "Timed Out" );
+			ps.println( "\tStopped at line " + nextToken.lineNumber + " : " + cancel.getReason() + "\r\n" );
+		}
+	} // end of method parse
+} // end of class AbstractSyntaxAnalyser
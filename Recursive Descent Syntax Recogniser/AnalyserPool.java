@@ -0,0 +1,56 @@
+
+/**
+ *
+ * Keeps one syntax analyser for each thread and points it at each new file,
+ * so a batch or watch run over many small files reuses the lexical
+ * analyser's symbol table and buffers and the code generator, instead of
+ * building them all again for every file.
+ *
+ * The analyser handed out is the calling thread's own, and is pointed at the
+ * next file the next time the thread asks, so a thread must be finished with
+ * one file before it asks for another.
+ *
+ **/
+
+public class AnalyserPool
+{
+	private static final ThreadLocal<SyntaxAnalyser> analysers = new ThreadLocal<SyntaxAnalyser>() ;
+
+	/** Hands out this thread's analyser, ready to parse a file with default options.
+
+	  @param fileName The file to parse.
+	  @return the analyser.
+	*/
+	public static SyntaxAnalyser forFile( String fileName )
+	{
+		SyntaxAnalyser syn = analysers.get() ;
+		if( syn != null )
+		{
+			syn.reset( fileName ) ;
+			return syn ;
+		}
+		syn = new SyntaxAnalyser( fileName ) ;
+		// one whose file could not be opened has no lexical analyser to reuse
+		if( syn.lex != null )
+			analysers.set( syn ) ;
+		return syn ;
+	} // end of method forFile
+
+	/** Hands out this thread's analyser, ready to parse text that is not in a file of its own.
+
+	  @param name The name of the text, for messages.
+	  @param source The text to parse.
+	  @return the analyser.
+	*/
+	public static SyntaxAnalyser forText( String name, java.io.Reader source )
+	{
+		SyntaxAnalyser syn = analysers.get() ;
+		if( syn == null )
+		{
+			syn = new SyntaxAnalyser( name, null ) ;
+			analysers.set( syn ) ;
+		}
+		syn.reset( name, source ) ;
+		return syn ;
+	} // end of method forText
+} // end of class AnalyserPool
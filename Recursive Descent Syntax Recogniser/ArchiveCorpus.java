@@ -0,0 +1,186 @@
+
+/**
+ *
+ * Reads the programs in a zip or jar archive in place, through the zip file
+ * system, instead of extracting them to disk first.  Entries are taken in
+ * order of their paths, with runs of digits compared as numbers so that
+ * program10 comes after program9, skipping directories and META-INF.
+ *
+ * Inflating an entry costs more than recognising it, so a pool of worker
+ * threads reads entries ahead of the caller while it checks the ones before.
+ * Only a few entries per thread are read ahead, so a large archive is never
+ * held in memory all at once.  Each entry is named by the archive's path,
+ * "!/" and its path inside the archive, as in a jar URL.
+ *
+ **/
+
+import java.io.* ;
+import java.nio.file.* ;
+import java.util.* ;
+import java.util.concurrent.* ;
+import java.util.stream.* ;
+
+public class ArchiveCorpus implements Closeable
+{
+	/** How many entries each worker may read ahead of the caller. */
+	private static final int readAhead = 4 ;
+
+	/** A program read from the archive. */
+	public static class Entry
+	{
+		/** The archive's path, "!/" and the entry's path. */
+		public final String name ;
+		public final byte[] text ;
+
+		Entry( String name, byte[] text )
+		{
+			this.name = name ;
+			this.text = text ;
+		} // end of constructor method
+	} // end of class Entry
+
+	private final String archive ;
+	private final FileSystem zip ;
+	private final List<Path> paths ;
+	private final ExecutorService workers ;
+	private final int threads ;
+	/** Entries being read, in order; the first is the next one handed out. */
+	private final ArrayDeque<Future<byte[]>> reading = new ArrayDeque<Future<byte[]>>() ;
+	/** The next entry to hand out, and the next one to start reading. */
+	private int handedOut, started ;
+	private long bytesRead, waitNanos ;
+	private final long opened = System.nanoTime() ;
+
+	/** Opens an archive and lists its programs.
+
+	  @param archive The zip or jar file.
+	  @param threads How many threads read entries.
+	  @throws IOException if the archive cannot be opened or is not a zip file.
+	*/
+	public ArchiveCorpus( String archive, int threads ) throws IOException
+	{
+		this.archive = archive ;
+		this.threads = Math.max( 1, threads ) ;
+		zip = FileSystems.newFileSystem( Paths.get( archive ), (ClassLoader) null ) ;
+		try( Stream<Path> walk = Files.walk( zip.getPath( "/" ) ) )
+		{
+			paths = walk.filter( Files::isRegularFile )
+				.filter( p -> !p.startsWith( "/META-INF" ) )
+				.sorted( ( a, b ) -> naturalCompare( a.toString(), b.toString() ) )
+				.collect( Collectors.toList() ) ;
+		}
+		workers = Executors.newFixedThreadPool( this.threads, r -> {
+			Thread t = new Thread( r, "archive reader" ) ;
+			t.setDaemon( true ) ;
+			return t ;
+		} ) ;
+	} // end of constructor method
+
+	/** Compares two paths as text, except that runs of digits are compared as numbers. */
+	static int naturalCompare( String a, String b )
+	{
+		int i = 0, j = 0 ;
+		while( i < a.length() && j < b.length() )
+		{
+			char x = a.charAt( i ), y = b.charAt( j ) ;
+			if( Character.isDigit( x ) && Character.isDigit( y ) )
+			{
+				int si = i, sj = j ;
+				while( i < a.length() && Character.isDigit( a.charAt( i ) ) )
+					i++ ;
+				while( j < b.length() && Character.isDigit( b.charAt( j ) ) )
+					j++ ;
+				// strip leading zeros, then the longer run is the larger number
+				while( si < i - 1 && a.charAt( si ) == '0' )
+					si++ ;
+				while( sj < j - 1 && b.charAt( sj ) == '0' )
+					sj++ ;
+				if( i - si != j - sj )
+					return ( i - si ) - ( j - sj ) ;
+				int c = a.substring( si, i ).compareTo( b.substring( sj, j ) ) ;
+				if( c != 0 )
+					return c ;
+				continue ;
+			}
+			if( x != y )
+				return x - y ;
+			i++ ;
+			j++ ;
+		}
+		return ( a.length() - i ) - ( b.length() - j ) ;
+	} // end of method naturalCompare
+
+	/** @return the name an entry is reported under. */
+	private String nameOf( Path p )
+	{
+		return archive + "!" + p ;
+	} // end of method nameOf
+
+	/** @return the names of every program in the archive, in the order they are handed out. */
+	public List<String> names()
+	{
+		List<String> names = new ArrayList<String>( paths.size() ) ;
+		for( Path p : paths )
+			names.add( nameOf( p ) ) ;
+		return names ;
+	} // end of method names
+
+	/** @return the next program, or null when there are no more.
+	  @throws IOException if the entry cannot be read. */
+	public Entry next() throws IOException
+	{
+		if( handedOut == paths.size() )
+			return null ;
+		while( started < paths.size() && started - handedOut < threads * readAhead )
+		{
+			final Path p = paths.get( started++ ) ;
+			reading.add( workers.submit( () -> Files.readAllBytes( p ) ) ) ;
+		}
+		Path p = paths.get( handedOut++ ) ;
+		long waited = System.nanoTime() ;
+		try
+		{
+			byte[] text = reading.remove().get() ;
+			bytesRead += text.length ;
+			return new Entry( nameOf( p ), text ) ;
+		}
+		catch( ExecutionException e )
+		{
+			Throwable cause = e.getCause() ;
+			throw cause instanceof IOException ? (IOException) cause : new IOException( "cannot read " + nameOf( p ), cause ) ;
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt() ;
+			throw new InterruptedIOException( "interrupted reading " + nameOf( p ) ) ;
+		}
+		finally
+		{
+			waitNanos += System.nanoTime() - waited ;
+		}
+	} // end of method next
+
+	/** @return what has been read, for the end of a run. */
+	public String statistics()
+	{
+		return "archive " + archive + ": " + handedOut + " of " + paths.size() + " entries, " + bytesRead + " bytes, "
+			+ threads + " threads, waited " + waitNanos / 1000000 + " of " + ( System.nanoTime() - opened ) / 1000000 + " ms" ;
+	} // end of method statistics
+
+	/** Stops the workers and closes the archive. */
+	public void close() throws IOException
+	{
+		for( Future<byte[]> f : reading )
+			f.cancel( true ) ;
+		workers.shutdownNow() ;
+		try
+		{
+			workers.awaitTermination( 10, TimeUnit.SECONDS ) ;
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt() ;
+		}
+		zip.close() ;
+	} // end of method close
+} // end of class ArchiveCorpus
@@ -0,0 +1,483 @@
+
+/**
+ *
+ * An output stream that gzips what is written to it in independent blocks,
+ * off the thread that writes.  Each full block is handed to a small pool of
+ * compressor threads and becomes a gzip member of its own; a writer thread
+ * appends the members to the file in order.  A file of gzip members one
+ * after another is a gzip file, so the output reads back with zcat or
+ * GZIPInputStream like any other.
+ *
+ * Only a few blocks may be waiting to be compressed or written at once, so
+ * a slow disk holds the writing thread up instead of filling the heap, and
+ * the block buffers go round between the writing thread and the compressors
+ * rather than being made afresh.
+ *
+ * Alongside FILE, FILE.idx records where every member starts, in the file
+ * and in the uncompressed text, and the names given to mark.  The text
+ * written after a mark, up to the next, can then be read back by inflating
+ * only the members it lies in:
+ *
+ *   header     magic, block count, mark count, block size, and the total
+ *              compressed and uncompressed lengths
+ *   blocks     for each member, where it starts in the file and in the text
+ *   marks      for each mark, where it is in the text and its name in UTF-8
+ *
+ **/
+
+import java.io.* ;
+import java.nio.charset.StandardCharsets ;
+import java.nio.file.* ;
+import java.util.* ;
+import java.util.concurrent.* ;
+import java.util.zip.* ;
+
+public class BlockGzipOutputStream extends OutputStream
+{
+	/** Marks a block index file, and changes whenever the layout does. */
+	private static final int magic = 0x33313242 ;
+	/** How much text goes into each member, unless a flush cuts it short. */
+	public static final int defaultBlockSize = 256 << 10 ;
+	/** How many blocks each compressor may have waiting. */
+	private static final int queuedPerThread = 2 ;
+
+	/** A gzip member header: deflate, no name or time, unknown operating system. */
+	private static final byte[] memberHeader = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff } ;
+
+	/** A compressor per thread, kept between blocks since making one costs native memory. */
+	private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial( () -> new Deflater( Deflater.DEFAULT_COMPRESSION, true ) ) ;
+
+	private final String path ;
+	private final OutputStream file ;
+	private final int blockSize ;
+	private final ExecutorService compressors ;
+	/** Members being compressed, in file order, for the writer; end ends it. */
+	private final BlockingQueue<Future<byte[]>> compressed ;
+	/** Block buffers the compressors have finished with. */
+	private final BlockingQueue<byte[]> spare ;
+	private final Thread writer ;
+	private final Future<byte[]> end = CompletableFuture.completedFuture( null ) ;
+
+	/** The block being filled, and how much of it is. */
+	private byte[] block ;
+	private int used ;
+	/** How much text has gone into earlier blocks. */
+	private long blockStart ;
+	/** Where each member starts in the text, kept by the writing thread. */
+	private long[] textStarts = new long[64] ;
+	private int blocks ;
+	/** Where each member starts in the file, kept by the writer thread; guarded by this. */
+	private long[] fileStarts = new long[64] ;
+	private int blocksWritten ;
+	private long fileLength ;
+	/* The marks, in the order made. */
+	private final List<String> markNames = new ArrayList<String>() ;
+	private long[] markStarts = new long[64] ;
+	/** The first thing to go wrong on the writer thread, or null. */
+	private volatile IOException failure ;
+	private long waitNanos ;
+	private boolean closed ;
+
+	/** Opens a compressed file with the default block size.
+
+	  @param path The file to write; the index goes beside it with ".idx" added.
+	  @param threads How many threads compress blocks.
+	  @throws IOException if the file cannot be created.
+	*/
+	public BlockGzipOutputStream( String path, int threads ) throws IOException
+	{
+		this( path, threads, defaultBlockSize ) ;
+	} // end of constructor method
+
+	/** Opens a compressed file.
+
+	  @param path The file to write; the index goes beside it with ".idx" added.
+	  @param threads How many threads compress blocks.
+	  @param blockSize How much text to put in each gzip member.
+	  @throws IOException if the file cannot be created.
+	*/
+	public BlockGzipOutputStream( String path, int threads, int blockSize ) throws IOException
+	{
+		this.path = path ;
+		this.blockSize = Math.max( 1024, blockSize ) ;
+		threads = Math.max( 1, threads ) ;
+		file = new FileOutputStream( path ) ;
+		compressed = new ArrayBlockingQueue<Future<byte[]>>( threads * queuedPerThread ) ;
+		spare = new ArrayBlockingQueue<byte[]>( threads * queuedPerThread + threads + 1 ) ;
+		block = new byte[this.blockSize] ;
+		compressors = Executors.newFixedThreadPool( threads, r -> {
+			Thread t = new Thread( r, "block compressor" ) ;
+			t.setDaemon( true ) ;
+			return t ;
+		} ) ;
+		writer = new Thread( this::writeMembers, "block writer" ) ;
+		writer.setDaemon( true ) ;
+		writer.start() ;
+	} // end of constructor method
+
+	public void write( int b ) throws IOException
+	{
+		if( used == block.length )
+			cut() ;
+		block[used++] = (byte) b ;
+	} // end of method write
+
+	public void write( byte[] b, int off, int len ) throws IOException
+	{
+		while( len > 0 )
+		{
+			if( used == block.length )
+				cut() ;
+			int n = Math.min( len, block.length - used ) ;
+			System.arraycopy( b, off, block, used, n ) ;
+			used += n ;
+			off += n ;
+			len -= n ;
+		}
+	} // end of method write
+
+	/** Names the text written from here on, up to the next mark, so that it can be read back on its own.
+
+	  @param name What to call it; a name used twice finds the first.
+	*/
+	public void mark( String name )
+	{
+		if( markNames.size() == markStarts.length )
+			markStarts = Arrays.copyOf( markStarts, markStarts.length * 2 ) ;
+		markStarts[markNames.size()] = blockStart + used ;
+		markNames.add( name ) ;
+	} // end of method mark
+
+	/** Hands the block filled so far to the compressors, waiting if too many are queued already. */
+	private void cut() throws IOException
+	{
+		if( failure != null )
+			throw failure ;
+		if( blocks == textStarts.length )
+			textStarts = Arrays.copyOf( textStarts, blocks * 2 ) ;
+		textStarts[blocks++] = blockStart ;
+		final byte[] full = block ;
+		final int length = used ;
+		long waited = System.nanoTime() ;
+		try
+		{
+			compressed.put( compressors.submit( () -> compress( full, length ) ) ) ;
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt() ;
+			throw new InterruptedIOException( "interrupted writing " + path ) ;
+		}
+		waitNanos += System.nanoTime() - waited ;
+		blockStart += used ;
+		used = 0 ;
+		block = spare.poll() ;
+		if( block == null )
+			block = new byte[blockSize] ;
+	} // end of method cut
+
+	/** @return a block as a gzip member of its own; the block goes back to be filled again. */
+	private byte[] compress( byte[] text, int length )
+	{
+		Deflater deflater = deflaters.get() ;
+		deflater.reset() ;
+		deflater.setInput( text, 0, length ) ;
+		deflater.finish() ;
+		CRC32 crc = new CRC32() ;
+		crc.update( text, 0, length ) ;
+		ByteArrayOutputStream member = new ByteArrayOutputStream( length / 4 + 64 ) ;
+		member.write( memberHeader, 0, memberHeader.length ) ;
+		byte[] buffer = new byte[16384] ;
+		while( !deflater.finished() )
+			member.write( buffer, 0, deflater.deflate( buffer ) ) ;
+		// the deflater has taken all of the text, so the buffer can be filled again
+		spare.offer( text ) ;
+		writeIntLE( member, (int) crc.getValue() ) ;
+		writeIntLE( member, length ) ;
+		return member.toByteArray() ;
+	} // end of method compress
+
+	/** Writes an int low byte first, as gzip wants. */
+	private static void writeIntLE( ByteArrayOutputStream out, int v )
+	{
+		for( int i = 0; i < 32; i += 8 )
+			out.write( v >>> i ) ;
+	} // end of method writeIntLE
+
+	/** Runs on the writer thread: appends members to the file as they are finished, in order. */
+	private void writeMembers()
+	{
+		while( true )
+		{
+			Future<byte[]> next ;
+			try
+			{
+				next = compressed.take() ;
+			}
+			catch( InterruptedException e )
+			{
+				return ;
+			}
+			if( next == end )
+				break ;
+			try
+			{
+				byte[] member = next.get() ;
+				// after a failure keep taking members, so the writing thread is never left waiting on a full queue
+				if( failure != null )
+					continue ;
+				file.write( member ) ;
+				synchronized( this )
+				{
+					if( blocksWritten == fileStarts.length )
+						fileStarts = Arrays.copyOf( fileStarts, blocksWritten * 2 ) ;
+					fileStarts[blocksWritten++] = fileLength ;
+					fileLength += member.length ;
+					notifyAll() ;
+				}
+			}
+			catch( IOException e )
+			{
+				fail( e ) ;
+			}
+			catch( ExecutionException e )
+			{
+				fail( new IOException( "cannot compress a block of " + path, e.getCause() ) ) ;
+			}
+			catch( InterruptedException e )
+			{
+				fail( new InterruptedIOException( "interrupted writing " + path ) ) ;
+			}
+		}
+	} // end of method writeMembers
+
+	private synchronized void fail( IOException e )
+	{
+		if( failure == null )
+			failure = e ;
+		notifyAll() ;
+	} // end of method fail
+
+	/** Compresses and writes everything written so far, as a member of its own, before returning. */
+	public void flush() throws IOException
+	{
+		if( used > 0 )
+			cut() ;
+		long waited = System.nanoTime() ;
+		synchronized( this )
+		{
+			while( failure == null && blocksWritten < blocks )
+				try
+				{
+					wait() ;
+				}
+				catch( InterruptedException e )
+				{
+					Thread.currentThread().interrupt() ;
+					throw new InterruptedIOException( "interrupted writing " + path ) ;
+				}
+		}
+		waitNanos += System.nanoTime() - waited ;
+		if( failure != null )
+			throw failure ;
+	} // end of method flush
+
+	/** Flushes, then writes the index for what is in the file so far, so that the file can
+	  be read by block while it is still open; close writes it again for the rest.
+
+	  @throws IOException if a block or the index cannot be written.
+	*/
+	public void sync() throws IOException
+	{
+		flush() ;
+		writeIndex() ;
+	} // end of method sync
+
+	/** Writes the last block, waits for the writer and writes the index. */
+	public void close() throws IOException
+	{
+		if( closed )
+			return ;
+		closed = true ;
+		// an empty gzip file is not a gzip file, so there is always at least one member
+		if( used > 0 || blocks == 0 )
+			cut() ;
+		try
+		{
+			compressed.put( end ) ;
+			writer.join() ;
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt() ;
+			throw new InterruptedIOException( "interrupted writing " + path ) ;
+		}
+		finally
+		{
+			compressors.shutdown() ;
+			file.close() ;
+		}
+		if( failure != null )
+			throw failure ;
+		writeIndex() ;
+	} // end of method close
+
+	private void writeIndex() throws IOException
+	{
+		Path index = Paths.get( path + ".idx" ) ;
+		Path temp = Files.createTempFile( index.toAbsolutePath().getParent(), index.getFileName().toString(), ".tmp" ) ;
+		try
+		{
+			try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( temp ) ) ) )
+			{
+				out.writeInt( magic ) ;
+				out.writeInt( blocks ) ;
+				out.writeInt( markNames.size() ) ;
+				out.writeInt( blockSize ) ;
+				out.writeLong( fileLength ) ;
+				out.writeLong( blockStart ) ;
+				for( int i = 0; i < blocks; i++ )
+				{
+					out.writeLong( fileStarts[i] ) ;
+					out.writeLong( textStarts[i] ) ;
+				}
+				for( int i = 0; i < markNames.size(); i++ )
+				{
+					byte[] name = markNames.get( i ).getBytes( StandardCharsets.UTF_8 ) ;
+					out.writeLong( markStarts[i] ) ;
+					out.writeInt( name.length ) ;
+					out.write( name ) ;
+				}
+			}
+			Files.move( temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE ) ;
+		}
+		finally
+		{
+			Files.deleteIfExists( temp ) ;
+		}
+	} // end of method writeIndex
+
+	/** @return what was written and how long the writing thread waited, once closed. */
+	public String statistics()
+	{
+		return String.format( "%s: %d bytes in %d blocks, %d compressed (%.1fx), waited %d ms",
+			path, blockStart, blocks, fileLength, fileLength == 0 ? 1.0 : (double) blockStart / fileLength, waitNanos / 1000000 ) ;
+	} // end of method statistics
+
+	/** A block index read back, for finding marked text in a compressed file. */
+	public static class Index
+	{
+		public final long[] fileStarts, textStarts ;
+		public final String[] names ;
+		public final long[] marks ;
+		public final long compressedLength, textLength ;
+
+		/** Reads the index beside a compressed file.
+
+		  @param path The compressed file, without ".idx".
+		  @throws IOException if the index cannot be read or is not a block index.
+		*/
+		public Index( String path ) throws IOException
+		{
+			try( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( path + ".idx" ) ) ) )
+			{
+				if( in.readInt() != magic )
+					throw new IOException( path + ".idx is not a block index" ) ;
+				int blockCount = in.readInt(), markCount = in.readInt() ;
+				in.readInt() ;
+				compressedLength = in.readLong() ;
+				textLength = in.readLong() ;
+				fileStarts = new long[blockCount] ;
+				textStarts = new long[blockCount] ;
+				for( int i = 0; i < blockCount; i++ )
+				{
+					fileStarts[i] = in.readLong() ;
+					textStarts[i] = in.readLong() ;
+				}
+				names = new String[markCount] ;
+				marks = new long[markCount] ;
+				for( int i = 0; i < markCount; i++ )
+				{
+					marks[i] = in.readLong() ;
+					byte[] name = new byte[in.readInt()] ;
+					in.readFully( name ) ;
+					names[i] = new String( name, StandardCharsets.UTF_8 ) ;
+				}
+			}
+		} // end of constructor method
+
+		/** @return the number of the member holding a point in the text. */
+		int blockAt( long position )
+		{
+			int i = Arrays.binarySearch( textStarts, position ) ;
+			return i >= 0 ? i : -i - 2 ;
+		} // end of method blockAt
+	} // end of class Index
+
+	/** Reads back the text written after a mark, inflating only the members it lies in.
+
+	  @param path The compressed file.
+	  @param name The mark.
+	  @return the text up to the next mark or the end, or null if there is no such mark.
+	  @throws IOException if the file or its index cannot be read.
+	*/
+	public static byte[] read( String path, String name ) throws IOException
+	{
+		Index index = new Index( path ) ;
+		int m = Arrays.asList( index.names ).indexOf( name ) ;
+		if( m < 0 )
+			return null ;
+		long from = index.marks[m], to = m + 1 < index.marks.length ? index.marks[m + 1] : index.textLength ;
+		ByteArrayOutputStream text = new ByteArrayOutputStream( (int) ( to - from ) ) ;
+		try( RandomAccessFile in = new RandomAccessFile( path, "r" ) )
+		{
+			for( int b = index.blockAt( from ); b < index.textStarts.length && index.textStarts[b] < to; b++ )
+			{
+				long end = b + 1 < index.fileStarts.length ? index.fileStarts[b + 1] : index.compressedLength ;
+				byte[] member = new byte[(int) ( end - index.fileStarts[b] )] ;
+				in.seek( index.fileStarts[b] ) ;
+				in.readFully( member ) ;
+				byte[] block ;
+				try( GZIPInputStream gz = new GZIPInputStream( new ByteArrayInputStream( member ) ) )
+				{
+					block = gz.readAllBytes() ;
+				}
+				long start = index.textStarts[b] ;
+				int lo = (int) Math.max( 0, from - start ), hi = (int) Math.min( block.length, to - start ) ;
+				text.write( block, lo, hi - lo ) ;
+			}
+		}
+		return text.toByteArray() ;
+	} // end of method read
+
+	/** Lists the marks in a compressed file, or prints the text after one.
+
+	  @param args "FILE" to list, or "FILE NAME" to print.
+	*/
+	public static void main( String[] args ) throws IOException
+	{
+		if( args.length == 1 )
+		{
+			Index index = new Index( args[0] ) ;
+			for( int i = 0; i < index.names.length; i++ )
+				System.out.println( index.marks[i] + "\t" + index.names[i] ) ;
+			System.err.println( String.format( "%d blocks, %d bytes in %d compressed", index.fileStarts.length, index.textLength, index.compressedLength ) ) ;
+		}
+		else if( args.length == 2 )
+		{
+			byte[] text = read( args[0], args[1] ) ;
+			if( text == null )
+			{
+				System.err.println( "no mark " + args[1] + " in " + args[0] ) ;
+				System.exit( 1 ) ;
+			}
+			System.out.write( text ) ;
+			System.out.flush() ;
+		}
+		else
+		{
+			System.err.println( "usage: java BlockGzipOutputStream FILE [NAME]" ) ;
+			System.exit( 1 ) ;
+		}
+	} // end of main method
+} // end of class BlockGzipOutputStream
@@ -0,0 +1,581 @@
+
+/**
+ *
+ * Compiles a program into bytecode for the RegisterMachine as the syntax
+ * analyser recognises it, working from the same events the printing
+ * generator gets, so no tree is built.
+ *
+ * Every instruction is four ints: an opcode and three operands, which are
+ * register numbers or, for jumps, the index of the target instruction.
+ * Variables, constants and temporaries all live in registers.  Each number
+ * or string constant is given a register once, which the machine loads from
+ * the constant pools before it starts, so arithmetic and comparisons never
+ * have to tell a constant from a variable.  Temporaries are freed as soon as
+ * they are used, and a value computed only to be assigned is written
+ * straight to the variable.
+ *
+ * The grammar's expressions and terms are right recursive, but an operator
+ * is applied as soon as its right operand is complete, so "a - b - c" is
+ * worked out as "(a - b) - c", as it is read.  A for loop is laid out as
+ * its condition, then its step, then its body, so that it can be compiled
+ * in the order it is written.
+ *
+ * The only procedures are get and put, which read and write each argument
+ * in turn through the machine's I/O hooks.
+ *
+ **/
+
+import java.io.* ;
+import java.util.* ;
+
+public class BytecodeCompiler extends Generate
+{
+	/* Opcodes. */
+	public static final int HALT = 0, MOVE = 1, ADD = 2, SUB = 3, MUL = 4, DIV = 5,
+		JMP = 6, JEQ = 7, JNE = 8, JLT = 9, JLE = 10, JGT = 11, JGE = 12, GET = 13, PUT = 14 ;
+	private static final String[] opNames = {
+		"halt", "move", "add", "sub", "mul", "div", "jmp", "jeq", "jne", "jlt", "jle", "jgt", "jge", "get", "put"
+	} ;
+
+	/** A compiled program. */
+	public static class Program
+	{
+		/** The instructions, four ints each. */
+		public final int[] code ;
+		/** The source line of each instruction, for runtime errors. */
+		public final int[] lines ;
+		/** The number constant pool, and the register each constant is loaded into. */
+		public final double[] numbers ;
+		public final int[] numberRegisters ;
+		/** The string constant pool, and the register each constant is loaded into. */
+		public final String[] strings ;
+		public final int[] stringRegisters ;
+		/** The name of each register holding a variable, null for the others. */
+		public final String[] variables ;
+
+		Program( int[] code, int[] lines, double[] numbers, int[] numberRegisters,
+			String[] strings, int[] stringRegisters, String[] variables )
+		{
+			this.code = code ;
+			this.lines = lines ;
+			this.numbers = numbers ;
+			this.numberRegisters = numberRegisters ;
+			this.strings = strings ;
+			this.stringRegisters = stringRegisters ;
+			this.variables = variables ;
+		} // end of constructor method
+
+		/** @return the number of registers the program uses. */
+		public int registerCount()
+		{
+			return variables.length ;
+		} // end of method registerCount
+
+		/** @return the instructions as text, one per line. */
+		public String disassemble()
+		{
+			StringBuilder b = new StringBuilder() ;
+			for( int i = 0; i < numbers.length; i++ )
+				b.append( "r" ).append( numberRegisters[i] ).append( " = " ).append( numbers[i] ).append( '\n' ) ;
+			for( int i = 0; i < strings.length; i++ )
+				b.append( "r" ).append( stringRegisters[i] ).append( " = \"" ).append( strings[i] ).append( "\"\n" ) ;
+			for( int pc = 0; pc < code.length; pc += 4 )
+			{
+				int op = code[pc] ;
+				b.append( String.format( "%4d  %-5s", pc / 4, opNames[op] ) ) ;
+				if( op == JMP )
+					b.append( " @" ).append( code[pc + 3] / 4 ) ;
+				else if( op >= JEQ && op <= JGE )
+					b.append( " " ).append( register( code[pc + 1] ) ).append( ", " ).append( register( code[pc + 2] ) )
+						.append( " @" ).append( code[pc + 3] / 4 ) ;
+				else if( op == MOVE )
+					b.append( " " ).append( register( code[pc + 1] ) ).append( ", " ).append( register( code[pc + 2] ) ) ;
+				else if( op >= ADD && op <= DIV )
+					b.append( " " ).append( register( code[pc + 1] ) ).append( ", " ).append( register( code[pc + 2] ) )
+						.append( ", " ).append( register( code[pc + 3] ) ) ;
+				else if( op == GET || op == PUT )
+					b.append( " " ).append( register( code[pc + 1] ) ) ;
+				b.append( '\n' ) ;
+			}
+			return b.toString() ;
+		} // end of method disassemble
+
+		private String register( int r )
+		{
+			return variables[r] != null ? variables[r] : "r" + r ;
+		} // end of method register
+	} // end of class Program
+
+	/* The nonterminals the compiler acts on. */
+	private static final int other = 0, assignment = 1, factor = 2, condition = 3, conditionalOperator = 4,
+		procedure = 5, arguments = 6, whileLoop = 7, ifStatement = 8, untilLoop = 9, forLoop = 10, term = 11 ;
+	/** Marks an open bracket on the operator stack. */
+	private static final int bracket = -1 ;
+
+	/** The nonterminals entered and not yet finished. */
+	private int[] context = new int[64] ;
+	private int contextDepth ;
+
+	/** Per loop or if: its kind, the instruction to jump back to, and two jumps waiting for targets. */
+	private int[] control = new int[64] ;
+	private int controlDepth ;
+
+	/** Operands and operators of the expression being compiled. */
+	private int[] values = new int[16] ;
+	private int valueCount ;
+	private int[] operators = new int[16] ;
+	private int operatorCount ;
+
+	private int[] code = new int[256] ;
+	private int[] lines = new int[64] ;
+	private int pc ;
+
+	private final Map<String, Integer> variableRegisters = new HashMap<String, Integer>() ;
+	private final Map<Double, Integer> numberRegisters = new LinkedHashMap<Double, Integer>() ;
+	private final Map<String, Integer> stringRegisters = new LinkedHashMap<String, Integer>() ;
+	private final List<String> registerNames = new ArrayList<String>() ;
+	/** Temporaries free for reuse, and which registers are temporaries. */
+	private final ArrayDeque<Integer> freeTemporaries = new ArrayDeque<Integer>() ;
+	private final BitSet temporaries = new BitSet() ;
+
+	/** The variable being assigned, the comparison of the condition, and the procedure called. */
+	private int target ;
+	private int comparison ;
+	private int calling ;
+	/** The line of the token last seen, for the instructions compiled from it. */
+	private int line ;
+	/** Why the program cannot be run, or null. */
+	private String problem ;
+	private boolean finished ;
+
+	/** Compiles a program from a file.
+
+	  @param fileName The program.
+	  @return the compiled program.
+	  @throws CompilationException if the program has a syntax error or calls an unknown procedure.
+	*/
+	public static Program compile( String fileName ) throws IOException, CompilationException
+	{
+		return compile( fileName, false ) ;
+	} // end of method compile
+
+	/** Compiles a program from a file, optimising it first if asked.
+
+	  @param fileName The program.
+	  @param optimise Run the program through the Optimiser on the way?
+	  @return the compiled program.
+	  @throws CompilationException if the program has a syntax error or calls an unknown procedure.
+	*/
+	public static Program compile( String fileName, boolean optimise ) throws IOException, CompilationException
+	{
+		SyntaxAnalyser syn = new SyntaxAnalyser( fileName ) ;
+		if( syn.lex == null )
+			throw new FileNotFoundException( fileName ) ;
+		return compile( syn, optimise ) ;
+	} // end of method compile
+
+	/** Compiles a program held in memory.
+
+	  @param name The name of the program, for messages.
+	  @param source The text of the program.
+	  @return the compiled program.
+	  @throws CompilationException if the program has a syntax error or calls an unknown procedure.
+	*/
+	public static Program compile( String name, Reader source ) throws IOException, CompilationException
+	{
+		return compile( name, source, false ) ;
+	} // end of method compile
+
+	/** Compiles a program held in memory, optimising it first if asked. */
+	public static Program compile( String name, Reader source, boolean optimise ) throws IOException, CompilationException
+	{
+		return compile( new SyntaxAnalyser( name, new LexicalAnalyser( source, 0, 0 ) ), optimise ) ;
+	} // end of method compile
+
+	private static Program compile( SyntaxAnalyser syn, boolean optimise ) throws IOException, CompilationException
+	{
+		BytecodeCompiler compiler = new BytecodeCompiler() ;
+		syn.setGenerate( optimise ? new Optimiser( compiler ) : compiler ) ;
+		ByteArrayOutputStream errors = new ByteArrayOutputStream() ;
+		syn.parse( new PrintStream( errors, true ) ) ;
+		if( syn.errorCount() > 0 )
+			throw new CompilationException( errors.toString().trim() ) ;
+		return compiler.program() ;
+	} // end of method compile
+
+	/** @return the program compiled from the events so far.
+	  @throws CompilationException if the parse did not succeed or the program calls an unknown procedure. */
+	public Program program() throws CompilationException
+	{
+		if( problem != null )
+			throw new CompilationException( problem ) ;
+		if( !finished )
+			throw new CompilationException( "the program was not recognised" ) ;
+		double[] numbers = new double[numberRegisters.size()] ;
+		int[] numberTargets = new int[numbers.length] ;
+		int i = 0 ;
+		for( Map.Entry<Double, Integer> e : numberRegisters.entrySet() )
+		{
+			numbers[i] = e.getKey() ;
+			numberTargets[i++] = e.getValue() ;
+		}
+		String[] strings = stringRegisters.keySet().toArray( new String[0] ) ;
+		int[] stringTargets = new int[strings.length] ;
+		i = 0 ;
+		for( int r : stringRegisters.values() )
+			stringTargets[i++] = r ;
+		return new Program( Arrays.copyOf( code, pc ), Arrays.copyOf( lines, pc / 4 ), numbers, numberTargets,
+			strings, stringTargets, registerNames.toArray( new String[0] ) ) ;
+	} // end of method program
+
+	private static int kind( String name )
+	{
+		switch( name )
+		{
+			case "AssignmentStatement": return assignment ;
+			case "Factor": return factor ;
+			case "Term": return term ;
+			case "Condition": return condition ;
+			case "ConditionalOperator": return conditionalOperator ;
+			case "ProcedureStatement": return procedure ;
+			case "ArgumentList": return arguments ;
+			case "WhileStatement": return whileLoop ;
+			case "IfStatement": return ifStatement ;
+			case "UntilStatement": return untilLoop ;
+			case "ForStatement": return forLoop ;
+			default: return other ;
+		}
+	} // end of method kind
+
+	/** @return a new register, named if it holds a variable. */
+	private int newRegister( String name )
+	{
+		registerNames.add( name ) ;
+		return registerNames.size() - 1 ;
+	} // end of method newRegister
+
+	private int variable( String name )
+	{
+		Integer r = variableRegisters.get( name ) ;
+		if( r == null )
+		{
+			r = newRegister( name ) ;
+			variableRegisters.put( name, r ) ;
+		}
+		return r ;
+	} // end of method variable
+
+	private int number( String text )
+	{
+		Double value = Double.valueOf( text ) ;
+		Integer r = numberRegisters.get( value ) ;
+		if( r == null )
+		{
+			r = newRegister( null ) ;
+			numberRegisters.put( value, r ) ;
+		}
+		return r ;
+	} // end of method number
+
+	private int string( String text )
+	{
+		Integer r = stringRegisters.get( text ) ;
+		if( r == null )
+		{
+			r = newRegister( null ) ;
+			stringRegisters.put( text, r ) ;
+		}
+		return r ;
+	} // end of method string
+
+	private int temporary()
+	{
+		if( !freeTemporaries.isEmpty() )
+			return freeTemporaries.pop() ;
+		int r = newRegister( null ) ;
+		temporaries.set( r ) ;
+		return r ;
+	} // end of method temporary
+
+	/** Frees a register if it is a temporary whose value has now been used. */
+	private void release( int r )
+	{
+		if( temporaries.get( r ) )
+			freeTemporaries.push( r ) ;
+	} // end of method release
+
+	/** @return the index of the instruction emitted. */
+	private int emit( int op, int a, int b, int c )
+	{
+		if( pc == code.length )
+		{
+			code = Arrays.copyOf( code, pc * 2 ) ;
+			lines = Arrays.copyOf( lines, pc / 2 ) ;
+		}
+		code[pc] = op ;
+		code[pc + 1] = a ;
+		code[pc + 2] = b ;
+		code[pc + 3] = c ;
+		lines[pc / 4] = line ;
+		pc += 4 ;
+		return pc - 4 ;
+	} // end of method emit
+
+	/** Points a jump waiting for its target at the next instruction. */
+	private void patch( int jump )
+	{
+		code[jump + 3] = pc ;
+	} // end of method patch
+
+	private void push( int r )
+	{
+		if( valueCount == values.length )
+			values = Arrays.copyOf( values, valueCount * 2 ) ;
+		values[valueCount++] = r ;
+	} // end of method push
+
+	private void pushOperator( int op )
+	{
+		if( operatorCount == operators.length )
+			operators = Arrays.copyOf( operators, operatorCount * 2 ) ;
+		operators[operatorCount++] = op ;
+	} // end of method pushOperator
+
+	/** Applies the waiting operator if it is one of the two given, now its right operand is complete. */
+	private void apply( int op1, int op2 )
+	{
+		if( operatorCount == 0 )
+			return ;
+		int op = operators[operatorCount - 1] ;
+		if( op != op1 && op != op2 )
+			return ;
+		operatorCount-- ;
+		int right = values[--valueCount] ;
+		int left = values[--valueCount] ;
+		release( left ) ;
+		release( right ) ;
+		int result = temporary() ;
+		emit( op, result, left, right ) ;
+		push( result ) ;
+	} // end of method apply
+
+	/** @return the jump taken when a comparison is false. */
+	private static int inverse( int symbol )
+	{
+		switch( symbol )
+		{
+			case Token.equalSymbol: return JNE ;
+			case Token.notEqualSymbol: return JEQ ;
+			case Token.lessThanSymbol: return JGE ;
+			case Token.lessEqualSymbol: return JGT ;
+			case Token.greaterThanSymbol: return JLE ;
+			default: return JLT ;
+		}
+	} // end of method inverse
+
+	private void enterControl( int kind )
+	{
+		if( controlDepth == control.length )
+			control = Arrays.copyOf( control, controlDepth * 2 ) ;
+		control[controlDepth] = kind ;
+		control[controlDepth + 1] = pc ;
+		control[controlDepth + 2] = -1 ;
+		control[controlDepth + 3] = -1 ;
+		controlDepth += 4 ;
+	} // end of method enterControl
+
+	@Override
+	public void commenceNonterminal( String name )
+	{
+		int kind = kind( name ) ;
+		if( contextDepth == context.length )
+			context = Arrays.copyOf( context, contextDepth * 2 ) ;
+		context[contextDepth++] = kind ;
+		if( kind >= whileLoop && kind <= forLoop )
+			enterControl( kind ) ;
+		// a for loop goes back to its condition, not to its first assignment
+		else if( kind == condition && contextDepth >= 2 && context[contextDepth - 2] == forLoop )
+			control[controlDepth - 3] = pc ;
+	} // end of method commenceNonterminal
+
+	@Override
+	public void insertTerminal( Token token )
+	{
+		line = token.lineNumber ;
+		int where = contextDepth == 0 ? other : context[contextDepth - 1] ;
+		switch( token.symbol )
+		{
+			case Token.identifier:
+				if( where == factor || where == condition )
+					push( variable( token.text ) ) ;
+				else if( where == assignment )
+					target = variable( token.text ) ;
+				else if( where == procedure )
+				{
+					calling = token.text.equals( "get" ) ? GET : token.text.equals( "put" ) ? PUT : HALT ;
+					if( calling == HALT && problem == null )
+						problem = "Error at line " + line + " : call to unknown procedure '" + token.text + "'" ;
+				}
+				else if( where == arguments && calling != HALT )
+					emit( calling, variable( token.text ), 0, 0 ) ;
+				break ;
+			case Token.numberConstant:
+				push( number( token.text ) ) ;
+				break ;
+			case Token.stringConstant:
+				push( string( token.text ) ) ;
+				break ;
+			case Token.plusSymbol:
+				pushOperator( ADD ) ;
+				break ;
+			case Token.minusSymbol:
+				pushOperator( SUB ) ;
+				break ;
+			case Token.timesSymbol:
+				pushOperator( MUL ) ;
+				break ;
+			case Token.divideSymbol:
+				pushOperator( DIV ) ;
+				break ;
+			case Token.leftParenthesis:
+				if( where == factor )
+					pushOperator( bracket ) ;
+				break ;
+			case Token.rightParenthesis:
+				if( where == factor )
+					operatorCount-- ;
+				break ;
+			case Token.elseSymbol:
+				if( where == ifStatement )
+				{
+					int skip = emit( JMP, 0, 0, -1 ) ;
+					patch( control[controlDepth - 2] ) ;
+					control[controlDepth - 1] = skip ;
+				}
+				break ;
+			case Token.doSymbol:
+				// the step of a for loop has been compiled: go back to the condition, and start the body here
+				if( where == forLoop )
+				{
+					emit( JMP, 0, 0, control[controlDepth - 3] ) ;
+					patch( control[controlDepth - 1] ) ;
+					control[controlDepth - 1] = -1 ;
+				}
+				break ;
+			default:
+				if( where == conditionalOperator )
+					comparison = token.symbol ;
+		}
+	} // end of method insertTerminal
+
+	@Override
+	public void finishNonterminal( String name )
+	{
+		int kind = context[--contextDepth] ;
+		switch( kind )
+		{
+			case factor:
+				apply( MUL, DIV ) ;
+				break ;
+			case term:
+				apply( ADD, SUB ) ;
+				break ;
+			case assignment:
+				finishAssignment() ;
+				break ;
+			case condition:
+				finishCondition() ;
+				break ;
+			case whileLoop:
+				emit( JMP, 0, 0, control[controlDepth - 3] ) ;
+				patch( control[controlDepth - 2] ) ;
+				controlDepth -= 4 ;
+				break ;
+			case ifStatement:
+				patch( control[controlDepth - 1] != -1 ? control[controlDepth - 1] : control[controlDepth - 2] ) ;
+				controlDepth -= 4 ;
+				break ;
+			case untilLoop:
+				controlDepth -= 4 ;
+				break ;
+			case forLoop:
+				// after the body comes the step, which is just after the condition's jumps
+				emit( JMP, 0, 0, control[controlDepth - 2] + 8 ) ;
+				patch( control[controlDepth - 2] ) ;
+				controlDepth -= 4 ;
+				break ;
+			default:
+		}
+	} // end of method finishNonterminal
+
+	private void finishAssignment()
+	{
+		int value = values[--valueCount] ;
+		int last = pc - 4 ;
+		// the value was worked out just now into a temporary, so work it out into the variable instead
+		if( temporaries.get( value ) && last >= 0 && code[last] >= ADD && code[last] <= DIV && code[last + 1] == value )
+			code[last + 1] = target ;
+		else
+			emit( MOVE, target, value, 0 ) ;
+		release( value ) ;
+	} // end of method finishAssignment
+
+	private void finishCondition()
+	{
+		int right = values[--valueCount] ;
+		int left = values[--valueCount] ;
+		int kind = control[controlDepth - 4] ;
+		if( kind == untilLoop )
+		{
+			// do ... until repeats while the condition is false
+			emit( inverse( comparison ), left, right, control[controlDepth - 3] ) ;
+			return ;
+		}
+		control[controlDepth - 2] = emit( inverse( comparison ), left, right, -1 ) ;
+		// a for loop's step follows, and is jumped over on the way into the body
+		if( kind == forLoop )
+			control[controlDepth - 1] = emit( JMP, 0, 0, -1 ) ;
+	} // end of method finishCondition
+
+	@Override
+	public void reportSuccess()
+	{
+		emit( HALT, 0, 0, 0 ) ;
+		finished = true ;
+	} // end of method reportSuccess
+
+	/** Compiles a program and runs it, reading get's values from standard input.
+
+	  @param args The program, after -list to print the bytecode instead and -O to optimise it first.
+	*/
+	public static void main( String[] args ) throws IOException
+	{
+		boolean list = false, optimise = false ;
+		int i = 0 ;
+		for( ; i < args.length - 1; i++ )
+			if( args[i].equals( "-list" ) )
+				list = true ;
+			else if( args[i].equals( "-O" ) )
+				optimise = true ;
+			else
+				break ;
+		if( i != args.length - 1 )
+		{
+			System.err.println( "usage: java BytecodeCompiler [-list] [-O] file" ) ;
+			System.exit( 1 ) ;
+		}
+		try
+		{
+			Program p = compile( args[i], optimise ) ;
+			if( list )
+				System.out.print( p.disassemble() ) ;
+			else
+				new RegisterMachine( p ).run( new RegisterMachine.Console() ) ;
+		}
+		catch( CompilationException e )
+		{
+			System.err.println( e.getMessage() ) ;
+			System.exit( 1 ) ;
+		}
+	} // end of main method
+} // end of class BytecodeCompiler
@@ -0,0 +1,64 @@
+
+/**
+ *
+ * Cooperative cancellation for one run of the analyser.  The lexical and
+ * syntax analysers poll it every so often and wind up the parse once it has
+ * been cancelled or its deadline has passed.
+ *
+ **/
+
+public class CancellationToken
+{
+	/** Set once the token has been cancelled, by cancel() or by the deadline passing. */
+	private volatile boolean cancelled ;
+	/** When to cancel automatically, as a System.nanoTime value. */
+	private final long deadline ;
+	/** Is there a deadline at all? */
+	private final boolean hasDeadline ;
+	/** Why the work is being cancelled, for diagnostics. */
+	private final String reason ;
+
+	/** Creates a token that is only cancelled by calling cancel(). */
+	public CancellationToken()
+	{
+		deadline = 0 ;
+		hasDeadline = false ;
+		reason = "cancelled" ;
+	} // end of constructor method
+
+	/** Creates a token that cancels itself at the given time.
+
+	  @param d The deadline, as a System.nanoTime value.
+	  @param r Why the work is stopped when the deadline passes.
+	 */
+	public CancellationToken(long d, String r)
+	{
+		deadline = d ;
+		hasDeadline = true ;
+		reason = r ;
+	} // end of constructor method
+
+	/** Cancels the work this token was handed to.  Safe to call from any thread. */
+	public void cancel()
+	{
+		cancelled = true ;
+	} // end of method cancel
+
+	/** Checks whether the work should stop.  This reads the clock, so callers
+	  should only poll it every so often.
+
+	  @return true if the token has been cancelled or its deadline has passed.
+	 */
+	public boolean isCancelled()
+	{
+		if (!cancelled && hasDeadline && (System.nanoTime() - deadline >= 0))
+			cancelled = true ;
+		return cancelled ;
+	} // end of method isCancelled
+
+	/** @return why the work was cancelled. */
+	public String getReason()
+	{
+		return reason ;
+	} // end of method getReason
+} // end of class CancellationToken
@@ -0,0 +1,278 @@
+
+/**
+ *
+ * Just enough of a class file writer for the JvmCompiler: a constant pool,
+ * fields, and methods with code built up a byte at a time, with labels for
+ * branches that are filled in once the code is complete.
+ *
+ * Classes are written in the Java 5 format (version 49), which has no stack
+ * map frames, so the JVM verifies them by inferring types itself and the
+ * writer does not have to work frames out.
+ *
+ **/
+
+import java.io.* ;
+import java.util.* ;
+
+public class ClassFileWriter
+{
+	private static final int version = 49 ;
+	public static final int ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002, ACC_STATIC = 0x0008,
+		ACC_FINAL = 0x0010, ACC_SUPER = 0x0020 ;
+
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream() ;
+	private final DataOutputStream pool = new DataOutputStream( poolBytes ) ;
+	private final Map<String, Integer> entries = new HashMap<String, Integer>() ;
+	private int poolCount = 1 ;
+
+	private final ByteArrayOutputStream memberBytes = new ByteArrayOutputStream() ;
+	private final DataOutputStream members = new DataOutputStream( memberBytes ) ;
+	private int fieldCount, methodCount ;
+	/** Fields must all come before the methods in the file, so methods wait here. */
+	private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream() ;
+	private final DataOutputStream methods = new DataOutputStream( methodBytes ) ;
+
+	private final int thisClass, superClass ;
+	private final int[] interfaces ;
+
+	/** Starts a public final class.
+
+	  @param name The internal name of the class, such as "Program".
+	  @param superName The internal name of its superclass.
+	  @param interfaceNames The internal names of the interfaces it implements.
+	*/
+	public ClassFileWriter( String name, String superName, String... interfaceNames )
+	{
+		thisClass = classEntry( name ) ;
+		superClass = classEntry( superName ) ;
+		interfaces = new int[interfaceNames.length] ;
+		for( int i = 0; i < interfaceNames.length; i++ )
+			interfaces[i] = classEntry( interfaceNames[i] ) ;
+	} // end of constructor method
+
+	/** @return the index of a constant pool entry, adding it if it is new. */
+	private int entry( String key, int tag, Object... parts )
+	{
+		Integer index = entries.get( key ) ;
+		if( index != null )
+			return index ;
+		try
+		{
+			pool.writeByte( tag ) ;
+			for( Object part : parts )
+			{
+				if( part instanceof String )
+					pool.writeUTF( (String) part ) ;
+				else if( part instanceof Double )
+					pool.writeDouble( (Double) part ) ;
+				else if( tag == 3 )
+					pool.writeInt( (Integer) part ) ;
+				else
+					pool.writeShort( (Integer) part ) ;
+			}
+		}
+		catch( IOException e )
+		{
+			throw new UncheckedIOException( e ) ;
+		}
+		index = poolCount ;
+		// doubles take two slots in the pool
+		poolCount += tag == 6 ? 2 : 1 ;
+		if( poolCount > 0xffff )
+			throw new IllegalStateException( "constant pool full" ) ;
+		entries.put( key, index ) ;
+		return index ;
+	} // end of method entry
+
+	public int utf8( String s )
+	{
+		return entry( "U" + s, 1, s ) ;
+	} // end of method utf8
+
+	public int classEntry( String name )
+	{
+		return entry( "C" + name, 7, utf8( name ) ) ;
+	} // end of method classEntry
+
+	public int integer( int value )
+	{
+		return entry( "I" + value, 3, value ) ;
+	} // end of method integer
+
+	public int doubleEntry( double value )
+	{
+		return entry( "D" + Double.doubleToRawLongBits( value ), 6, value ) ;
+	} // end of method doubleEntry
+
+	private int nameAndType( String name, String descriptor )
+	{
+		return entry( "N" + name + ":" + descriptor, 12, utf8( name ), utf8( descriptor ) ) ;
+	} // end of method nameAndType
+
+	public int field( String owner, String name, String descriptor )
+	{
+		return entry( "F" + owner + "." + name + ":" + descriptor, 9, classEntry( owner ), nameAndType( name, descriptor ) ) ;
+	} // end of method field
+
+	public int method( String owner, String name, String descriptor )
+	{
+		return entry( "M" + owner + "." + name + ":" + descriptor, 10, classEntry( owner ), nameAndType( name, descriptor ) ) ;
+	} // end of method method
+
+	public int interfaceMethod( String owner, String name, String descriptor )
+	{
+		return entry( "IM" + owner + "." + name + ":" + descriptor, 11, classEntry( owner ), nameAndType( name, descriptor ) ) ;
+	} // end of method interfaceMethod
+
+	/** Adds a field with no attributes. */
+	public void addField( int access, String name, String descriptor ) throws IOException
+	{
+		members.writeShort( access ) ;
+		members.writeShort( utf8( name ) ) ;
+		members.writeShort( utf8( descriptor ) ) ;
+		members.writeShort( 0 ) ;
+		fieldCount++ ;
+	} // end of method addField
+
+	/** Adds a method whose code is complete. */
+	public void addMethod( int access, String name, String descriptor, Code code ) throws IOException
+	{
+		byte[] bytes = code.finish() ;
+		methods.writeShort( access ) ;
+		methods.writeShort( utf8( name ) ) ;
+		methods.writeShort( utf8( descriptor ) ) ;
+		methods.writeShort( 1 ) ;
+		methods.writeShort( utf8( "Code" ) ) ;
+		methods.writeInt( 12 + bytes.length ) ;
+		methods.writeShort( code.maxStack ) ;
+		methods.writeShort( code.maxLocals ) ;
+		methods.writeInt( bytes.length ) ;
+		methods.write( bytes ) ;
+		methods.writeShort( 0 ) ;
+		methods.writeShort( 0 ) ;
+		methodCount++ ;
+	} // end of method addMethod
+
+	/** @return the finished class file. */
+	public byte[] toByteArray() throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream() ;
+		DataOutputStream out = new DataOutputStream( bytes ) ;
+		out.writeInt( 0xcafebabe ) ;
+		out.writeShort( 0 ) ;
+		out.writeShort( version ) ;
+		out.writeShort( poolCount ) ;
+		poolBytes.writeTo( out ) ;
+		out.writeShort( ACC_PUBLIC | ACC_FINAL | ACC_SUPER ) ;
+		out.writeShort( thisClass ) ;
+		out.writeShort( superClass ) ;
+		out.writeShort( interfaces.length ) ;
+		for( int i : interfaces )
+			out.writeShort( i ) ;
+		out.writeShort( fieldCount ) ;
+		memberBytes.writeTo( out ) ;
+		out.writeShort( methodCount ) ;
+		methodBytes.writeTo( out ) ;
+		out.writeShort( 0 ) ;
+		return bytes.toByteArray() ;
+	} // end of method toByteArray
+
+	/** The code of one method. */
+	public static class Code
+	{
+		private byte[] bytes = new byte[256] ;
+		private int length ;
+		/** Where each label is, or -1 until it is placed. */
+		private int[] labels = new int[16] ;
+		private int labelCount ;
+		/** Branches waiting for their labels: the opcode's offset, where the offset goes, and the label. */
+		private int[] fixups = new int[48] ;
+		private int fixupCount ;
+		public int maxStack, maxLocals ;
+
+		/** @return the offset of the next byte of code. */
+		public int length()
+		{
+			return length ;
+		} // end of method length
+
+		public void u1( int b )
+		{
+			if( length == bytes.length )
+				bytes = Arrays.copyOf( bytes, length * 2 ) ;
+			bytes[length++] = (byte) b ;
+		} // end of method u1
+
+		public void u2( int s )
+		{
+			u1( s >> 8 ) ;
+			u1( s ) ;
+		} // end of method u2
+
+		/** An instruction with a constant pool index. */
+		public void op( int opcode, int index )
+		{
+			u1( opcode ) ;
+			u2( index ) ;
+		} // end of method op
+
+		/** An instruction with a local variable, widened if the local needs it. */
+		public void local( int opcode, int slot )
+		{
+			if( slot > 255 )
+			{
+				u1( 0xc4 ) ;
+				u1( opcode ) ;
+				u2( slot ) ;
+			}
+			else
+			{
+				u1( opcode ) ;
+				u1( slot ) ;
+			}
+		} // end of method local
+
+		public int newLabel()
+		{
+			if( labelCount == labels.length )
+				labels = Arrays.copyOf( labels, labelCount * 2 ) ;
+			labels[labelCount] = -1 ;
+			return labelCount++ ;
+		} // end of method newLabel
+
+		/** Places a label at the next byte of code. */
+		public void place( int label )
+		{
+			labels[label] = length ;
+		} // end of method place
+
+		/** A branch to a label, with a two byte offset. */
+		public void branch( int opcode, int label )
+		{
+			if( fixupCount == fixups.length )
+				fixups = Arrays.copyOf( fixups, fixupCount * 2 ) ;
+			fixups[fixupCount++] = length ;
+			fixups[fixupCount++] = length + 1 ;
+			fixups[fixupCount++] = label ;
+			u1( opcode ) ;
+			u2( 0 ) ;
+		} // end of method branch
+
+		/** @return the code with every branch filled in.
+		  @throws IllegalStateException if a branch is too far or the code too long for a method. */
+		byte[] finish()
+		{
+			if( length > 0xffff )
+				throw new IllegalStateException( "method code too long" ) ;
+			for( int i = 0; i < fixupCount; i += 3 )
+			{
+				int offset = labels[fixups[i + 2]] - fixups[i] ;
+				if( offset < Short.MIN_VALUE || offset > Short.MAX_VALUE )
+					throw new IllegalStateException( "branch too far" ) ;
+				bytes[fixups[i + 1]] = (byte) ( offset >> 8 ) ;
+				bytes[fixups[i + 1] + 1] = (byte) offset ;
+			}
+			return Arrays.copyOf( bytes, length ) ;
+		} // end of method finish
+	} // end of class Code
+} // end of class ClassFileWriter
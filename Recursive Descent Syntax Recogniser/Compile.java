@@ -1,65 +1,661 @@
-
-/**
- *
- * Main Driver program for 312 exercise.
- * 
- * This class has been provided to students
- *
- * @Author: Roger Garside, John Mariani, John Vidler, Paul Rayson
- *
- *
- **/
-
-import java.io.* ;
-
-public class Compile {
-
-	public static String fileName;
-
-	/**
-	 *
-	 * main
-	 *
-	 **/
-
-	private void go() throws IOException {
-		String prefix = "Programs Folder" + File.separator + "program";
-		int fileNumber = -1;
-		int exitFlag = 0;
-		System.out.println( "312START" );
-		PrintStream out = null;
-		String outputFile = new String( "res.txt" );
-		boolean goon = true;
-
-		try {
-			out = new PrintStream( new FileOutputStream(outputFile) );
-		} catch( Exception e ) {
-			System.out.println("unable to open output file "+e);
-			System.exit(0);
-		}
-
-		while( goon ) {
-			fileNumber++ ;
-			fileName = prefix + fileNumber;
-			goon = ((new File(fileName)).exists());
-			if( goon ) {
-				System.out.println();
-				System.out.println( "312FILE " + fileName );
-
-				SyntaxAnalyser syn = new SyntaxAnalyser(fileName) ;
-				syn.parse( out ) ;
-			} else System.out.println(fileName+" does not exist");
-		}
-
-		System.out.println() ;
-		System.out.println("312FINISH") ;
-		out.flush();out.close();
-		System.exit(exitFlag) ;
-	} // end of main method
-
-	public static void main(String args[]) throws IOException {
-		Compile c = new Compile();
-		c.go();
-	};
-
-} // end of class Compile
+
+/**
+ *
+ * Main Driver program for 312 exercise.
+ * 
+ * This class has been provided to students
+ *
+ * @Author: Roger Garside, John Mariani, John Vidler, Paul Rayson
+ *
+ *
+ **/
+
+import java.io.* ;
+import java.nio.file.* ;
+import java.util.* ;
+
+public class Compile {
+
+	public static String fileName;
+
+	/** Carry on after syntax errors, collecting them all (-recover). */
+	private boolean recoverErrors = false ;
+	/** The most errors to collect per file when recovering (-maxerrors N). */
+	private int maxErrors = 25 ;
+	/** Put resource limits on each file (-harden, or any of the limit options). */
+	private boolean harden = false ;
+	/** The longest token allowed when hardened (-maxtokenlength N). */
+	private int maxTokenLength = 4096 ;
+	/** The deepest statement and bracket nesting allowed when hardened (-maxdepth N). */
+	private int maxDepth = 256 ;
+	/** The most tokens read from one file when hardened (-maxtokens N). */
+	private int maxTokens = 1000000 ;
+	/** Time allowed for each file in milliseconds, zero for no limit (-timeout MS). */
+	private long fileTimeout = 0 ;
+	/** Print per-nonterminal and per-token counters at the end (-profile). */
+	private boolean profile = false ;
+	/** Read the clock for one file in this many when profiling (-profilesample N). */
+	private int profileSample = 16 ;
+	/** Write a JSON run report to this file, or null for none (-report FILE). */
+	private String reportFile = null ;
+	/** Time allowed for the whole run in milliseconds, zero for no limit (-deadline MS). */
+	private long batchDeadline = 0 ;
+	/** Directory of cached results, or null for no cache (-cache DIR). */
+	private String cacheDir = null ;
+	/** The most megabytes the cache may hold (-cachesize MB). */
+	private long cacheSize = 256 ;
+	/** Check for reads before assignment, strings in arithmetic and unknown calls (-semantic). */
+	private boolean semanticChecks = false ;
+	/** The procedures calls may name when checking (-procedures a,b,...). */
+	private List<String> procedures = Arrays.asList( SemanticChecker.builtInProcedures ) ;
+	/** Fold constants, drop dead branches and hoist loop-invariant assignments before printing (-optimise). */
+	private boolean optimise = false ;
+	/** Build each program's tree with identical subtrees shared across the run, and report the saving (-sharedtree). */
+	private boolean sharedTree = false ;
+	/** Recognise with the scanner folded into the parser, when no option needs the two-stage analyser (-fused). */
+	private boolean fused = false ;
+	/** Keep an index of where names are assigned, read and called in this file, or null (-index FILE). */
+	private String indexFile = null ;
+
+	/** Check the programs in these zip or jar archives instead of the programs folder (-archive FILE, repeatable). */
+	private List<String> archives = new ArrayList<String>() ;
+	/** Threads that read archive entries ahead of the checks (-archivethreads N). */
+	private int archiveThreads = Runtime.getRuntime().availableProcessors() ;
+	/** The entries found in the archives, so the index keeps them. */
+	private Set<String> archiveEntries = new HashSet<String>() ;
+
+	/** Write res.txt gzipped, as res.txt.gz with a block index beside it (-gzip). */
+	private boolean gzip = false ;
+	/** Write the event trace gzipped to this file instead of standard output, or null (-gzipevents FILE). */
+	private String gzipEvents = null ;
+	/** Threads that compress output blocks while the programs are checked (-gzipthreads N). */
+	private int gzipThreads = Math.max( 1, Math.min( 4, Runtime.getRuntime().availableProcessors() / 2 ) ) ;
+
+	/** Publish each program's tokens, events and diagnostics to this memory-mapped file for local clients, or null (-shared FILE). */
+	private String sharedFile = null ;
+	/** How many results the shared file holds before reusing the oldest (-sharedslots N). */
+	private int sharedSlots = 1024 ;
+	/** How many megabytes of results the shared file holds (-sharedsize MB). */
+	private long sharedSize = 64 ;
+
+	/** Keep running and re-check programs as they change (-watch). */
+	private boolean watch = false ;
+	/** How long the folder must stay quiet before changes are checked, in milliseconds. */
+	private static final long watchDebounce = 3 ;
+
+	/* State of the run. */
+	private PrintStream out = null ;
+	/** What res.txt and the event trace are compressed through, or null when they are written as they are. */
+	private BlockGzipOutputStream resultBlocks = null, eventBlocks = null ;
+	private RunReport report = null ;
+	private ResultCache cache = null ;
+	private CorpusIndex index = null ;
+	/** Collects names for the index from each parse, passing the events on to be printed. */
+	private CorpusIndex.Collector collector = new CorpusIndex.Collector( new Generate() ) ;
+	/** Optimises each program recognised before its events are printed, or null. */
+	private Optimiser optimiser = null ;
+	/** Builds the shared trees, passing the events on to the rest, or null; programs replayed from the cache are not built. */
+	private SharedTree.Builder builder = null ;
+	private SharedTree trees = null ;
+	/** Where results are published for local clients, and what records their tokens, or null. */
+	private SharedResults shared = null ;
+	private SharedResults.Tokens sharedTokens = null ;
+	/** The fused analyser, reused for every file, or null to use the pool of two-stage analysers. */
+	private FusedAnalyser fusedAnalyser = null ;
+	private long batchEnd ;
+	private int filesChecked = 0, filesTimedOut = 0 ;
+	/** When watching, the res.txt text of each program by number, to rewrite res.txt from. */
+	private SortedMap<Integer, byte[]> latestResults = new TreeMap<Integer, byte[]>() ;
+
+	/**
+	 *
+	 * Works out which deadline, if any, applies to the next file.
+	 *
+	 * @param batchEnd when the whole run must finish, as a System.nanoTime value
+	 * @return a cancellation token for the file, or null if it may take as long as it likes
+	 *
+	 **/
+
+	private CancellationToken fileCancellation( long batchEnd ) {
+		long fileEnd = System.nanoTime() + fileTimeout * 1000000L ;
+		if( fileTimeout > 0 && ( batchDeadline == 0 || fileEnd - batchEnd < 0 ) )
+			return new CancellationToken( fileEnd, "gave up after " + fileTimeout + " ms" ) ;
+		if( batchDeadline > 0 )
+			return new CancellationToken( batchEnd, "batch deadline of " + batchDeadline + " ms reached" ) ;
+		return null ;
+	} // end of method fileCancellation
+
+	/**
+	 *
+	 * Checks one file, writing its events to standard output and its errors to res.txt.
+	 * With a cache, unchanged files replay their earlier output instead of being parsed,
+	 * unless the index needs them parsed to pick up their names.
+	 *
+	 * @param name the file to check
+	 * @param results where to write its res.txt text
+	 *
+	 **/
+
+	private void checkFile( String name, PrintStream results ) throws IOException {
+		checkFile( name, null, results ) ;
+	} // end of method checkFile
+
+	/**
+	 *
+	 * Checks a program that may not be a file of its own, such as an archive entry.
+	 *
+	 * @param name the name to report the program under
+	 * @param text the program, or null to read the file with that name
+	 * @param results where to write its res.txt text
+	 *
+	 **/
+
+	private void checkFile( String name, byte[] text, PrintStream results ) throws IOException {
+		// so that each program's output can be found in the compressed files without inflating the rest
+		if( eventBlocks != null )
+			eventBlocks.mark( name ) ;
+		if( resultBlocks != null && results == out )
+			resultBlocks.mark( name ) ;
+		System.out.println();
+		System.out.println( "312FILE " + name );
+
+		long started = System.nanoTime() ;
+		long allocated = report == null ? 0 : RunReport.allocatedBytes() ;
+		String key = null ;
+		byte[] source = text ;
+		if( source == null && ( cache != null || index != null ) )
+			source = java.nio.file.Files.readAllBytes( new File(name).toPath() ) ;
+		long hash = index == null ? 0 : ResultCache.hash( source, 0 ) ;
+		boolean reindex = index != null && !index.isCurrent( name, hash ) ;
+		if( cache != null ) {
+			key = cache.key( name, source ) ;
+			ResultCache.Entry hit = reindex ? null : cache.get( key ) ;
+			if( hit != null ) {
+				System.out.write( hit.events ) ;
+				results.write( hit.diagnostics ) ;
+				if( shared != null )
+					shared.publish( name, null, hit.outcome, hit.tokens, hit.errors, hit.events, hit.diagnostics ) ;
+				filesChecked++ ;
+				if( report != null )
+					report.record( name, source.length, hit.tokens, System.nanoTime() - started,
+						RunReport.allocatedBytes() - allocated, hit.outcome, hit.errors ) ;
+				return ;
+			}
+		}
+
+		AbstractSyntaxAnalyser syn ;
+		if( fusedAnalyser != null ) {
+			if( text == null )
+				fusedAnalyser.reset( name ) ;
+			else
+				fusedAnalyser.reset( name, new InputStreamReader( new ByteArrayInputStream( text ) ) ) ;
+			syn = fusedAnalyser ;
+		}
+		else
+			syn = text == null ? AnalyserPool.forFile(name)
+				: AnalyserPool.forText( name, new InputStreamReader( new ByteArrayInputStream( text ) ) ) ;
+		if( index != null ) {
+			collector.clear() ;
+			syn.setGenerate( collector ) ;
+		}
+		else if( optimiser != null )
+			syn.setGenerate( optimiser ) ;
+		if( builder != null ) {
+			builder.clear() ;
+			syn.setGenerate( builder ) ;
+		}
+		if( sharedTokens != null ) {
+			sharedTokens.clear() ;
+			syn.setGenerate( sharedTokens ) ;
+		}
+		if( recoverErrors )
+			syn.setErrorRecovery( maxErrors ) ;
+		if( harden )
+			syn.setLimits( maxTokenLength, maxDepth, maxTokens ) ;
+		if( semanticChecks )
+			syn.setSemanticChecks( procedures ) ;
+		CancellationToken cancel = fileCancellation( batchEnd ) ;
+		if( cancel != null )
+			syn.setCancellation( cancel ) ;
+
+		// with a cache or a shared file, collect the output so it can be kept as well as written
+		PrintStream console = System.out ;
+		ByteArrayOutputStream events = null, diagnostics = null ;
+		if( key != null || shared != null ) {
+			events = new ByteArrayOutputStream() ;
+			diagnostics = new ByteArrayOutputStream() ;
+			System.setOut( new PrintStream( events ) ) ;
+		}
+		try {
+			syn.parse( diagnostics == null ? results : new PrintStream( diagnostics ) ) ;
+			if( optimiser != null )
+				optimiser.finish() ;
+		} finally {
+			System.setOut( console ) ;
+		}
+
+		int outcome = syn.timedOut() ? RunReport.timedOut
+			: syn.errorCount() > 0 ? RunReport.failed : RunReport.success ;
+		// a file cut short by a time-out has not given up all its names
+		if( reindex && !syn.timedOut() )
+			index.replace( name, hash, collector ) ;
+		if( events != null ) {
+			System.out.write( events.toByteArray() ) ;
+			results.write( diagnostics.toByteArray() ) ;
+		}
+		if( shared != null )
+			shared.publish( name, sharedTokens, outcome, syn.tokensRead(), syn.errorCount(), events.toByteArray(), diagnostics.toByteArray() ) ;
+		if( key != null ) {
+			// a time-out depends on the clock, not the source, so it is never cached
+			if( !syn.timedOut() ) {
+				ResultCache.Entry e = new ResultCache.Entry() ;
+				e.tokens = syn.tokensRead() ;
+				e.errors = syn.errorCount() ;
+				e.outcome = outcome ;
+				e.events = events.toByteArray() ;
+				e.diagnostics = diagnostics.toByteArray() ;
+				// the output is written already, so a cache that cannot take it only costs the next run a parse
+				try {
+					cache.put( key, e ) ;
+				} catch( IOException ex ) {
+					System.err.println( "unable to cache " + name + " " + ex ) ;
+				}
+			}
+		}
+		if( report != null ) {
+			long wall = System.nanoTime() - started ;
+			allocated = RunReport.allocatedBytes() - allocated ;
+			report.record( name, text == null ? new File(name).length() : text.length, syn.tokensRead(), wall, allocated, outcome, syn.errorCount() ) ;
+		}
+		filesChecked++ ;
+		if( syn.timedOut() ) {
+			filesTimedOut++ ;
+			System.out.println( "312TIMEOUT " + name ) ;
+		}
+	} // end of method checkFile
+
+	/**
+	 *
+	 * Checks every program in the archives in order, while other threads read the
+	 * entries that come next.
+	 *
+	 * @return true if the batch deadline stopped the run before the last program
+	 *
+	 **/
+
+	private boolean checkArchives() throws IOException {
+		for( String archive : archives ) {
+			ArchiveCorpus corpus ;
+			try {
+				corpus = new ArchiveCorpus( archive, archiveThreads ) ;
+			} catch( IOException e ) {
+				System.out.println( "unable to open archive " + archive + " " + e ) ;
+				continue ;
+			}
+			try {
+				List<String> names = corpus.names() ;
+				archiveEntries.addAll( names ) ;
+				for( String name : names ) {
+					fileName = name ;
+					if( batchDeadline > 0 && System.nanoTime() - batchEnd >= 0 )
+						return true ;
+					ArchiveCorpus.Entry e = corpus.next() ;
+					checkFile( e.name, e.text, out ) ;
+				}
+			} finally {
+				System.err.println( corpus.statistics() ) ;
+				corpus.close() ;
+			}
+		}
+		return false ;
+	} // end of method checkArchives
+
+	/**
+	 *
+	 * @param name a file, or an entry in an archive
+	 * @return whether the program is still there, as far as this run can tell
+	 *
+	 **/
+
+	private boolean exists( String name ) {
+		int bang = name.indexOf( "!/" ) ;
+		if( bang < 0 )
+			return new File( name ).exists() ;
+		String archive = name.substring( 0, bang ) ;
+		return archives.contains( archive ) ? archiveEntries.contains( name ) : new File( archive ).exists() ;
+	} // end of method exists
+
+	/**
+	 *
+	 * Checks a program, keeping its res.txt text by program number when watching
+	 * so that res.txt can be rewritten in order as programs change.
+	 *
+	 * @param number the program number
+	 * @param name the file to check
+	 *
+	 **/
+
+	private void checkProgram( int number, String name ) throws IOException {
+		if( !watch ) {
+			checkFile( name, out ) ;
+			return ;
+		}
+		ByteArrayOutputStream results = new ByteArrayOutputStream() ;
+		checkFile( name, new PrintStream( results ) ) ;
+		latestResults.put( number, results.toByteArray() ) ;
+	} // end of method checkProgram
+
+	/**
+	 *
+	 * Rewrites res.txt from the latest results of every program.
+	 *
+	 **/
+
+	private void rewriteResults() throws IOException {
+		String prefix = "Programs Folder" + File.separator + "program" ;
+		BlockGzipOutputStream blocks = gzip ? new BlockGzipOutputStream( "res.txt.gz", gzipThreads ) : null ;
+		try( OutputStream res = blocks != null ? blocks : new BufferedOutputStream( new FileOutputStream( "res.txt" ) ) ) {
+			for( Map.Entry<Integer, byte[]> e : latestResults.entrySet() ) {
+				if( blocks != null )
+					blocks.mark( prefix + e.getKey() ) ;
+				res.write( e.getValue() ) ;
+			}
+		}
+	} // end of method rewriteResults
+
+	/**
+	 *
+	 * Watches the programs folder and re-checks only the programs that change.  Events
+	 * are gathered until the folder has been quiet for a few milliseconds, so one save
+	 * that fires several events is checked once.  Never returns.
+	 *
+	 * @param folder the folder holding the programs
+	 *
+	 **/
+
+	private void watchPrograms( String folder ) throws IOException {
+		WatchService watcher = FileSystems.getDefault().newWatchService() ;
+		Path dir = Paths.get( folder ) ;
+		dir.register( watcher, StandardWatchEventKinds.ENTRY_CREATE,
+			StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE ) ;
+		System.out.println() ;
+		System.out.println( "312WATCH " + folder ) ;
+		System.out.flush() ;
+		// this never returns to close the compressed events, so make them readable as they stand after each update
+		if( eventBlocks != null )
+			eventBlocks.sync() ;
+
+		while( true ) {
+			SortedSet<Integer> changed = new TreeSet<Integer>() ;
+			try {
+				WatchKey key = watcher.take() ;
+				while( key != null ) {
+					for( WatchEvent<?> event : key.pollEvents() ) {
+						String name = String.valueOf( event.context() ) ;
+						if( name.matches( "program[0-9]+" ) )
+							changed.add( Integer.parseInt( name.substring( 7 ) ) ) ;
+					}
+					key.reset() ;
+					key = watcher.poll( watchDebounce, java.util.concurrent.TimeUnit.MILLISECONDS ) ;
+				}
+			} catch( InterruptedException e ) {
+				return ;
+			}
+			if( changed.isEmpty() )
+				continue ;
+
+			long started = System.nanoTime() ;
+			batchEnd = started + batchDeadline * 1000000L ;
+			for( int number : changed ) {
+				fileName = folder + File.separator + "program" + number ;
+				if( new File( fileName ).exists() )
+					checkProgram( number, fileName ) ;
+				else {
+					latestResults.remove( number ) ;
+					if( index != null )
+						index.remove( fileName ) ;
+					if( report != null )
+						report.remove( fileName ) ;
+				}
+			}
+			rewriteResults() ;
+			if( index != null )
+				index.write() ;
+			if( report != null )
+				report.write( reportFile ) ;
+			System.out.println() ;
+			System.out.println( String.format( "312UPDATED %d files in %.2f ms", changed.size(), ( System.nanoTime() - started ) / 1e6 ) ) ;
+			System.out.flush() ;
+			if( eventBlocks != null )
+				eventBlocks.sync() ;
+		}
+	} // end of method watchPrograms
+
+	/**
+	 *
+	 * @return the options that change what a parse produces, for the cache key
+	 *
+	 **/
+
+	private String outputOptions() {
+		String options = "recover=" + recoverErrors ;
+		if( recoverErrors )
+			options += ",maxerrors=" + maxErrors ;
+		if( harden )
+			options += ",limits=" + maxTokenLength + "/" + maxDepth + "/" + maxTokens ;
+		if( semanticChecks )
+			options += ",semantic=" + procedures ;
+		if( optimise )
+			options += ",optimise" ;
+		return options ;
+	} // end of method outputOptions
+
+	/**
+	 *
+	 * main
+	 *
+	 **/
+
+	private void go() throws IOException {
+		String prefix = "Programs Folder" + File.separator + "program";
+		int fileNumber = -1;
+		int exitFlag = 0;
+		PrintStream console = System.out ;
+		if( gzipEvents != null ) {
+			eventBlocks = new BlockGzipOutputStream( gzipEvents, gzipThreads ) ;
+			System.setOut( new PrintStream( eventBlocks ) ) ;
+		}
+		System.out.println( "312START" );
+		String outputFile = gzip ? "res.txt.gz" : new String( "res.txt" );
+		boolean goon = true;
+		batchEnd = System.nanoTime() + batchDeadline * 1000000L ;
+		if( profile )
+			ParseProfiler.enable( profileSample ) ;
+		if( reportFile != null )
+			report = new RunReport() ;
+		if( cacheDir != null )
+			cache = new ResultCache( cacheDir, cacheSize << 20, outputOptions() ) ;
+		if( indexFile != null )
+			index = new CorpusIndex( indexFile ) ;
+		if( optimise ) {
+			// the index is of the source as written, so it sees the events before they are optimised
+			optimiser = new Optimiser( new Generate() ) ;
+			collector = new CorpusIndex.Collector( optimiser ) ;
+		}
+		if( sharedTree ) {
+			// the tree is of the source as written, ahead of everything else
+			trees = new SharedTree() ;
+			builder = new SharedTree.Builder( trees, index != null ? collector : optimiser != null ? optimiser : new Generate() ) ;
+		}
+		if( fused ) {
+			// the fused analyser only recognises, so anything more needs the two-stage one
+			if( recoverErrors || harden || semanticChecks || profile || fileTimeout > 0 || batchDeadline > 0 )
+				System.err.println( "-fused ignored: -recover, -semantic, -profile, limits and time-outs need the two-stage analyser" ) ;
+			else
+				fusedAnalyser = new FusedAnalyser() ;
+		}
+		if( sharedFile != null ) {
+			shared = SharedResults.create( sharedFile, sharedSlots, sharedSize << 20 ) ;
+			// first in line, so it sees the tokens as the source has them
+			sharedTokens = new SharedResults.Tokens( builder != null ? builder : index != null ? collector : optimiser != null ? optimiser : new Generate() ) ;
+		}
+		boolean batchExpired = false ;
+
+		try {
+			if( gzip )
+				out = new PrintStream( resultBlocks = new BlockGzipOutputStream( outputFile, gzipThreads ) ) ;
+			else
+				out = new PrintStream( new FileOutputStream(outputFile) );
+		} catch( Exception e ) {
+			System.out.println("unable to open output file "+e);
+			System.exit(0);
+		}
+
+		if( !archives.isEmpty() ) {
+			goon = false ;
+			batchExpired = checkArchives() ;
+		}
+		while( goon ) {
+			fileNumber++ ;
+			fileName = prefix + fileNumber;
+			goon = ((new File(fileName)).exists());
+			if( goon && batchDeadline > 0 && System.nanoTime() - batchEnd >= 0 ) {
+				batchExpired = true ;
+				break ;
+			}
+			if( goon ) {
+				checkProgram( fileNumber, fileName ) ;
+			} else System.out.println(fileName+" does not exist");
+		}
+
+		if( batchExpired ) {
+			String summary = "checked " + filesChecked + " files (" + filesTimedOut + " timed out), stopped before " + fileName ;
+			System.out.println() ;
+			System.out.println( "312PARTIAL " + summary ) ;
+			out.println( "Batch Deadline Reached" ) ;
+			out.println( "\tAfter " + batchDeadline + " ms, " + summary + "\r\n" ) ;
+		}
+
+		if( profile )
+			System.err.print( ParseProfiler.snapshot() ) ;
+		if( report != null )
+			report.write( reportFile ) ;
+		if( cache != null ) {
+			cache.evict() ;
+			System.err.println( cache.statistics() ) ;
+		}
+		if( index != null ) {
+			// programs past the last one checked have gone, unless the run stopped early
+			for( String f : new ArrayList<String>( index.files() ) )
+				if( !batchExpired && !exists( f ) )
+					index.remove( f ) ;
+			index.write() ;
+			System.err.println( index.statistics() ) ;
+		}
+		if( optimiser != null )
+			System.err.println( optimiser.statistics() ) ;
+		if( trees != null )
+			System.err.println( trees.statistics() ) ;
+		if( shared != null )
+			System.err.println( shared.statistics() ) ;
+
+		System.out.println() ;
+		System.out.println("312FINISH") ;
+		out.flush();out.close();
+		if( resultBlocks != null )
+			System.err.println( out.checkError() ? "unable to write " + outputFile : resultBlocks.statistics() ) ;
+		// archives do not change under a run, so there is nothing to watch
+		if( watch && archives.isEmpty() ) {
+			rewriteResults() ;
+			watchPrograms( "Programs Folder" ) ;
+		}
+		if( shared != null )
+			shared.close() ;
+		if( eventBlocks != null ) {
+			// PrintStream keeps its errors to itself, so close the compressed stream directly to hear of them
+			System.out.flush() ;
+			System.setOut( console ) ;
+			eventBlocks.close() ;
+			System.err.println( eventBlocks.statistics() ) ;
+		}
+		System.exit(exitFlag) ;
+	} // end of main method
+
+	public static void main(String args[]) throws IOException {
+		Compile c = new Compile();
+		for( int i = 0; i < args.length; i++ ) {
+			if( args[i].equals("-recover") )
+				c.recoverErrors = true ;
+			else if( args[i].equals("-maxerrors") && i + 1 < args.length )
+				c.maxErrors = Integer.parseInt( args[++i] ) ;
+			else if( args[i].equals("-timeout") && i + 1 < args.length )
+				c.fileTimeout = Long.parseLong( args[++i] ) ;
+			else if( args[i].equals("-deadline") && i + 1 < args.length )
+				c.batchDeadline = Long.parseLong( args[++i] ) ;
+			else if( args[i].equals("-report") && i + 1 < args.length )
+				c.reportFile = args[++i] ;
+			else if( args[i].equals("-cache") && i + 1 < args.length )
+				c.cacheDir = args[++i] ;
+			else if( args[i].equals("-cachesize") && i + 1 < args.length )
+				c.cacheSize = Long.parseLong( args[++i] ) ;
+			else if( args[i].equals("-index") && i + 1 < args.length )
+				c.indexFile = args[++i] ;
+			else if( args[i].equals("-semantic") )
+				c.semanticChecks = true ;
+			else if( args[i].equals("-procedures") && i + 1 < args.length ) {
+				c.semanticChecks = true ;
+				c.procedures = Arrays.asList( args[++i].split( "," ) ) ;
+			}
+			else if( args[i].equals("-sharedtree") )
+				c.sharedTree = true ;
+			else if( args[i].equals("-optimise") )
+				c.optimise = true ;
+			else if( args[i].equals("-fused") )
+				c.fused = true ;
+			else if( args[i].equals("-archive") && i + 1 < args.length )
+				c.archives.add( args[++i] ) ;
+			else if( args[i].equals("-archivethreads") && i + 1 < args.length )
+				c.archiveThreads = Integer.parseInt( args[++i] ) ;
+			else if( args[i].equals("-gzip") )
+				c.gzip = true ;
+			else if( args[i].equals("-gzipevents") && i + 1 < args.length )
+				c.gzipEvents = args[++i] ;
+			else if( args[i].equals("-gzipthreads") && i + 1 < args.length )
+				c.gzipThreads = Integer.parseInt( args[++i] ) ;
+			else if( args[i].equals("-shared") && i + 1 < args.length )
+				c.sharedFile = args[++i] ;
+			else if( args[i].equals("-sharedslots") && i + 1 < args.length )
+				c.sharedSlots = Integer.parseInt( args[++i] ) ;
+			else if( args[i].equals("-sharedsize") && i + 1 < args.length )
+				c.sharedSize = Long.parseLong( args[++i] ) ;
+			else if( args[i].equals("-watch") )
+				c.watch = true ;
+			else if( args[i].equals("-profile") )
+				c.profile = true ;
+			else if( args[i].equals("-profilesample") && i + 1 < args.length ) {
+				c.profile = true ;
+				c.profileSample = Integer.parseInt( args[++i] ) ;
+			}
+			else if( args[i].equals("-harden") )
+				c.harden = true ;
+			else if( args[i].equals("-maxtokenlength") && i + 1 < args.length ) {
+				c.harden = true ;
+				c.maxTokenLength = Integer.parseInt( args[++i] ) ;
+			}
+			else if( args[i].equals("-maxdepth") && i + 1 < args.length ) {
+				c.harden = true ;
+				c.maxDepth = Integer.parseInt( args[++i] ) ;
+			}
+			else if( args[i].equals("-maxtokens") && i + 1 < args.length ) {
+				c.harden = true ;
+				c.maxTokens = Integer.parseInt( args[++i] ) ;
+			}
+			else {
+				System.out.println( "unknown option " + args[i] ) ;
+				System.exit(1) ;
+			}
+		}
+		c.go();
+	};
+
+} // end of class Compile
@@ -0,0 +1,625 @@
+
+/**
+ *
+ * On-disk inverted index from identifier and procedure names to the places
+ * they appear across a corpus of programs: the file, the line, and whether
+ * the name is assigned, read or called there.
+ *
+ * The index is filled from the events of ordinary parses through a
+ * Collector, so building it costs no extra pass over the source.  It is kept
+ * in one file laid out for memory-mapped lookup:
+ *
+ *   header     magic, file count, name count, and where each section starts
+ *   files      a table of entry offsets, then for each file its content hash
+ *              and path, numbered in path order
+ *   names      a table of entry offsets, then for each name its UTF-8 bytes,
+ *              where its postings start and how many there are, in byte order
+ *   postings   for each name, places sorted by file and line, each as a
+ *              varint file number delta and a varint of the line (a delta
+ *              when the file is unchanged) shifted left past the two role bits
+ *
+ * A lookup binary-searches the mapped name table and decodes one posting
+ * list, so it touches a few pages whatever the size of the corpus.  Updates
+ * replace the postings of files whose hashes have changed and drop files
+ * that are gone; writing merges them with the kept postings into a new file,
+ * renamed over the old one so readers see a whole index or the previous one.
+ *
+ **/
+
+import java.io.* ;
+import java.nio.* ;
+import java.nio.channels.* ;
+import java.nio.charset.StandardCharsets ;
+import java.nio.file.* ;
+import java.util.* ;
+
+public class CorpusIndex
+{
+	/** The roles a name can play at a place. */
+	public static final int assigned = 0, read = 1, called = 2 ;
+	private static final String[] roleNames = { "assigned", "read", "called" } ;
+
+	/** Marks an index file, and changes whenever the layout does. */
+	private static final int magic = 0x33313249 ;
+	private static final int headerSize = 40 ;
+
+	/** One place a name appears. */
+	public static class Hit
+	{
+		public final String file ;
+		public final int line, role ;
+
+		Hit( String f, int l, int r )
+		{
+			file = f ;
+			line = l ;
+			role = r ;
+		} // end of constructor method
+
+		public String toString()
+		{
+			return file + ":" + line + " " + roleNames[role] ;
+		} // end of method toString
+	} // end of class Hit
+
+	/** Collects the names in one parse from its events, passing every event on. */
+	public static class Collector extends Generate
+	{
+		/** Where to pass events on to, or null to drop them. */
+		private final Generate next ;
+		private final ArrayDeque<String> open = new ArrayDeque<String>() ;
+		/** The procedure named by the call being parsed. */
+		private String calling ;
+		/** Is the next identifier the target of an assignment, including those in a for statement's header? */
+		private boolean target ;
+		private String[] names = new String[64] ;
+		/** Each place as its line shifted left past the role. */
+		private long[] places = new long[64] ;
+		private int count ;
+
+		/** @param n The generator to pass events on to, or null to drop them. */
+		public Collector( Generate n )
+		{
+			next = n ;
+		} // end of constructor method
+
+		/** Forgets the names collected so far, ready for the next file. */
+		public void clear()
+		{
+			open.clear() ;
+			calling = null ;
+			target = false ;
+			count = 0 ;
+		} // end of method clear
+
+		private void add( String name, int line, int role )
+		{
+			if( count == names.length )
+			{
+				names = Arrays.copyOf( names, count * 2 ) ;
+				places = Arrays.copyOf( places, count * 2 ) ;
+			}
+			names[count] = name ;
+			places[count] = ( (long) line << 2 ) | role ;
+			count++ ;
+		} // end of method add
+
+		public void commenceNonterminal( String name )
+		{
+			open.push( name ) ;
+			// only until anything else opens, so a broken assignment does not mark a later name
+			target = "AssignmentStatement".equals( name ) ;
+			if( next != null )
+				next.commenceNonterminal( name ) ;
+		} // end of method commenceNonterminal
+
+		public void finishNonterminal( String name )
+		{
+			open.pop() ;
+			target = false ;
+			if( next != null )
+				next.finishNonterminal( name ) ;
+		} // end of method finishNonterminal
+
+		public void insertTerminal( Token token )
+		{
+			if( token.symbol == Token.identifier )
+			{
+				String in = open.peek() ;
+				// a for statement's control variable is set by the assignments in its header
+				if( target )
+				{
+					target = false ;
+					add( token.text, token.lineNumber, assigned ) ;
+				}
+				else if( "ProcedureStatement".equals( in ) )
+				{
+					calling = token.text ;
+					add( token.text, token.lineNumber, called ) ;
+				}
+				// get reads values into its arguments
+				else if( "ArgumentList".equals( in ) && "get".equals( calling ) )
+					add( token.text, token.lineNumber, assigned ) ;
+				else
+					add( token.text, token.lineNumber, read ) ;
+			}
+			if( next != null )
+				next.insertTerminal( token ) ;
+		} // end of method insertTerminal
+
+		public void reportSuccess()
+		{
+			if( next != null )
+				next.reportSuccess() ;
+		} // end of method reportSuccess
+
+		public void reportError( Token token, String explanatoryMessage ) throws CompilationException
+		{
+			if( next != null )
+				next.reportError( token, explanatoryMessage ) ;
+			else
+				super.reportError( token, explanatoryMessage ) ;
+		} // end of method reportError
+	} // end of class Collector
+
+	/** The names and places collected from a file that is waiting to be written. */
+	private static class Pending
+	{
+		long hash ;
+		String[] names ;
+		long[] places ;
+	} // end of class Pending
+
+	/** A growable list of packed places. */
+	private static class Places
+	{
+		long[] values = new long[4] ;
+		int size ;
+
+		void add( long v )
+		{
+			if( size == values.length )
+				values = Arrays.copyOf( values, size * 2 ) ;
+			values[size++] = v ;
+		} // end of method add
+	} // end of class Places
+
+	private final Path path ;
+	/** The index as last written, mapped, or null if there is none yet. */
+	private ByteBuffer map ;
+	private int fileCount, termCount ;
+	private long filesAt, termsAt, postingsAt ;
+	/** The files in the mapped index by path, read the first time an update needs them. */
+	private Map<String, Integer> fileIds ;
+	private long[] fileHashes ;
+	/** File paths decoded so far by lookups, by file number. */
+	private String[] paths ;
+
+	/** Files whose mapped postings are replaced or removed at the next write. */
+	private final Set<String> dropped = new HashSet<String>() ;
+	private final Map<String, Pending> pending = new HashMap<String, Pending>() ;
+
+	/** Opens an index, or starts an empty one if the file does not exist yet.
+
+	  @param fileName The index file.
+	  @throws IOException if the file exists but is not an index.
+	*/
+	public CorpusIndex( String fileName ) throws IOException
+	{
+		path = Paths.get( fileName ) ;
+		load() ;
+	} // end of constructor method
+
+	/** Maps the index file and reads its header. */
+	private void load() throws IOException
+	{
+		map = null ;
+		fileIds = null ;
+		fileCount = termCount = 0 ;
+		paths = new String[0] ;
+		if( !Files.exists( path ) )
+			return ;
+		try( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) )
+		{
+			map = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ) ;
+		}
+		if( map.capacity() < headerSize || map.getInt( 0 ) != magic )
+			throw new IOException( path + " is not an index" ) ;
+		fileCount = map.getInt( 4 ) ;
+		termCount = map.getInt( 8 ) ;
+		filesAt = map.getLong( 16 ) ;
+		termsAt = map.getLong( 24 ) ;
+		postingsAt = map.getLong( 32 ) ;
+		paths = new String[fileCount] ;
+	} // end of method load
+
+	/** Reads the whole file table, which only updates need. */
+	private Map<String, Integer> fileIds()
+	{
+		if( fileIds == null )
+		{
+			fileIds = new HashMap<String, Integer>( fileCount * 2 ) ;
+			fileHashes = new long[fileCount] ;
+			for( int i = 0; i < fileCount; i++ )
+			{
+				int at = fileEntry( i ) ;
+				fileHashes[i] = map.getLong( at ) ;
+				fileIds.put( path( i ), i ) ;
+			}
+		}
+		return fileIds ;
+	} // end of method fileIds
+
+	/** @return the path of a file in the mapped index. */
+	private String path( int id )
+	{
+		if( paths[id] == null )
+			paths[id] = string( fileEntry( id ) + 8 ) ;
+		return paths[id] ;
+	} // end of method path
+
+	private int fileEntry( int id )
+	{
+		return (int) ( filesAt + map.getInt( (int) filesAt + 4 * id ) ) ;
+	} // end of method fileEntry
+
+	private int termEntry( int i )
+	{
+		return (int) ( termsAt + map.getInt( (int) termsAt + 4 * i ) ) ;
+	} // end of method termEntry
+
+	/** Reads a length-prefixed UTF-8 string from the mapped index. */
+	private String string( int at )
+	{
+		byte[] b = new byte[map.getInt( at )] ;
+		map.get( at + 4, b ) ;
+		return new String( b, StandardCharsets.UTF_8 ) ;
+	} // end of method string
+
+	private static int readVarint( ByteBuffer b, int[] at )
+	{
+		int value = 0, shift = 0, x ;
+		do
+		{
+			x = b.get( at[0]++ ) ;
+			value |= ( x & 0x7f ) << shift ;
+			shift += 7 ;
+		}
+		while( ( x & 0x80 ) != 0 ) ;
+		return value ;
+	} // end of method readVarint
+
+	private static void writeVarint( ByteArrayOutputStream out, long value )
+	{
+		while( ( value & ~0x7fL ) != 0 )
+		{
+			out.write( (int) ( value & 0x7f ) | 0x80 ) ;
+			value >>>= 7 ;
+		}
+		out.write( (int) value ) ;
+	} // end of method writeVarint
+
+	/** Decodes a name's postings from the mapped index.
+
+	  @param entry Where the name's entry starts.
+	  @param visit Given each place as a file number and a packed line and role.
+	*/
+	private void decode( int entry, java.util.function.BiConsumer<Integer, Integer> visit )
+	{
+		int nameLength = map.getInt( entry ) ;
+		int[] at = { (int) ( postingsAt + map.getLong( entry + 4 + nameLength ) ) } ;
+		int count = map.getInt( entry + 12 + nameLength ) ;
+		int file = 0, line = 0 ;
+		for( int i = 0; i < count; i++ )
+		{
+			int fileDelta = readVarint( map, at ) ;
+			int packed = readVarint( map, at ) ;
+			file += fileDelta ;
+			line = ( fileDelta == 0 ? line : 0 ) + ( packed >>> 2 ) ;
+			visit.accept( file, ( line << 2 ) | ( packed & 3 ) ) ;
+		}
+	} // end of method decode
+
+	/** Compares a name in the mapped index with a key, byte by byte, unsigned. */
+	private int compare( int entry, byte[] key )
+	{
+		int length = map.getInt( entry ) ;
+		for( int i = 0; i < Math.min( length, key.length ); i++ )
+		{
+			int c = ( map.get( entry + 4 + i ) & 0xff ) - ( key[i] & 0xff ) ;
+			if( c != 0 )
+				return c ;
+		}
+		return length - key.length ;
+	} // end of method compare
+
+	/** Finds every place a name appears.
+
+	  @param name The identifier or procedure name, as written.
+	  @return the places, by file and line.
+	*/
+	public List<Hit> lookup( String name )
+	{
+		final List<Hit> hits = new ArrayList<Hit>() ;
+		if( map == null )
+			return hits ;
+		byte[] key = name.getBytes( StandardCharsets.UTF_8 ) ;
+		int lo = 0, hi = termCount - 1 ;
+		while( lo <= hi )
+		{
+			int mid = ( lo + hi ) >>> 1 ;
+			int entry = termEntry( mid ) ;
+			int c = compare( entry, key ) ;
+			if( c < 0 )
+				lo = mid + 1 ;
+			else if( c > 0 )
+				hi = mid - 1 ;
+			else
+			{
+				decode( entry, ( file, packed ) -> hits.add( new Hit( path( file ), packed >>> 2, packed & 3 ) ) ) ;
+				break ;
+			}
+		}
+		return hits ;
+	} // end of method lookup
+
+	/** @return true if the index already holds a file with this content. */
+	public boolean isCurrent( String file, long hash )
+	{
+		if( pending.containsKey( file ) )
+			return pending.get( file ).hash == hash ;
+		Integer id = fileIds().get( file ) ;
+		return id != null && !dropped.contains( file ) && fileHashes[id] == hash ;
+	} // end of method isCurrent
+
+	/** Replaces a file's places with those collected from its latest parse.
+
+	  @param file The file.
+	  @param hash The hash of its content.
+	  @param c The collector that saw its parse.
+	*/
+	public void replace( String file, long hash, Collector c )
+	{
+		Pending p = new Pending() ;
+		p.hash = hash ;
+		p.names = Arrays.copyOf( c.names, c.count ) ;
+		p.places = Arrays.copyOf( c.places, c.count ) ;
+		dropped.add( file ) ;
+		pending.put( file, p ) ;
+	} // end of method replace
+
+	/** Removes a file that no longer exists. */
+	public void remove( String file )
+	{
+		dropped.add( file ) ;
+		pending.remove( file ) ;
+	} // end of method remove
+
+	/** @return the paths of the files in the index as last written. */
+	public Set<String> files()
+	{
+		return Collections.unmodifiableSet( fileIds().keySet() ) ;
+	} // end of method files
+
+	/** @return true if there are changes waiting to be written. */
+	public boolean changed()
+	{
+		return !dropped.isEmpty() ;
+	} // end of method changed
+
+	/** Merges the changes into a new index file and maps it. */
+	public void write() throws IOException
+	{
+		if( map != null && !changed() )
+			return ;
+
+		// number the files that stay, and the new ones, in path order
+		TreeMap<String, Long> kept = new TreeMap<String, Long>() ;
+		for( Map.Entry<String, Integer> e : fileIds().entrySet() )
+			if( !dropped.contains( e.getKey() ) )
+				kept.put( e.getKey(), fileHashes[e.getValue()] ) ;
+		for( Map.Entry<String, Pending> e : pending.entrySet() )
+			kept.put( e.getKey(), e.getValue().hash ) ;
+		Map<String, Integer> newIds = new HashMap<String, Integer>() ;
+		for( String f : kept.keySet() )
+			newIds.put( f, newIds.size() ) ;
+		final int[] renumber = new int[fileCount] ;
+		for( Map.Entry<String, Integer> e : fileIds().entrySet() )
+			renumber[e.getValue()] = dropped.contains( e.getKey() ) ? -1 : newIds.get( e.getKey() ) ;
+
+		// gather every place by name, packed so that sorting orders them by file, line and role
+		Map<String, Places> terms = new HashMap<String, Places>() ;
+		for( int i = 0; i < termCount; i++ )
+		{
+			int entry = termEntry( i ) ;
+			final Places p = new Places() ;
+			decode( entry, ( file, packed ) -> {
+				if( renumber[file] >= 0 )
+					p.add( ( (long) renumber[file] << 34 ) | ( packed & 0xffffffffL ) ) ;
+			} ) ;
+			if( p.size > 0 )
+				terms.put( string( entry ), p ) ;
+		}
+		for( Map.Entry<String, Pending> e : pending.entrySet() )
+		{
+			long file = (long) newIds.get( e.getKey() ) << 34 ;
+			Pending p = e.getValue() ;
+			for( int i = 0; i < p.names.length; i++ )
+			{
+				Places places = terms.get( p.names[i] ) ;
+				if( places == null )
+					terms.put( p.names[i], places = new Places() ) ;
+				places.add( file | p.places[i] ) ;
+			}
+		}
+
+		byte[][] names = new byte[terms.size()][] ;
+		int n = 0 ;
+		for( String t : terms.keySet() )
+			names[n++] = t.getBytes( StandardCharsets.UTF_8 ) ;
+		Arrays.sort( names, Arrays::compareUnsigned ) ;
+
+		// encode the postings, name by name, dropping repeats of a place
+		ByteArrayOutputStream postings = new ByteArrayOutputStream() ;
+		long[] starts = new long[names.length] ;
+		int[] counts = new int[names.length] ;
+		for( int i = 0; i < names.length; i++ )
+		{
+			Places p = terms.get( new String( names[i], StandardCharsets.UTF_8 ) ) ;
+			Arrays.sort( p.values, 0, p.size ) ;
+			starts[i] = postings.size() ;
+			long file = 0, line = 0, previous = -1 ;
+			for( int j = 0; j < p.size; j++ )
+			{
+				long v = p.values[j] ;
+				if( v == previous )
+					continue ;
+				previous = v ;
+				long f = v >>> 34, l = ( v >>> 2 ) & 0xffffffffL, role = v & 3 ;
+				writeVarint( postings, f - file ) ;
+				writeVarint( postings, ( ( f == file && counts[i] > 0 ? l - line : l ) << 2 ) | role ) ;
+				file = f ;
+				line = l ;
+				counts[i]++ ;
+			}
+		}
+
+		Path temp = Files.createTempFile( path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp" ) ;
+		try
+		{
+			try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( temp ) ) ) )
+			{
+				byte[][] paths = new byte[kept.size()][] ;
+				int i = 0 ;
+				long fileBytes = 4L * paths.length ;
+				for( String f : kept.keySet() )
+				{
+					paths[i] = f.getBytes( StandardCharsets.UTF_8 ) ;
+					fileBytes += 12 + paths[i++].length ;
+				}
+				long termBytes = 4L * names.length ;
+				for( byte[] t : names )
+					termBytes += 16 + t.length ;
+
+				out.writeInt( magic ) ;
+				out.writeInt( paths.length ) ;
+				out.writeInt( names.length ) ;
+				out.writeInt( 0 ) ;
+				out.writeLong( headerSize ) ;
+				out.writeLong( headerSize + fileBytes ) ;
+				out.writeLong( headerSize + fileBytes + termBytes ) ;
+
+				int offset = 4 * paths.length ;
+				for( byte[] p : paths )
+				{
+					out.writeInt( offset ) ;
+					offset += 12 + p.length ;
+				}
+				i = 0 ;
+				for( long hash : kept.values() )
+				{
+					out.writeLong( hash ) ;
+					out.writeInt( paths[i].length ) ;
+					out.write( paths[i++] ) ;
+				}
+
+				offset = 4 * names.length ;
+				for( byte[] t : names )
+				{
+					out.writeInt( offset ) ;
+					offset += 16 + t.length ;
+				}
+				for( i = 0; i < names.length; i++ )
+				{
+					out.writeInt( names[i].length ) ;
+					out.write( names[i] ) ;
+					out.writeLong( starts[i] ) ;
+					out.writeInt( counts[i] ) ;
+				}
+				postings.writeTo( out ) ;
+			}
+			Files.move( temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING ) ;
+		}
+		finally
+		{
+			Files.deleteIfExists( temp ) ;
+		}
+		dropped.clear() ;
+		pending.clear() ;
+		load() ;
+	} // end of method write
+
+	/** @return the size of the index as last written, for the end of a run. */
+	public String statistics()
+	{
+		return "index: " + fileCount + " files, " + termCount + " names, " + ( map == null ? 0 : map.capacity() ) + " bytes" ;
+	} // end of method statistics
+
+	/** Collects the files under a path. */
+	private static void files( Path p, List<Path> into ) throws IOException
+	{
+		if( Files.isDirectory( p ) )
+		{
+			try( java.util.stream.Stream<Path> walk = Files.walk( p ) )
+			{
+				walk.filter( Files::isRegularFile ).sorted().forEach( into::add ) ;
+			}
+		}
+		else
+			into.add( p ) ;
+	} // end of method files
+
+	/** Queries an index, or brings it up to date with some files and folders.
+
+	  @param args "INDEX NAME..." to look names up, or "-update INDEX PATH..." to index files.
+	*/
+	public static void main( String[] args ) throws IOException
+	{
+		if( args.length >= 2 && args[0].equals( "-update" ) )
+		{
+			CorpusIndex index = new CorpusIndex( args[1] ) ;
+			List<Path> paths = new ArrayList<Path>() ;
+			for( int i = 2; i < args.length; i++ )
+				files( Paths.get( args[i] ), paths ) ;
+			long started = System.nanoTime() ;
+			int parsed = 0 ;
+			Collector collector = new Collector( null ) ;
+			PrintStream nowhere = new PrintStream( OutputStream.nullOutputStream() ) ;
+			for( String f : index.files() )
+				if( !Files.exists( Paths.get( f ) ) )
+					index.remove( f ) ;
+			for( Path p : paths )
+			{
+				String name = p.toString() ;
+				long hash = ResultCache.hash( Files.readAllBytes( p ), 0 ) ;
+				if( index.isCurrent( name, hash ) )
+					continue ;
+				SyntaxAnalyser syn = AnalyserPool.forFile( name ) ;
+				collector.clear() ;
+				syn.setGenerate( collector ) ;
+				syn.parse( nowhere ) ;
+				index.replace( name, hash, collector ) ;
+				parsed++ ;
+			}
+			index.write() ;
+			System.err.println( String.format( "indexed %d of %d files in %.1f ms; %s", parsed, paths.size(),
+				( System.nanoTime() - started ) / 1e6, index.statistics() ) ) ;
+			return ;
+		}
+		if( args.length < 2 )
+		{
+			System.err.println( "usage: java CorpusIndex INDEX NAME...  or  java CorpusIndex -update INDEX PATH..." ) ;
+			System.exit( 1 ) ;
+		}
+		CorpusIndex index = new CorpusIndex( args[0] ) ;
+		for( int i = 1; i < args.length; i++ )
+		{
+			long started = System.nanoTime() ;
+			List<Hit> hits = index.lookup( args[i] ) ;
+			long took = System.nanoTime() - started ;
+			for( Hit h : hits )
+				System.out.println( args[i] + " " + h ) ;
+			System.err.println( String.format( "%s: %d places in %.3f ms", args[i], hits.size(), took / 1e6 ) ) ;
+		}
+	} // end of main method
+} // end of class CorpusIndex
@@ -0,0 +1,841 @@
+
+/**
+ *
+ * A syntax analyser with the lexical analyser folded into it.  The whole
+ * input is decoded into one character array, and each terminal is scanned
+ * straight out of it into a handful of int fields: its kind, where its text
+ * starts and ends, its line and its offset.  No Token or String is made for
+ * a terminal unless a generator is to be shown it, and when only the outcome
+ * is wanted (setValidateOnly) none is made at all until an error is found.
+ *
+ * The grammar procedures are those of SyntaxAnalyser, in the same order and
+ * with the same events and error messages, and the scanner follows
+ * LexicalAnalyser character for character: its lines and offsets, keywords
+ * matched regardless of case, comments, strings that may run over line
+ * ends, and its ERROR tokens.  SyntaxAnalyser stays the reference: "java
+ * FusedAnalyser -diff PATH..." runs both over every file and reports any
+ * difference in events, diagnostics or token counts.
+ *
+ * Only plain recognition is done here.  Error recovery, semantic checks,
+ * limits, time-outs and profiling are left to SyntaxAnalyser, and parse
+ * refuses to run with any of them switched on.
+ *
+ **/
+
+import java.io.* ;
+import java.nio.* ;
+import java.nio.charset.* ;
+import java.nio.file.* ;
+import java.util.* ;
+import java.util.stream.* ;
+
+public class FusedAnalyser extends AbstractSyntaxAnalyser
+{
+	/** What the lexical analyser reads at the end of the input, and at a NUL character. */
+	private static final char EOF = '\000' ;
+
+	/** The reserved words in lower case, and their symbols. */
+	private static final String[] reserved = {
+		"begin", "call", "do", "else", "end", "float", "if", "integer", "is",
+		"loop", "procedure", "string", "then", "until", "while", "for"
+	} ;
+	private static final int[] reservedSymbols = {
+		Token.beginSymbol, Token.callSymbol, Token.doSymbol, Token.elseSymbol, Token.endSymbol,
+		Token.floatSymbol, Token.ifSymbol, Token.integerSymbol, Token.isSymbol, Token.loopSymbol,
+		Token.procedureSymbol, Token.stringSymbol, Token.thenSymbol, Token.untilSymbol,
+		Token.whileSymbol, Token.forSymbol
+	} ;
+
+	private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+		.onMalformedInput( CodingErrorAction.REPLACE )
+		.onUnmappableCharacter( CodingErrorAction.REPLACE ) ;
+
+	private String fileName ;
+	/** The input, with every line end made a single '\n' and one after the last line, as the lexical analyser sees it. */
+	private char[] text = new char[8192] ;
+	private int length ;
+	/** Where the scanner is: the character it is looking at, or length at the end. */
+	private int p ;
+	/** The line the scanner is on, counted as the lexical analyser counts it. */
+	private int line ;
+	/** The number of terminals scanned, counted as the lexical analyser counts tokens. */
+	private int tokens ;
+	/** Pass only reportSuccess and reportError on to the generator? */
+	private boolean validateOnly ;
+
+	/* The terminal scanned next: its symbol, the span of its text, its line and offset. */
+	private int symbol, textStart, textEnd, tokenLine, tokenOffset ;
+	/** Why the terminal is an ERROR, if not just an unexpected character. */
+	private String errorMessage ;
+
+	/** Makes an analyser with nothing to read; reset points it at an input. */
+	public FusedAnalyser()
+	{
+		fileName = "" ;
+	} // end of constructor method
+
+	/** Makes an analyser for a file.
+
+	  @param fileName The file to recognise.
+	  @throws IOException if the file cannot be read.
+	*/
+	public FusedAnalyser( String fileName ) throws IOException
+	{
+		reset( fileName ) ;
+	} // end of constructor method
+
+	/** Points the analyser at a file.  The generator and setValidateOnly are kept, and other options are put back as they are in a new analyser.
+
+	  @param fileName The file to recognise.
+	  @throws IOException if the file cannot be read.
+	*/
+	public void reset( String fileName ) throws IOException
+	{
+		reset() ;
+		this.fileName = fileName ;
+		decoder.reset() ;
+		load( decoder.decode( ByteBuffer.wrap( Files.readAllBytes( Paths.get( fileName ) ) ) ) ) ;
+	} // end of method reset
+
+	/** Points the analyser at text that is not in a file of its own, as reset( fileName ) does.
+
+	  @param fileName The name of the text, for messages.
+	  @param source The text to recognise.
+	  @throws IOException if the text cannot be read.
+	*/
+	public void reset( String fileName, Reader source ) throws IOException
+	{
+		reset() ;
+		this.fileName = fileName ;
+		StringBuilder all = new StringBuilder() ;
+		char[] buffer = new char[8192] ;
+		for( int n; ( n = source.read( buffer ) ) >= 0; )
+			all.append( buffer, 0, n ) ;
+		source.close() ;
+		load( all ) ;
+	} // end of method reset
+
+	/** Copies the input in, with its line ends as SourceReader.readLine finds them. */
+	private void load( CharSequence source )
+	{
+		int n = source.length() ;
+		if( text.length < n + 1 )
+			text = new char[Math.max( n + 1, text.length * 2 )] ;
+		length = 0 ;
+		for( int i = 0; i < n; i++ )
+		{
+			char c = source.charAt( i ) ;
+			if( c == '\r' )
+			{
+				c = '\n' ;
+				if( i + 1 < n && source.charAt( i + 1 ) == '\n' )
+					i++ ;
+			}
+			text[length++] = c ;
+		}
+		// the last line ends whether or not the file says so
+		if( length > 0 && text[length - 1] != '\n' )
+			text[length++] = '\n' ;
+		p = 0 ;
+		line = 0 ;
+		tokens = 0 ;
+	} // end of method load
+
+	/** Passes only the outcome of each parse to the generator, so no Token is made for a terminal that is accepted. */
+	public void setValidateOnly( boolean only )
+	{
+		validateOnly = only ;
+	} // end of method setValidateOnly
+
+	/** Limits are not kept by this analyser; asking for them makes parse refuse. */
+	@Override
+	public void setLimits( int maxTokenLength, int nesting, int maxTokens )
+	{
+		hardened = true ;
+	} // end of method setLimits
+
+	/** Time-outs are not kept by this analyser; asking for one makes parse refuse. */
+	@Override
+	public void setCancellation( CancellationToken c )
+	{
+		cancel = c ;
+	} // end of method setCancellation
+
+	@Override
+	String sourceName()
+	{
+		return fileName ;
+	} // end of method sourceName
+
+	@Override
+	public int tokensRead()
+	{
+		return tokens ;
+	} // end of method tokensRead
+
+	/** @return the character after the current one, having moved on to it. */
+	private char advance()
+	{
+		if( p < length )
+			p++ ;
+		return p < length ? text[p] : EOF ;
+	} // end of method advance
+
+	/** @return the offset the lexical analyser gives the current character; at the end it stays on the last line end. */
+	private int position()
+	{
+		return p < length ? p : length - 1 ;
+	} // end of method position
+
+	private void terminal( int s, int start, int end )
+	{
+		symbol = s ;
+		textStart = start ;
+		textEnd = end ;
+		tokenLine = line ;
+	} // end of method terminal
+
+	/** Scans the next terminal, as LexicalAnalyser.getNextToken does. */
+	private void scan()
+	{
+		tokens++ ;
+		errorMessage = null ;
+		char c = p < length ? text[p] : EOF ;
+		while( c == ' ' || c == '\t' || c == '\n' || c == '-' )
+		{
+			if( c == '-' )
+			{
+				int minus = position() ;
+				c = advance() ;
+				if( c != '-' )
+				{
+					terminal( Token.minusSymbol, minus, minus + 1 ) ;
+					tokenOffset = minus ;
+					return ;
+				}
+				while( c != '\n' && c != EOF )
+					c = advance() ;
+			}
+			if( c == '\n' )
+				line++ ;
+			c = advance() ;
+		}
+		int start = p ;
+		tokenOffset = position() ;
+
+		if( Character.isLetter( c ) )
+		{
+			while( Character.isLetter( c ) || Character.isDigit( c ) )
+				c = advance() ;
+			terminal( word( start, p ), start, p ) ;
+		}
+		else if( Character.isDigit( c ) )
+		{
+			while( Character.isDigit( c ) )
+				c = advance() ;
+			if( c == '.' )
+			{
+				c = advance() ;
+				while( Character.isDigit( c ) )
+					c = advance() ;
+			}
+			terminal( Token.numberConstant, start, p ) ;
+		}
+		else if( c == '"' )
+		{
+			c = advance() ;
+			int from = p ;
+			while( c != '"' && c != EOF )
+				c = advance() ;
+			if( c == EOF )
+			{
+				terminal( Token.errorSymbol, from, p ) ;
+				errorMessage = "string constant not closed before end of file" ;
+				return ;
+			}
+			terminal( Token.stringConstant, from, p ) ;
+			advance() ;
+		}
+		else if( c == ':' || c == '>' || c == '<' || c == '/' )
+		{
+			boolean equals = advance() == '=' ;
+			if( equals )
+				advance() ;
+			int s ;
+			switch( c )
+			{
+				case ':': s = equals ? Token.becomesSymbol : Token.colonSymbol ; break ;
+				case '>': s = equals ? Token.greaterEqualSymbol : Token.greaterThanSymbol ; break ;
+				case '<': s = equals ? Token.lessEqualSymbol : Token.lessThanSymbol ; break ;
+				default: s = equals ? Token.notEqualSymbol : Token.divideSymbol ;
+			}
+			terminal( s, start, p ) ;
+		}
+		else if( c == EOF )
+			terminal( Token.eofSymbol, start, start ) ;
+		else
+		{
+			int s ;
+			switch( c )
+			{
+				case '=': s = Token.equalSymbol ; break ;
+				case ',': s = Token.commaSymbol ; break ;
+				case ';': s = Token.semicolonSymbol ; break ;
+				case '+': s = Token.plusSymbol ; break ;
+				case '*': s = Token.timesSymbol ; break ;
+				case '(': s = Token.leftParenthesis ; break ;
+				case ')': s = Token.rightParenthesis ; break ;
+				default: s = Token.errorSymbol ;
+			}
+			advance() ;
+			// the lexical analyser gives an unexpected character no text
+			terminal( s, start, s == Token.errorSymbol ? start : p ) ;
+		}
+	} // end of method scan
+
+	/** @return the symbol of a word: a reserved word in any case, or an identifier. */
+	private int word( int start, int end )
+	{
+		int n = end - start ;
+		for( int i = start; i < end; i++ )
+			if( text[i] >= 128 )
+			{
+				// outside ASCII, lower case is String's business, as it is the lexical analyser's
+				String lower = new String( text, start, n ).toLowerCase() ;
+				for( int r = 0; r < reserved.length; r++ )
+					if( lower.equals( reserved[r] ) )
+						return reservedSymbols[r] ;
+				return Token.identifier ;
+			}
+		for( int r = 0; r < reserved.length; r++ )
+		{
+			String k = reserved[r] ;
+			if( k.length() != n )
+				continue ;
+			int i = 0 ;
+			while( i < n && ( text[start + i] | 0x20 ) == k.charAt( i ) )
+				i++ ;
+			if( i == n )
+				return reservedSymbols[r] ;
+		}
+		return Token.identifier ;
+	} // end of method word
+
+	/** @return the next terminal as the lexical analyser would have made it. */
+	private Token token()
+	{
+		Token t = new Token( symbol, new String( text, textStart, textEnd - textStart ), tokenLine ) ;
+		t.offset = tokenOffset ;
+		return t ;
+	} // end of method token
+
+	/** @return an error message pointing at the next terminal, as SyntaxAnalyser.errorString words it. */
+	private String errorString( String expected )
+	{
+		String column = " at column " + LineIndex.of( CharBuffer.wrap( text, 0, length ) ).column( tokenOffset ) ;
+		if( symbol == Token.errorSymbol && errorMessage != null )
+			return fileName + ": - " + errorMessage + column ;
+		return fileName + ": - Expected these tokens: " + expected + " , Found: (' " + new String( text, textStart, textEnd - textStart ) + " ')" + column ;
+	} // end of method errorString
+
+	private String nonTerminalError( String nonTerminal )
+	{
+		return fileName + ": - Parsed error : " + nonTerminal ;
+	} // end of method nonTerminalError
+
+	private void commence( String name )
+	{
+		if( !validateOnly )
+			myGenerate.commenceNonterminal( name ) ;
+	} // end of method commence
+
+	private void finish( String name )
+	{
+		if( !validateOnly )
+			myGenerate.finishNonterminal( name ) ;
+	} // end of method finish
+
+	/** Recognises the input, writing any errors to a stream as SyntaxAnalyser does.
+
+	  @param ps Where to write errors.
+	  @throws IllegalStateException if recovery, semantic checks, limits, a time-out or profiling were asked for.
+	*/
+	@Override
+	public void parse( PrintStream ps ) throws IOException
+	{
+		if( recoverErrors || checkSemantics || hardened || cancel != null || ParseProfiler.isEnabled() )
+			throw new IllegalStateException( "the fused analyser does no recovery, semantic checks, limits, time-outs or profiling" ) ;
+		if( myGenerate == null )
+			myGenerate = new Generate() ;
+		errors.clear() ;
+		try
+		{
+			p = 0 ;
+			line = 0 ;
+			tokens = 0 ;
+			scan() ;
+			_statementPart_() ;
+			acceptTerminal( Token.eofSymbol ) ;
+			myGenerate.reportSuccess() ;
+		}
+		catch( CompilationException ex )
+		{
+			errors.add( ex ) ;
+		}
+		for( CompilationException ex : errors )
+		{
+			ps.println( "Compilation Exception" ) ;
+			ps.println( ex.toTraceString() ) ;
+		}
+	} // end of method parse
+
+	public void acceptTerminal( int s ) throws CompilationException
+	{
+		if( symbol == s )
+		{
+			if( !validateOnly )
+				myGenerate.insertTerminal( token() ) ;
+			scan() ;
+		}
+		else
+			myGenerate.reportError( token(), errorString( " ' " + Token.getName( s ) + " ' " ) ) ;
+	} // end of method acceptTerminal
+
+	public void _statementPart_() throws CompilationException
+	{
+		commence( "StatementPart" ) ;
+		try
+		{
+			acceptTerminal( Token.beginSymbol ) ;
+			statementList() ;
+			acceptTerminal( Token.endSymbol ) ;
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " statement part " ), e ) ;
+		}
+		finish( "StatementPart" ) ;
+	} // end of method _statementPart_
+
+	private void statementList() throws CompilationException
+	{
+		commence( "StatementList" ) ;
+		try
+		{
+			statement() ;
+			while( symbol == Token.semicolonSymbol )
+			{
+				acceptTerminal( Token.semicolonSymbol ) ;
+				statementList() ;
+			}
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " statement List " ), e ) ;
+		}
+		finish( "StatementList" ) ;
+	} // end of method statementList
+
+	private void statement() throws CompilationException
+	{
+		commence( "Statement" ) ;
+		try
+		{
+			switch( symbol )
+			{
+				case Token.identifier:
+					assignmentStatement() ;
+					break ;
+				case Token.whileSymbol:
+					whileStatement() ;
+					break ;
+				case Token.ifSymbol:
+					ifStatement() ;
+					break ;
+				case Token.callSymbol:
+					procedureStatement() ;
+					break ;
+				case Token.doSymbol:
+					untilStatement() ;
+					break ;
+				case Token.forSymbol:
+					forStatement() ;
+					break ;
+				default:
+					myGenerate.reportError( token(), errorString( " ' IDENTIFIER ' , ' if ' , ' while ' , ' call ' , ' do ',  or ' for ' " ) ) ;
+			}
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " statement " ), e ) ;
+		}
+		finish( "Statement" ) ;
+	} // end of method statement
+
+	private void assignmentStatement() throws CompilationException
+	{
+		commence( "AssignmentStatement" ) ;
+		try
+		{
+			acceptTerminal( Token.identifier ) ;
+			acceptTerminal( Token.becomesSymbol ) ;
+			if( symbol == Token.stringConstant )
+				acceptTerminal( Token.stringConstant ) ;
+			else
+				expression() ;
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " Assignment Statement " ), e ) ;
+		}
+		finish( "AssignmentStatement" ) ;
+	} // end of method assignmentStatement
+
+	private void ifStatement() throws CompilationException
+	{
+		commence( "IfStatement" ) ;
+		try
+		{
+			acceptTerminal( Token.ifSymbol ) ;
+			condition() ;
+			acceptTerminal( Token.thenSymbol ) ;
+			statementList() ;
+			if( symbol == Token.elseSymbol )
+			{
+				acceptTerminal( Token.elseSymbol ) ;
+				statementList() ;
+			}
+			acceptTerminal( Token.endSymbol ) ;
+			acceptTerminal( Token.ifSymbol ) ;
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " If Statement " ), e ) ;
+		}
+		finish( "IfStatement" ) ;
+	} // end of method ifStatement
+
+	private void whileStatement() throws CompilationException
+	{
+		commence( "WhileStatement" ) ;
+		try
+		{
+			acceptTerminal( Token.whileSymbol ) ;
+			condition() ;
+			acceptTerminal( Token.loopSymbol ) ;
+			statementList() ;
+			acceptTerminal( Token.endSymbol ) ;
+			acceptTerminal( Token.loopSymbol ) ;
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " While statement " ), e ) ;
+		}
+		finish( "WhileStatement" ) ;
+	} // end of method whileStatement
+
+	private void procedureStatement() throws CompilationException
+	{
+		commence( "ProcedureStatement" ) ;
+		try
+		{
+			acceptTerminal( Token.callSymbol ) ;
+			acceptTerminal( Token.identifier ) ;
+			acceptTerminal( Token.leftParenthesis ) ;
+			argumentList() ;
+			acceptTerminal( Token.rightParenthesis ) ;
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " Procedure list " ), e ) ;
+		}
+		finish( "ProcedureStatement" ) ;
+	} // end of method procedureStatement
+
+	private void untilStatement() throws CompilationException
+	{
+		commence( "UntilStatement" ) ;
+		try
+		{
+			acceptTerminal( Token.doSymbol ) ;
+			statementList() ;
+			acceptTerminal( Token.untilSymbol ) ;
+			condition() ;
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " Until Statement " ), e ) ;
+		}
+		finish( "UntilStatement" ) ;
+	} // end of method untilStatement
+
+	private void forStatement() throws CompilationException
+	{
+		commence( "ForStatement" ) ;
+		try
+		{
+			acceptTerminal( Token.forSymbol ) ;
+			acceptTerminal( Token.leftParenthesis ) ;
+			assignmentStatement() ;
+			acceptTerminal( Token.semicolonSymbol ) ;
+			condition() ;
+			acceptTerminal( Token.semicolonSymbol ) ;
+			assignmentStatement() ;
+			acceptTerminal( Token.rightParenthesis ) ;
+			acceptTerminal( Token.doSymbol ) ;
+			statementList() ;
+			acceptTerminal( Token.endSymbol ) ;
+			acceptTerminal( Token.loopSymbol ) ;
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " For Statement " ), e ) ;
+		}
+		finish( "ForStatement" ) ;
+	} // end of method forStatement
+
+	private void argumentList() throws CompilationException
+	{
+		commence( "ArgumentList" ) ;
+		try
+		{
+			acceptTerminal( Token.identifier ) ;
+			while( symbol == Token.commaSymbol )
+			{
+				acceptTerminal( Token.commaSymbol ) ;
+				argumentList() ;
+			}
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " Argument List " ), e ) ;
+		}
+		finish( "ArgumentList" ) ;
+	} // end of method argumentList
+
+	private void condition() throws CompilationException
+	{
+		commence( "Condition" ) ;
+		try
+		{
+			acceptTerminal( Token.identifier ) ;
+			conditionalOperator() ;
+			switch( symbol )
+			{
+				case Token.numberConstant:
+				case Token.stringConstant:
+				case Token.identifier:
+					acceptTerminal( symbol ) ;
+					break ;
+				default:
+					myGenerate.reportError( token(), errorString( " < identifer > , < number constant > or < string constant > " ) ) ;
+			}
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " Condition " ), e ) ;
+		}
+		finish( "Condition" ) ;
+	} // end of method condition
+
+	private void conditionalOperator() throws CompilationException
+	{
+		commence( "ConditionalOperator" ) ;
+		try
+		{
+			switch( symbol )
+			{
+				case Token.equalSymbol:
+				case Token.notEqualSymbol:
+				case Token.greaterThanSymbol:
+				case Token.lessThanSymbol:
+				case Token.greaterEqualSymbol:
+				case Token.lessEqualSymbol:
+					acceptTerminal( symbol ) ;
+					break ;
+				default:
+					myGenerate.reportError( token(), errorString( "  ' > '  , ' >= ' , ' = ' , ' /= ' , ' < ' or ' <= ' " ) ) ;
+			}
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " Conditional Operator " ), e ) ;
+		}
+		finish( "ConditionalOperator" ) ;
+	} // end of method conditionalOperator
+
+	private void expression() throws CompilationException
+	{
+		commence( "Expression" ) ;
+		try
+		{
+			term() ;
+			while( symbol == Token.plusSymbol || symbol == Token.minusSymbol )
+			{
+				acceptTerminal( symbol ) ;
+				expression() ;
+			}
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " Expression " ), e ) ;
+		}
+		finish( "Expression" ) ;
+	} // end of method expression
+
+	private void term() throws CompilationException
+	{
+		commence( "Term" ) ;
+		try
+		{
+			factor() ;
+			while( symbol == Token.timesSymbol || symbol == Token.divideSymbol )
+			{
+				acceptTerminal( symbol ) ;
+				term() ;
+			}
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " Term " ), e ) ;
+		}
+		finish( "Term" ) ;
+	} // end of method term
+
+	private void factor() throws CompilationException
+	{
+		commence( "Factor" ) ;
+		try
+		{
+			switch( symbol )
+			{
+				case Token.identifier:
+				case Token.numberConstant:
+					acceptTerminal( symbol ) ;
+					break ;
+				case Token.leftParenthesis:
+					acceptTerminal( Token.leftParenthesis ) ;
+					expression() ;
+					acceptTerminal( Token.rightParenthesis ) ;
+					break ;
+				default:
+					myGenerate.reportError( token(), errorString( " ' identifier ' , ' number constant ' , ' ( ' , ' ) ' " ) ) ;
+			}
+		}
+		catch( CompilationException e )
+		{
+			throw new CompilationException( nonTerminalError( " Factor " ), e ) ;
+		}
+		finish( "Factor" ) ;
+	} // end of method factor
+
+	/** Records every event and error as text, for comparing two analysers. */
+	static class Recorder extends Generate
+	{
+		final List<String> events = new ArrayList<String>() ;
+
+		public void insertTerminal( Token t )
+		{
+			events.add( "T " + t.symbol + " " + t.lineNumber + " " + t.offset + " '" + t.text + "'" ) ;
+		} // end of method insertTerminal
+
+		public void commenceNonterminal( String name )
+		{
+			events.add( "B " + name ) ;
+		} // end of method commenceNonterminal
+
+		public void finishNonterminal( String name )
+		{
+			events.add( "E " + name ) ;
+		} // end of method finishNonterminal
+
+		public void reportSuccess()
+		{
+			events.add( "S" ) ;
+		} // end of method reportSuccess
+
+		public void reportError( Token t, String message ) throws CompilationException
+		{
+			events.add( "X " + t.symbol + " " + t.lineNumber + " " + t.offset + " '" + t.text + "' " + message ) ;
+			super.reportError( t, message ) ;
+		} // end of method reportError
+	} // end of class Recorder
+
+	/** @return the first difference between the reference analyser and this one on a file, or null if there is none. */
+	String compare( String file ) throws IOException
+	{
+		Recorder expected = new Recorder(), actual = new Recorder() ;
+		ByteArrayOutputStream expectedErrors = new ByteArrayOutputStream(), actualErrors = new ByteArrayOutputStream() ;
+		SyntaxAnalyser reference = new SyntaxAnalyser( file ) ;
+		reference.setGenerate( expected ) ;
+		reference.parse( new PrintStream( expectedErrors ) ) ;
+		reset( file ) ;
+		setGenerate( actual ) ;
+		parse( new PrintStream( actualErrors ) ) ;
+		int n = Math.min( expected.events.size(), actual.events.size() ) ;
+		for( int i = 0; i < n; i++ )
+			if( !expected.events.get( i ).equals( actual.events.get( i ) ) )
+				return "event " + i + ": expected " + expected.events.get( i ) + ", found " + actual.events.get( i ) ;
+		if( expected.events.size() != actual.events.size() )
+			return expected.events.size() + " events expected, " + actual.events.size() + " found" ;
+		if( !expectedErrors.toString().equals( actualErrors.toString() ) )
+			return "diagnostics differ:\n" + expectedErrors + "----\n" + actualErrors ;
+		if( reference.tokensRead() != tokensRead() )
+			return reference.tokensRead() + " tokens expected, " + tokensRead() + " read" ;
+		return null ;
+	} // end of method compare
+
+	/** Recognises files, or compares this analyser with SyntaxAnalyser on them.
+
+	  @param args "[-diff] PATH...", where each path is a file or a folder of files.
+	*/
+	public static void main( String[] args ) throws IOException
+	{
+		boolean diff = args.length > 0 && args[0].equals( "-diff" ) ;
+		List<Path> files = new ArrayList<Path>() ;
+		for( int i = diff ? 1 : 0; i < args.length; i++ )
+			try( Stream<Path> walk = Files.walk( Paths.get( args[i] ) ) )
+			{
+				walk.filter( Files::isRegularFile ).sorted().forEach( files::add ) ;
+			}
+		if( files.isEmpty() )
+		{
+			System.err.println( "usage: java FusedAnalyser [-diff] path..." ) ;
+			System.exit( 1 ) ;
+		}
+
+		FusedAnalyser fused = new FusedAnalyser() ;
+		fused.setValidateOnly( !diff ) ;
+		PrintStream quiet = new PrintStream( OutputStream.nullOutputStream() ) ;
+		int differences = 0, failed = 0 ;
+		long bytes = 0, started = System.nanoTime() ;
+		for( Path f : files )
+		{
+			if( diff )
+			{
+				String difference = fused.compare( f.toString() ) ;
+				if( difference != null )
+				{
+					differences++ ;
+					System.out.println( f + ": " + difference ) ;
+				}
+				continue ;
+			}
+			fused.reset( f.toString() ) ;
+			fused.setGenerate( new Generate() ) ;
+			fused.parse( quiet ) ;
+			bytes += Files.size( f ) ;
+			if( fused.errorCount() > 0 )
+			{
+				failed++ ;
+				System.out.println( f + ": " + fused.errors.get( 0 ).toTraceString().trim().replaceAll( "\\s+", " " ) ) ;
+			}
+		}
+		double seconds = ( System.nanoTime() - started ) / 1e9 ;
+		if( diff )
+			System.out.println( files.size() + " files compared, " + differences + " differ" ) ;
+		else
+			System.out.println( String.format( "%d files, %d failed, %.1f MB in %.2f s", files.size(), failed, bytes / 1e6, seconds ) ) ;
+		System.exit( differences > 0 ? 1 : 0 ) ;
+	} // end of main method
+} // end of class FusedAnalyser
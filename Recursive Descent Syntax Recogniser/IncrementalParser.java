@@ -0,0 +1,466 @@
+
+/**
+ *
+ * Holds a program's text, tokens and parse tree between edits, so that an
+ * editor or a watch loop can apply small changes without lexing and parsing
+ * the whole program again.
+ *
+ * An edit re-lexes from the token before the one it starts in until the
+ * new tokens line up again with old ones past the end of the edit; from there
+ * on the old tokens are kept, moved along by the change in length.  Only the
+ * tokens whose kinds changed matter to the parser, so an edit that keeps the
+ * kinds (renaming an identifier, changing a number or a string) needs no
+ * parsing at all.  Otherwise the smallest statement holding the changed
+ * tokens is parsed again on its own, and its subtree is spliced in if it
+ * ends on the same token as before; if not, the enclosing statements and
+ * statement lists are tried in turn, and after that the whole program.  A
+ * statement list runs to the end of its block, so adding or removing a
+ * statement costs the rest of the block rather than the rest of the file.
+ *
+ * The tree stores no tokens, only where each one falls among the
+ * nonterminals, so tokens moved by an edit never leave the tree out of date.
+ * Line ends in the text are kept as single '\n' characters, and offsets count
+ * them as one character, as the lexical analyser does.
+ *
+ **/
+
+import java.io.* ;
+import java.nio.charset.* ;
+import java.nio.file.* ;
+import java.util.* ;
+
+public class IncrementalParser
+{
+	/** A nonterminal in the kept parse tree. */
+	static class Node
+	{
+		final String name ;
+		/** The children in order: a Node for a nonterminal, null for the next terminal. */
+		final ArrayList<Node> children = new ArrayList<Node>( 4 ) ;
+		/** The number of tokens the nonterminal covers. */
+		int size ;
+
+		Node( String n )
+		{
+			name = n ;
+		} // end of constructor method
+	} // end of class Node
+
+	/** Builds a tree from the parser's events instead of printing them.  The root has no
+	  name and holds what was parsed, including the end of file token after a whole program. */
+	static class TreeGenerate extends Generate
+	{
+		private final ArrayDeque<Node> open = new ArrayDeque<Node>() ;
+		final Node root = new Node( null ) ;
+
+		TreeGenerate()
+		{
+			open.push( root ) ;
+		} // end of constructor method
+
+		public void commenceNonterminal( String name )
+		{
+			Node n = new Node( name ) ;
+			open.peek().children.add( n ) ;
+			open.push( n ) ;
+		} // end of method commenceNonterminal
+
+		public void finishNonterminal( String name )
+		{
+			Node n = open.pop() ;
+			open.peek().size += n.size ;
+		} // end of method finishNonterminal
+
+		public void insertTerminal( Token token )
+		{
+			open.peek().children.add( null ) ;
+			open.peek().size++ ;
+		} // end of method insertTerminal
+
+		public void reportSuccess()
+		{
+		} // end of method reportSuccess
+	} // end of class TreeGenerate
+
+	/** Hands the parser tokens from the token list instead of scanning text. */
+	class TokenReplay extends LexicalAnalyser
+	{
+		/** The index of the next token to hand out. */
+		int next ;
+		private Token last ;
+
+		TokenReplay( int from ) throws IOException
+		{
+			super( new StringReader( "" ), 0, 0 ) ;
+			next = from ;
+		} // end of constructor method
+
+		public Token getNextToken()
+		{
+			// the list always ends with the end of file token, which is handed out for good
+			last = tokens.get( Math.min( next, tokens.size() - 1 ) ) ;
+			next++ ;
+			return last ;
+		} // end of method getNextToken
+
+		public String getErrorMessage()
+		{
+			return messages.get( last ) ;
+		} // end of method getErrorMessage
+
+		public LineIndex getLineIndex()
+		{
+			if( lines == null )
+				lines = LineIndex.of( text ) ;
+			return lines ;
+		} // end of method getLineIndex
+	} // end of class TokenReplay
+
+	/** Reads the program text from a given offset without copying it. */
+	private class TextReader extends Reader
+	{
+		private int at ;
+
+		TextReader( int from )
+		{
+			at = from ;
+		} // end of constructor method
+
+		public int read( char[] buffer, int offset, int length )
+		{
+			int n = Math.min( length, text.length() - at ) ;
+			if( n <= 0 )
+				return -1 ;
+			text.getChars( at, at + n, buffer, offset ) ;
+			at += n ;
+			return n ;
+		} // end of method read
+
+		public void close()
+		{
+		} // end of method close
+	} // end of class TextReader
+
+	private final String fileName ;
+	private final StringBuilder text ;
+	/** Every token in the text, ending with the end of file token. */
+	private final ArrayList<Token> tokens = new ArrayList<Token>() ;
+	/** Where the lines of the text start, built when an error message first needs a column. */
+	private LineIndex lines ;
+	/** The lexer's explanations for ERROR tokens. */
+	private final Map<Token, String> messages = new HashMap<Token, String>() ;
+	/** The parse tree, or null if the program does not parse. */
+	private Node tree ;
+	/** The errors from the last parse of the whole program. */
+	private List<CompilationException> errors = new ArrayList<CompilationException>() ;
+
+	private long edits, tokensRelexed, tokensReparsed, partsReparsed, fullParses ;
+
+	/** Lexes and parses a program.
+
+	  @param name The name of the program, used in error messages.
+	  @param source The text of the program.
+	  @throws IOException never, in practice, since the text is in memory.
+	*/
+	public IncrementalParser( String name, String source ) throws IOException
+	{
+		fileName = name ;
+		text = new StringBuilder( normalise( source ) ) ;
+		LexicalAnalyser lex = new LexicalAnalyser( new TextReader( 0 ), 0, 0 ) ;
+		Token t ;
+		do
+		{
+			t = lex.getNextToken() ;
+			if( lex.getErrorMessage() != null )
+				messages.put( t, lex.getErrorMessage() ) ;
+			tokens.add( t ) ;
+		}
+		while( t.symbol != Token.eofSymbol ) ;
+		tokensRelexed += tokens.size() ;
+		parseAll() ;
+	} // end of constructor method
+
+	/** Reads a program from a file.
+
+	  @param fileName The file to read.
+	  @return a parser holding the program.
+	*/
+	public static IncrementalParser open( String fileName ) throws IOException
+	{
+		return new IncrementalParser( fileName, new String( Files.readAllBytes( Paths.get( fileName ) ), StandardCharsets.ISO_8859_1 ) ) ;
+	} // end of method open
+
+	/** Turns "\r\n" and "\r" line ends into "\n", the single character the lexer sees. */
+	private static String normalise( String s )
+	{
+		return s.indexOf( '\r' ) < 0 ? s : s.replace( "\r\n", "\n" ).replace( '\r', '\n' ) ;
+	} // end of method normalise
+
+	/** Parses the whole program again. */
+	private void parseAll() throws IOException
+	{
+		TreeGenerate g = new TreeGenerate() ;
+		SyntaxAnalyser syn = new SyntaxAnalyser( fileName, new TokenReplay( 0 ) ) ;
+		syn.setGenerate( g ) ;
+		syn.parse( new PrintStream( OutputStream.nullOutputStream() ) ) ;
+		errors = new ArrayList<CompilationException>( syn.errors ) ;
+		tree = errors.isEmpty() ? g.root : null ;
+		tokensReparsed += tokens.size() ;
+		fullParses++ ;
+	} // end of method parseAll
+
+	/** @return the index of the last token starting at or before an offset, or 0 if there is none. */
+	private int tokenAt( int offset )
+	{
+		int lo = 0, hi = tokens.size() - 1 ;
+		while( lo < hi )
+		{
+			int mid = ( lo + hi + 1 ) >>> 1 ;
+			if( tokens.get( mid ).offset <= offset )
+				lo = mid ;
+			else
+				hi = mid - 1 ;
+		}
+		return lo ;
+	} // end of method tokenAt
+
+	/** Replaces part of the text, then brings the tokens and the tree up to date.
+
+	  @param offset Where the change starts.
+	  @param removed How many characters to take out.
+	  @param inserted The text to put in their place.
+	*/
+	public void edit( int offset, int removed, String inserted ) throws IOException
+	{
+		if( offset < 0 || removed < 0 || offset + removed > text.length() )
+			throw new IndexOutOfBoundsException( "edit of " + removed + " characters at " + offset + " in text of " + text.length() ) ;
+		inserted = normalise( inserted ) ;
+		text.replace( offset, offset + removed, inserted ) ;
+		lines = null ;
+		edits++ ;
+		int delta = inserted.length() - removed ;
+		int editEnd = offset + removed ;
+
+		// characters ahead of a token can join it, so start a token early
+		int first = Math.max( 0, tokenAt( offset ) - 1 ) ;
+		int startOffset = first == 0 ? 0 : tokens.get( first ).offset ;
+		int startLine = first == 0 ? 0 : tokens.get( first ).lineNumber ;
+		LexicalAnalyser lex = new LexicalAnalyser( new TextReader( startOffset ), startOffset, startLine ) ;
+
+		// lex until a new token starts where an old one past the edit now starts; from there the text is the same
+		ArrayList<Token> fresh = new ArrayList<Token>() ;
+		int old = first, lineDelta = 0 ;
+		while( true )
+		{
+			Token t = lex.getNextToken() ;
+			while( old < tokens.size() && tokens.get( old ).offset < editEnd )
+				old++ ;
+			while( old < tokens.size() && tokens.get( old ).offset + delta < t.offset )
+				old++ ;
+			if( old < tokens.size() && tokens.get( old ).offset + delta == t.offset && tokens.get( old ).symbol == t.symbol )
+			{
+				lineDelta = t.lineNumber - tokens.get( old ).lineNumber ;
+				break ;
+			}
+			if( lex.getErrorMessage() != null )
+				messages.put( t, lex.getErrorMessage() ) ;
+			fresh.add( t ) ;
+			if( t.symbol == Token.eofSymbol )
+			{
+				old = tokens.size() ;
+				break ;
+			}
+		}
+		tokensRelexed += fresh.size() ;
+
+		// the parser only sees kinds of token, so narrow the change to where the kinds differ
+		int lo = first, hiOld = old, hiNew = first + fresh.size() ;
+		while( lo < hiOld && lo < hiNew && tokens.get( lo ).symbol == fresh.get( lo - first ).symbol )
+			lo++ ;
+		while( hiOld > lo && hiNew > lo && tokens.get( hiOld - 1 ).symbol == fresh.get( hiNew - 1 - first ).symbol )
+		{
+			hiOld-- ;
+			hiNew-- ;
+		}
+
+		List<Token> replaced = tokens.subList( first, old ) ;
+		for( Token t : replaced )
+			if( t.symbol == Token.errorSymbol )
+				messages.remove( t ) ;
+		replaced.clear() ;
+		tokens.addAll( first, fresh ) ;
+		for( int i = first + fresh.size(); i < tokens.size(); i++ )
+		{
+			tokens.get( i ).offset += delta ;
+			tokens.get( i ).lineNumber += lineDelta ;
+		}
+
+		if( tree == null )
+			parseAll() ;
+		else if( lo < hiOld || lo < hiNew )
+			reparse( lo, hiOld, hiNew ) ;
+	} // end of method edit
+
+	/** Parses again the smallest statement or statement list holding a changed run of tokens,
+	  falling back to larger ones and then the whole program.
+
+	  @param lo The first changed token.
+	  @param hiOld The end of the changed tokens before the edit.
+	  @param hiNew The end of the changed tokens after the edit.
+	*/
+	private void reparse( int lo, int hiOld, int hiNew ) throws IOException
+	{
+		// the nodes from the root down that hold the whole change, with the index of each one's first token
+		ArrayList<Node> path = new ArrayList<Node>() ;
+		ArrayList<Integer> starts = new ArrayList<Integer>() ;
+		Node n = tree ;
+		int start = 0 ;
+		while( n != null )
+		{
+			path.add( n ) ;
+			starts.add( start ) ;
+			Node inside = null ;
+			int at = start ;
+			for( Node c : n.children )
+			{
+				int size = c == null ? 1 : c.size ;
+				if( c != null && at <= lo && hiOld <= at + size )
+				{
+					inside = c ;
+					start = at ;
+					break ;
+				}
+				at += size ;
+			}
+			n = inside ;
+		}
+
+		int tokenDelta = hiNew - hiOld ;
+		for( int i = path.size() - 1; i > 0; i-- )
+		{
+			Node old = path.get( i ) ;
+			if( !old.name.equals( "Statement" ) && !old.name.equals( "StatementList" ) )
+				continue ;
+			// the lists further up the same block start earlier but get to the change in the same state, so they fare no better
+			if( old.name.equals( "StatementList" ) && i + 1 < path.size() && path.get( i + 1 ).name.equals( "StatementList" ) )
+				continue ;
+			Node parsed = parseOne( old.name, starts.get( i ), starts.get( i ) + old.size + tokenDelta ) ;
+			if( parsed == null )
+				continue ;
+			Node parent = path.get( i - 1 ) ;
+			parent.children.set( parent.children.indexOf( old ), parsed ) ;
+			for( int j = 0; j < i; j++ )
+				path.get( j ).size += tokenDelta ;
+			partsReparsed++ ;
+			tokensReparsed += parsed.size ;
+			return ;
+		}
+		parseAll() ;
+	} // end of method reparse
+
+	/** Parses one statement or statement list on its own.
+
+	  @param name Which of the two it is.
+	  @param start The index of its first token.
+	  @param end The index of the token it must stop in front of.
+	  @return its subtree, or null if it does not parse or stops somewhere else.
+	*/
+	private Node parseOne( String name, int start, int end ) throws IOException
+	{
+		TreeGenerate g = new TreeGenerate() ;
+		TokenReplay replay = new TokenReplay( start ) ;
+		SyntaxAnalyser syn = new SyntaxAnalyser( fileName, replay ) ;
+		syn.setGenerate( g ) ;
+		try
+		{
+			syn.nextToken = replay.getNextToken() ;
+			if( name.equals( "Statement" ) )
+				syn.statement() ;
+			else
+				syn.statementList() ;
+		}
+		catch( CompilationException e )
+		{
+			return null ;
+		}
+		catch( StackOverflowError e )
+		{
+			return null ;
+		}
+		return replay.next - 1 == end ? g.root.children.get( 0 ) : null ;
+	} // end of method parseStatement
+
+	/** Sends the events for the kept tree to a generator, as a parse of the whole program would.
+
+	  @param g The generator to send them to.
+	  @return true, or false if the program does not parse, in which case nothing is sent.
+	*/
+	public boolean replay( AbstractGenerate g )
+	{
+		if( tree == null )
+			return false ;
+		replay( tree, g, new int[1] ) ;
+		g.reportSuccess() ;
+		return true ;
+	} // end of method replay
+
+	private void replay( Node n, AbstractGenerate g, int[] next )
+	{
+		if( n.name != null )
+			g.commenceNonterminal( n.name ) ;
+		for( Node c : n.children )
+		{
+			if( c == null )
+				g.insertTerminal( tokens.get( next[0]++ ) ) ;
+			else
+				replay( c, g, next ) ;
+		}
+		if( n.name != null )
+			g.finishNonterminal( n.name ) ;
+	} // end of method replay
+
+	/** @return the current text of the program. */
+	public String getText()
+	{
+		return text.toString() ;
+	} // end of method getText
+
+	/** @return the current tokens, ending with the end of file token. */
+	public List<Token> getTokens()
+	{
+		return Collections.unmodifiableList( tokens ) ;
+	} // end of method getTokens
+
+	/** @return the errors from the last time the whole program was parsed; empty if it parses now. */
+	public List<CompilationException> getErrors()
+	{
+		return tree == null ? errors : Collections.<CompilationException>emptyList() ;
+	} // end of method getErrors
+
+	/** @return how much work the edits so far have caused. */
+	public String statistics()
+	{
+		return "incremental: " + edits + " edits, " + tokensRelexed + " tokens lexed, " + tokensReparsed + " tokens parsed, "
+			+ partsReparsed + " statements or lists re-parsed, " + fullParses + " whole parses" ;
+	} // end of method statistics
+
+	/** Applies edits given as offset, characters removed and text inserted, then prints the events.
+
+	  @param args The file, then any number of offset, length, text triples.
+	*/
+	public static void main( String[] args ) throws IOException
+	{
+		if( args.length < 1 || args.length % 3 != 1 )
+		{
+			System.err.println( "usage: java IncrementalParser file [offset removed text]..." ) ;
+			System.exit( 1 ) ;
+		}
+		IncrementalParser p = open( args[0] ) ;
+		for( int i = 1; i < args.length; i += 3 )
+			p.edit( Integer.parseInt( args[i] ), Integer.parseInt( args[i + 1] ), args[i + 2] ) ;
+		if( !p.replay( new Generate() ) )
+			for( CompilationException e : p.getErrors() )
+				System.out.println( "Compilation Exception\n" + e.toTraceString() ) ;
+		System.err.println( p.statistics() ) ;
+	} // end of main method
+} // end of class IncrementalParser
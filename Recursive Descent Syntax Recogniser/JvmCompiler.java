@@ -0,0 +1,402 @@
+
+/**
+ *
+ * Turns a program compiled by the BytecodeCompiler into a JVM class, so
+ * that HotSpot compiles it to machine code like any other Java method.
+ *
+ * Each register of the program that is not a constant becomes two locals
+ * of one method: a double for its number, and an int for the string
+ * constant it holds, -1 for a number, as in the RegisterMachine.  Constants
+ * are loaded straight from the class's constant pool.  Every instruction
+ * becomes a few JVM instructions and every jump a JVM branch, so the
+ * program's loops are loops in the JVM code.  get and put go through the
+ * same Io hooks the RegisterMachine uses.
+ *
+ * The JDK here has no java.lang.classfile, so the class is written with
+ * the small ClassFileWriter, and defined with Lookup.defineHiddenClass so
+ * that it can be unloaded once nothing uses it.  Compiled programs are
+ * kept by a hash of their source text, so running the same program again
+ * costs a hash of the file.  A program too big for one JVM method is run
+ * by the RegisterMachine instead.
+ *
+ **/
+
+import java.io.* ;
+import java.lang.invoke.* ;
+import java.nio.file.* ;
+import java.util.* ;
+
+public class JvmCompiler
+{
+	/** A program ready to run. */
+	public interface Compiled
+	{
+		void run( RegisterMachine.Io io ) throws IOException ;
+	} // end of interface Compiled
+
+	/* JVM opcodes used. */
+	private static final int ICONST_M1 = 0x02, ICONST_0 = 0x03, DCONST_0 = 0x0e, BIPUSH = 0x10, SIPUSH = 0x11,
+		LDC_W = 0x13, LDC2_W = 0x14, ILOAD = 0x15, DLOAD = 0x18, ISTORE = 0x36, DSTORE = 0x39,
+		ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ALOAD_2 = 0x2c, ASTORE_2 = 0x4d, AALOAD = 0x32,
+		DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, IAND = 0x7e, DCMPL = 0x97, DCMPG = 0x98,
+		IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c, IFGT = 0x9d, IFLE = 0x9e, IF_ICMPEQ = 0x9f, IF_ICMPNE = 0xa0,
+		GOTO = 0xa7, RETURN = 0xb1, GETFIELD = 0xb4, PUTFIELD = 0xb5, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8,
+		INVOKEINTERFACE = 0xb9, ATHROW = 0xbf ;
+
+	private static final String self = "JvmCompiler", io = "RegisterMachine$Io" ;
+	/** The first local that holds a register; before it are this, the Io and the string pool. */
+	private static final int firstRegister = 3 ;
+	/** How many compiled programs to keep. */
+	private static final int cacheSize = 256 ;
+
+	/** A compiled program and the source it came from, kept by the hash of the source. */
+	private static class Entry
+	{
+		final byte[] source ;
+		final Compiled compiled ;
+
+		Entry( byte[] source, Compiled compiled )
+		{
+			this.source = source ;
+			this.compiled = compiled ;
+		} // end of constructor method
+	} // end of class Entry
+
+	private static final Map<Long, Entry> cache = new LinkedHashMap<Long, Entry>( 16, 0.75f, true ) {
+		private static final long serialVersionUID = 1L ;
+
+		protected boolean removeEldestEntry( Map.Entry<Long, Entry> eldest )
+		{
+			return size() > cacheSize ;
+		}
+	} ;
+	private static long hits, misses ;
+
+	private final BytecodeCompiler.Program program ;
+	private final ClassFileWriter classFile ;
+	private final ClassFileWriter.Code code = new ClassFileWriter.Code() ;
+	/** The local holding each register, or -1 for a constant. */
+	private final int[] slots ;
+	/** For constant registers: the number, or the index of the string. */
+	private final double[] numberConstants ;
+	private final int[] stringConstants ;
+
+	private JvmCompiler( BytecodeCompiler.Program program )
+	{
+		this.program = program ;
+		classFile = new ClassFileWriter( "JitProgram", "java/lang/Object", self + "$Compiled" ) ;
+		int registers = program.registerCount() ;
+		slots = new int[registers] ;
+		numberConstants = new double[registers] ;
+		stringConstants = new int[registers] ;
+		Arrays.fill( stringConstants, -1 ) ;
+		for( int i = 0; i < program.numbers.length; i++ )
+		{
+			slots[program.numberRegisters[i]] = -1 ;
+			numberConstants[program.numberRegisters[i]] = program.numbers[i] ;
+		}
+		for( int i = 0; i < program.strings.length; i++ )
+		{
+			slots[program.stringRegisters[i]] = -1 ;
+			stringConstants[program.stringRegisters[i]] = i ;
+		}
+		int next = firstRegister ;
+		for( int r = 0; r < registers; r++ )
+			if( slots[r] == 0 )
+			{
+				slots[r] = next ;
+				next += 3 ;
+			}
+		// each register takes three locals, and a method has at most 0xffff of them
+		if( next > 0xffff )
+			throw new IllegalStateException( "too many variables for a method" ) ;
+		code.maxLocals = next ;
+		code.maxStack = 8 ;
+	} // end of constructor method
+
+	/** Compiles a program into a hidden class.
+
+	  @param program The program.
+	  @return the program, ready to run; run by the RegisterMachine if it will not fit in a JVM method.
+	*/
+	public static Compiled compile( BytecodeCompiler.Program program )
+	{
+		try
+		{
+			byte[] bytes = new JvmCompiler( program ).build() ;
+			MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass( bytes, true ) ;
+			return (Compiled) lookup.findConstructor( lookup.lookupClass(), MethodType.methodType( void.class, String[].class ) )
+				.invoke( program.strings ) ;
+		}
+		catch( IllegalStateException e )
+		{
+			return io -> new RegisterMachine( program ).run( io ) ;
+		}
+		catch( Throwable e )
+		{
+			throw new IllegalStateException( "cannot load compiled program", e ) ;
+		}
+	} // end of method compile
+
+	/** Compiles a program from a file, optimised, or finds it compiled already if the file has not changed.
+
+	  @param fileName The program.
+	  @return the program, ready to run.
+	  @throws CompilationException if the program has a syntax error or calls an unknown procedure.
+	*/
+	public static Compiled load( String fileName ) throws IOException, CompilationException
+	{
+		byte[] source = Files.readAllBytes( Paths.get( fileName ) ) ;
+		long hash = ResultCache.hash( source, 0 ) ;
+		synchronized( cache )
+		{
+			Entry e = cache.get( hash ) ;
+			if( e != null && Arrays.equals( e.source, source ) )
+			{
+				hits++ ;
+				return e.compiled ;
+			}
+			misses++ ;
+		}
+		Reader text = new InputStreamReader( new ByteArrayInputStream( source ) ) ;
+		Compiled compiled = compile( BytecodeCompiler.compile( fileName, text, true ) ) ;
+		synchronized( cache )
+		{
+			cache.put( hash, new Entry( source, compiled ) ) ;
+		}
+		return compiled ;
+	} // end of method load
+
+	/** @return how often load found a program already compiled. */
+	public static String statistics()
+	{
+		synchronized( cache )
+		{
+			return "jit cache: " + hits + " hits, " + misses + " misses, " + cache.size() + " programs" ;
+		}
+	} // end of method statistics
+
+	/** Called by compiled programs for arithmetic on a string. */
+	public static RegisterMachine.RuntimeError arithmeticError( int line )
+	{
+		return new RegisterMachine.RuntimeError( line, "arithmetic on a string" ) ;
+	} // end of method arithmeticError
+
+	/** Called by compiled programs to compare two registers, at least one of which holds a string. */
+	public static int compare( int a, int b, String[] strings, int line )
+	{
+		if( a < 0 || b < 0 )
+			throw new RegisterMachine.RuntimeError( line, "a string compared with a number" ) ;
+		return strings[a].compareTo( strings[b] ) ;
+	} // end of method compare
+
+	private void pushInt( int value )
+	{
+		if( value >= -1 && value <= 5 )
+			code.u1( ICONST_0 + value ) ;
+		else if( value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE )
+		{
+			code.u1( BIPUSH ) ;
+			code.u1( value ) ;
+		}
+		else if( value >= Short.MIN_VALUE && value <= Short.MAX_VALUE )
+			code.op( SIPUSH, value ) ;
+		else
+			code.op( LDC_W, classFile.integer( value ) ) ;
+	} // end of method pushInt
+
+	/** Pushes the number a register holds. */
+	private void pushNumber( int r )
+	{
+		if( slots[r] >= 0 )
+			code.local( DLOAD, slots[r] ) ;
+		else if( stringConstants[r] >= 0 )
+			code.u1( DCONST_0 ) ;
+		else
+			code.op( LDC2_W, classFile.doubleEntry( numberConstants[r] ) ) ;
+	} // end of method pushNumber
+
+	/** Pushes the string index a register holds, -1 for a number. */
+	private void pushString( int r )
+	{
+		if( slots[r] >= 0 )
+			code.local( ILOAD, slots[r] + 2 ) ;
+		else
+			pushInt( stringConstants[r] ) ;
+	} // end of method pushString
+
+	/** Stores a number into a register. */
+	private void storeNumber( int r )
+	{
+		code.local( DSTORE, slots[r] ) ;
+		code.u1( ICONST_M1 ) ;
+		code.local( ISTORE, slots[r] + 2 ) ;
+	} // end of method storeNumber
+
+	/** @return the class file for the program. */
+	private byte[] build() throws IOException
+	{
+		classFile.addField( ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL, "strings", "[Ljava/lang/String;" ) ;
+		int stringsField = classFile.field( "JitProgram", "strings", "[Ljava/lang/String;" ) ;
+
+		ClassFileWriter.Code init = new ClassFileWriter.Code() ;
+		init.u1( ALOAD_0 ) ;
+		init.op( INVOKESPECIAL, classFile.method( "java/lang/Object", "<init>", "()V" ) ) ;
+		init.u1( ALOAD_0 ) ;
+		init.u1( ALOAD_1 ) ;
+		init.op( PUTFIELD, stringsField ) ;
+		init.u1( RETURN ) ;
+		init.maxStack = 2 ;
+		init.maxLocals = 2 ;
+		classFile.addMethod( ClassFileWriter.ACC_PUBLIC, "<init>", "([Ljava/lang/String;)V", init ) ;
+
+		code.u1( ALOAD_0 ) ;
+		code.op( GETFIELD, stringsField ) ;
+		code.u1( ASTORE_2 ) ;
+		for( int r = 0; r < slots.length; r++ )
+			if( slots[r] >= 0 )
+			{
+				code.u1( DCONST_0 ) ;
+				storeNumber( r ) ;
+			}
+
+		int[] p = program.code ;
+		int count = p.length / 4 ;
+		int[] labels = new int[count] ;
+		for( int i = 0; i < count; i++ )
+			labels[i] = code.newLabel() ;
+		// the throws for arithmetic on strings go after the code, out of the way of the loops
+		List<int[]> throwsNeeded = new ArrayList<int[]>() ;
+		for( int i = 0; i < count; i++ )
+		{
+			code.place( labels[i] ) ;
+			int op = p[4 * i], a = p[4 * i + 1], b = p[4 * i + 2], c = p[4 * i + 3] ;
+			int line = program.lines[i] ;
+			switch( op )
+			{
+				case BytecodeCompiler.HALT:
+					code.u1( RETURN ) ;
+					break ;
+				case BytecodeCompiler.MOVE:
+					pushNumber( b ) ;
+					code.local( DSTORE, slots[a] ) ;
+					pushString( b ) ;
+					code.local( ISTORE, slots[a] + 2 ) ;
+					break ;
+				case BytecodeCompiler.ADD:
+				case BytecodeCompiler.SUB:
+				case BytecodeCompiler.MUL:
+				case BytecodeCompiler.DIV:
+				{
+					int error = code.newLabel() ;
+					throwsNeeded.add( new int[] { error, line } ) ;
+					pushString( b ) ;
+					pushString( c ) ;
+					code.u1( IAND ) ;
+					code.branch( IFGE, error ) ;
+					pushNumber( b ) ;
+					pushNumber( c ) ;
+					code.u1( op == BytecodeCompiler.ADD ? DADD : op == BytecodeCompiler.SUB ? DSUB : op == BytecodeCompiler.MUL ? DMUL : DDIV ) ;
+					storeNumber( a ) ;
+					break ;
+				}
+				case BytecodeCompiler.JMP:
+					code.branch( GOTO, labels[c / 4] ) ;
+					break ;
+				case BytecodeCompiler.GET:
+					code.u1( ALOAD_1 ) ;
+					code.op( INVOKEINTERFACE, classFile.interfaceMethod( io, "get", "()D" ) ) ;
+					code.u1( 1 ) ;
+					code.u1( 0 ) ;
+					storeNumber( a ) ;
+					break ;
+				case BytecodeCompiler.PUT:
+				{
+					int number = code.newLabel(), done = code.newLabel() ;
+					pushString( a ) ;
+					code.branch( IFLT, number ) ;
+					code.u1( ALOAD_1 ) ;
+					code.u1( ALOAD_2 ) ;
+					pushString( a ) ;
+					code.u1( AALOAD ) ;
+					code.op( INVOKEINTERFACE, classFile.interfaceMethod( io, "put", "(Ljava/lang/String;)V" ) ) ;
+					code.u1( 2 ) ;
+					code.u1( 0 ) ;
+					code.branch( GOTO, done ) ;
+					code.place( number ) ;
+					code.u1( ALOAD_1 ) ;
+					pushNumber( a ) ;
+					code.op( INVOKEINTERFACE, classFile.interfaceMethod( io, "put", "(D)V" ) ) ;
+					code.u1( 3 ) ;
+					code.u1( 0 ) ;
+					code.place( done ) ;
+					break ;
+				}
+				default:
+					compareAndJump( op, a, b, labels[c / 4], line ) ;
+			}
+		}
+		for( int[] t : throwsNeeded )
+		{
+			code.place( t[0] ) ;
+			pushInt( t[1] ) ;
+			code.op( INVOKESTATIC, classFile.method( self, "arithmeticError", "(I)LRegisterMachine$RuntimeError;" ) ) ;
+			code.u1( ATHROW ) ;
+		}
+		classFile.addMethod( ClassFileWriter.ACC_PUBLIC, "run", "(L" + io + ";)V", code ) ;
+		return classFile.toByteArray() ;
+	} // end of method build
+
+	/** Compiles a conditional jump: the comparison of two numbers inline, anything with a string by a call. */
+	private void compareAndJump( int op, int a, int b, int target, int line )
+	{
+		int slow = code.newLabel(), next = code.newLabel() ;
+		pushString( a ) ;
+		pushString( b ) ;
+		code.u1( IAND ) ;
+		code.branch( IFGE, slow ) ;
+		pushNumber( a ) ;
+		pushNumber( b ) ;
+		// NaN compares false, as it does in the RegisterMachine
+		code.u1( op == BytecodeCompiler.JLT || op == BytecodeCompiler.JLE ? DCMPG : DCMPL ) ;
+		int test = op == BytecodeCompiler.JEQ ? IFEQ : op == BytecodeCompiler.JNE ? IFNE : op == BytecodeCompiler.JLT ? IFLT
+			: op == BytecodeCompiler.JLE ? IFLE : op == BytecodeCompiler.JGT ? IFGT : IFGE ;
+		code.branch( test, target ) ;
+		code.branch( GOTO, next ) ;
+		code.place( slow ) ;
+		pushString( a ) ;
+		pushString( b ) ;
+		if( op == BytecodeCompiler.JEQ || op == BytecodeCompiler.JNE )
+			code.branch( op == BytecodeCompiler.JEQ ? IF_ICMPEQ : IF_ICMPNE, target ) ;
+		else
+		{
+			code.u1( ALOAD_2 ) ;
+			pushInt( line ) ;
+			code.op( INVOKESTATIC, classFile.method( self, "compare", "(II[Ljava/lang/String;I)I" ) ) ;
+			code.branch( test, target ) ;
+		}
+		code.place( next ) ;
+	} // end of method compareAndJump
+
+	/** Compiles a program to a JVM class and runs it, reading get's values from standard input.
+
+	  @param args The program.
+	*/
+	public static void main( String[] args ) throws IOException
+	{
+		if( args.length != 1 )
+		{
+			System.err.println( "usage: java JvmCompiler file" ) ;
+			System.exit( 1 ) ;
+		}
+		try
+		{
+			load( args[0] ).run( new RegisterMachine.Console() ) ;
+		}
+		catch( CompilationException e )
+		{
+			System.err.println( e.getMessage() ) ;
+			System.exit( 1 ) ;
+		}
+	} // end of main method
+} // end of class JvmCompiler
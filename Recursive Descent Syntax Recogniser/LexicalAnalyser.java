@@ -1,328 +1,584 @@
-
-/**
- *
- * lexical analyser for 312 exercise.
- * 
- * This class has been provided to students
- *
- * Author: Roger Garside, John Mariani, John Vidler, Paul Rayson
- *
- *
- **/
-import java.io.* ;
-
-public class LexicalAnalyser
-{
-
-	/** Represents a textual and symbolic reserved word. */
-	class ReservedWord
-	{
-		/** The text used in source. */
-		public String text ;
-		/** The type (one of the class constants from Token) of this word. */
-		public int symbol ;
-
-		/** Creates a new reserved word from the observed text and a given type.
-
-		  @param t The text as seen in source.
-		  @param s The type of this word, typically a class constant from Token
-		 */
-		public ReservedWord(String t, int s)
-		{
-			text = t ;
-			symbol = s ;
-		} // end of constructor method
-	} // end of class ReservedWord
-
-	/** The maximum number of identifiers to hold during compilation. */
-	private static final int maxTableSize = 200 ;
-	/** The EOF character. */
-	private static final char EOF = '\000' ;
-
-	/** A list of symbols. */
-	private ReservedWord[] symbols = new ReservedWord[maxTableSize] ;
-	/** Holds the current number of symbols held. */
-	private int noOfSymbols ;
-
-	/** Is this the first time we have been called? */
-	private boolean firstCall ;
-
-	/** An input stream from the filename mentioned above. */
-	private BufferedReader sourceFile ;
-
-	/* State-change character and offset counts. */
-	private char currentCharacter ;
-	private String currentLine ;
-	private int currentOffset,
-			currentLineNumber ;
-
-	/* input buffer */
-	private StringBuffer currentText = new StringBuffer() ;
-
-	/** Adds a reserved word to the internal symbol table.
-
-	  @param t The text as seen in source.
-	  @param s The type of this word, typically a class constant from Token
-	 */
-	private void setReservedWord(String t, int s)
-	{
-		symbols[noOfSymbols] = new ReservedWord(t, s) ;
-		noOfSymbols++ ;
-	} // end of method setReservedWord
-
-
-	/** Sets all initial variables and adds the language's reserved words to the symbol table. */
-	private void initialiseScanner()
-	{
-		noOfSymbols = 0 ;
-		setReservedWord("begin", Token.beginSymbol) ;
-		setReservedWord("call", Token.callSymbol) ;
-		setReservedWord("do", Token.doSymbol) ;
-		setReservedWord("else", Token.elseSymbol) ;
-		setReservedWord("end", Token.endSymbol) ;
-		setReservedWord("float", Token.floatSymbol) ;
-		setReservedWord("if", Token.ifSymbol) ;
-		setReservedWord("integer", Token.integerSymbol) ;
-		setReservedWord("is", Token.isSymbol) ;
-		setReservedWord("loop", Token.loopSymbol) ;
-		setReservedWord("procedure", Token.procedureSymbol) ;
-		setReservedWord("string", Token.stringSymbol) ;
-		setReservedWord("then", Token.thenSymbol) ;
-		setReservedWord("until", Token.untilSymbol) ;
-		setReservedWord("while", Token.whileSymbol) ;
-		setReservedWord("for", Token.forSymbol) ;
-	} // end of method initialiseScanner
-
-
-	/** Creates a new LexicalAnalyser which will run over the given file.
-
-	  @param fileName The file to read.
-	  @throws IOException if any read errors occur during parsing.
-	 */
-	public LexicalAnalyser(String fileName) throws IOException
-	{
-		initialiseScanner() ;
-
-		sourceFile = new BufferedReader(new FileReader(fileName)) ;
-		currentLine = sourceFile.readLine() ;
-		currentOffset = 0 ;
-		firstCall = true ;
-		currentLineNumber = 0 ;
-	} // end of constructor method
-
-	/** Loads the next character of the input into the buffer.
-
-	  @throws IOException in the event that something like velociraptor attack happens to the input stream.
-	 */
-	private void getNextCharacter() throws IOException
-	{
-		if (currentLine == null)
-			currentCharacter = EOF ;
-		else if (currentOffset >= currentLine.length())
-		{
-			currentLine = sourceFile.readLine() ;
-			currentOffset = 0 ;
-			currentCharacter = '\n' ;
-		}
-		else
-		{
-			currentCharacter = currentLine.charAt(currentOffset) ;
-			currentOffset++ ;
-		}
-	} // end of method getNextCharacter
-
-	/** Returns the next token from the source file.  Repeatedly calling this
-	  will return each token in the file, and eventually null.
-
-	  @throws IOException in the event that the file cannot be read.
-	  @return the next token from the source file.
-	 */
-	public Token getNextToken() throws IOException
-	{
-		if (firstCall)
-		{
-			getNextCharacter() ;
-			firstCall = false ;
-		}
-
-		while ((currentCharacter == ' ') || (currentCharacter == '\t') ||
-				(currentCharacter == '\n') || (currentCharacter == '-'))
-		{
-			if (currentCharacter == '-')
-			{
-				getNextCharacter() ;
-				if (currentCharacter == '-')
-				{
-					while (currentCharacter != '\n')
-						getNextCharacter() ;
-				}
-				else
-					return new Token(Token.minusSymbol, "-", currentLineNumber) ;
-			}
-
-			if (currentCharacter == '\n')
-				currentLineNumber++ ;
-			getNextCharacter() ;
-		}
-
-		if (Character.isLetter(currentCharacter))
-		{
-			currentText.setLength(0) ;
-			while ((Character.isLetter(currentCharacter)) ||
-					(Character.isDigit(currentCharacter)))
-			{
-				currentText.append(currentCharacter) ;
-				getNextCharacter() ;
-			}
-
-			int i = 0 ;
-			String t = (new String(currentText)).toLowerCase() ;
-			while ((i < noOfSymbols) &&
-					(!t.equals(symbols[i].text)))
-				i++ ;
-
-			if (i < noOfSymbols)
-				return new Token(symbols[i].symbol, currentText, currentLineNumber) ;
-			else
-				return new Token(Token.identifier, currentText, currentLineNumber) ;
-		}
-		else if (Character.isDigit(currentCharacter))
-		{
-			currentText.setLength(0);
-			while (Character.isDigit(currentCharacter))
-			{
-				currentText.append(currentCharacter) ;
-				getNextCharacter() ;
-			}
-			if (currentCharacter == '.')
-			{
-				currentText.append(currentCharacter) ;
-				getNextCharacter() ;
-				while (Character.isDigit(currentCharacter))
-				{
-					currentText.append(currentCharacter) ;
-					getNextCharacter() ;
-				}
-			}
-			return new Token(Token.numberConstant, currentText, currentLineNumber) ;
-		}
-		else if (currentCharacter == '"')
-		{
-			getNextCharacter() ;
-			currentText.setLength(0) ;
-			while (currentCharacter != '"')
-			{
-				currentText.append(currentCharacter) ;
-				getNextCharacter() ;
-			}
-			getNextCharacter() ;
-			return new Token(Token.stringConstant, currentText, currentLineNumber) ;
-		}
-		else if (currentCharacter == ':')
-		{
-			getNextCharacter() ;
-			if (currentCharacter == '=')
-			{
-				getNextCharacter() ;
-				return new Token(Token.becomesSymbol, ":=", currentLineNumber) ;
-			}
-			else
-				return new Token(Token.colonSymbol, ":", currentLineNumber) ;
-		}
-		else if (currentCharacter == '>')
-		{
-			getNextCharacter() ;
-			if (currentCharacter == '=')
-			{
-				getNextCharacter() ;
-				return new Token(Token.greaterEqualSymbol, ">=", currentLineNumber) ;
-			}
-			else
-				return new Token(Token.greaterThanSymbol, ">", currentLineNumber) ;
-		}
-		else if (currentCharacter == '<')
-		{
-			getNextCharacter() ;
-			if (currentCharacter == '=')
-			{
-				getNextCharacter() ;
-				return new Token(Token.lessEqualSymbol, "<=", currentLineNumber) ;
-			}
-			else
-				return new Token(Token.lessThanSymbol, "<", currentLineNumber) ;
-		}
-		else if (currentCharacter == '/')
-		{
-			getNextCharacter() ;
-			if (currentCharacter == '=')
-			{
-				getNextCharacter() ;
-				return new Token(Token.notEqualSymbol, "/=", currentLineNumber) ;
-			}
-			else
-				return new Token(Token.divideSymbol, "/", currentLineNumber) ;
-		}
-		else if (currentCharacter == '=')
-		{
-			getNextCharacter() ;
-			return new Token(Token.equalSymbol, "=", currentLineNumber) ;
-		}
-		else if (currentCharacter == ',')
-		{
-			getNextCharacter() ;
-			return new Token(Token.commaSymbol, ",", currentLineNumber) ;
-		}
-		else if (currentCharacter == ';')
-		{
-			getNextCharacter() ;
-			return new Token(Token.semicolonSymbol, ";", currentLineNumber) ;
-		}
-		else if (currentCharacter == '+')
-		{
-			getNextCharacter() ;
-			return new Token(Token.plusSymbol, "+", currentLineNumber) ;
-		}
-		else if (currentCharacter == '*')
-		{
-			getNextCharacter() ;
-			return new Token(Token.timesSymbol, "*", currentLineNumber) ;
-		}
-		else if (currentCharacter == '(')
-		{
-			getNextCharacter() ;
-			return new Token(Token.leftParenthesis, "(", currentLineNumber) ;
-		}
-		else if (currentCharacter == ')')
-		{
-			getNextCharacter() ;
-			return new Token(Token.rightParenthesis, ")", currentLineNumber) ;
-		}
-		else if (currentCharacter == EOF)
-		{
-			return new Token(Token.eofSymbol, "", currentLineNumber) ;
-		}
-		else
-		{
-			currentText = new StringBuffer(currentCharacter) ;
-			getNextCharacter() ;
-			return new Token(Token.errorSymbol, currentText, currentLineNumber) ;
-		}
-	} // end of method getNextToken
-
-	/** Entry point to text Lexer */
-	public static void main(String[] args) throws IOException
-	{
-		BufferedReader din = new BufferedReader(new InputStreamReader(System.in)) ;
-		System.err.print("file? ") ;
-		System.err.flush() ;
-		String fileName = din.readLine().trim() ;
-		LexicalAnalyser lex = new LexicalAnalyser(fileName) ;
-		Token t = null ;
-		do
-		{
-			t = lex.getNextToken() ;
-			System.out.println(t) ;
-		}
-		while (t.symbol != Token.eofSymbol) ;
-	} // end of main method
-} // end of class LexicalAnalyser
+
+/**
+ *
+ * lexical analyser for 312 exercise.
+ * 
+ * This class has been provided to students
+ *
+ * Author: Roger Garside, John Mariani, John Vidler, Paul Rayson
+ *
+ *
+ **/
+import java.io.* ;
+
+public class LexicalAnalyser
+{
+
+	/** Represents a textual and symbolic reserved word. */
+	class ReservedWord
+	{
+		/** The text used in source. */
+		public String text ;
+		/** The type (one of the class constants from Token) of this word. */
+		public int symbol ;
+
+		/** Creates a new reserved word from the observed text and a given type.
+
+		  @param t The text as seen in source.
+		  @param s The type of this word, typically a class constant from Token
+		 */
+		public ReservedWord(String t, int s)
+		{
+			text = t ;
+			symbol = s ;
+		} // end of constructor method
+	} // end of class ReservedWord
+
+	/** How many tokens or lines to read between polls of the cancellation token. */
+	private static final int cancelCheckInterval = 1024 ;
+	/** The maximum number of identifiers to hold during compilation. */
+	private static final int maxTableSize = 200 ;
+	/** The EOF character. */
+	private static final char EOF = '\000' ;
+
+	/** A list of symbols. */
+	private ReservedWord[] symbols = new ReservedWord[maxTableSize] ;
+	/** Holds the current number of symbols held. */
+	private int noOfSymbols ;
+
+	/** Is this the first time we have been called? */
+	private boolean firstCall ;
+
+	/** An input stream from the filename mentioned above, kept for the next input by reset. */
+	private final SourceReader sourceFile = new SourceReader() ;
+
+	/* State-change character and offset counts. */
+	private char currentCharacter ;
+	private String currentLine ;
+	private int currentOffset,
+			currentLineNumber ;
+	/** Offset of the current character from the start of the input, counting each line end as one character. */
+	private int position ;
+	/** Offset of the first character of the token being scanned. */
+	private int tokenStart ;
+	/** Where each line read so far starts, for finding the column of an offset. */
+	private final LineIndex lines = new LineIndex() ;
+
+	/* input buffer */
+	private StringBuffer currentText = new StringBuffer() ;
+
+	/* Resource limits, zero meaning no limit. */
+	private int maxTokenLength,
+			maxTokens ;
+	/** The number of tokens handed out so far. */
+	private int tokenCount ;
+	/** Set when the token being scanned has been cut short by maxTokenLength. */
+	private boolean tokenTooLong ;
+	/** Explains the last ERROR token, if it was caused by something other than a bad character. */
+	private String errorMessage ;
+	/** Set once a limit or cancellation has ended the scan early; only EOF is returned after that. */
+	private boolean stopped ;
+	/** Set if it was the cancellation token that ended the scan. */
+	private boolean cancelled ;
+
+	/** Polled every so often to see whether the scan should be abandoned, or null. */
+	private CancellationToken cancel ;
+	/** Tokens or lines left before the cancellation token is polled again. */
+	private int untilCancelCheck = cancelCheckInterval ;
+
+	/** Counts the tokens handed out by kind, or null when not profiling. */
+	private ParseProfiler.Recorder profile ;
+
+	/** Adds a reserved word to the internal symbol table.
+
+	  @param t The text as seen in source.
+	  @param s The type of this word, typically a class constant from Token
+	 */
+	private void setReservedWord(String t, int s)
+	{
+		symbols[noOfSymbols] = new ReservedWord(t, s) ;
+		noOfSymbols++ ;
+	} // end of method setReservedWord
+
+
+	/** Sets all initial variables and adds the language's reserved words to the symbol table. */
+	private void initialiseScanner()
+	{
+		noOfSymbols = 0 ;
+		setReservedWord("begin", Token.beginSymbol) ;
+		setReservedWord("call", Token.callSymbol) ;
+		setReservedWord("do", Token.doSymbol) ;
+		setReservedWord("else", Token.elseSymbol) ;
+		setReservedWord("end", Token.endSymbol) ;
+		setReservedWord("float", Token.floatSymbol) ;
+		setReservedWord("if", Token.ifSymbol) ;
+		setReservedWord("integer", Token.integerSymbol) ;
+		setReservedWord("is", Token.isSymbol) ;
+		setReservedWord("loop", Token.loopSymbol) ;
+		setReservedWord("procedure", Token.procedureSymbol) ;
+		setReservedWord("string", Token.stringSymbol) ;
+		setReservedWord("then", Token.thenSymbol) ;
+		setReservedWord("until", Token.untilSymbol) ;
+		setReservedWord("while", Token.whileSymbol) ;
+		setReservedWord("for", Token.forSymbol) ;
+	} // end of method initialiseScanner
+
+
+	/** Creates a new LexicalAnalyser which will run over the given file.
+
+	  @param fileName The file to read.
+	  @throws IOException if any read errors occur during parsing.
+	 */
+	public LexicalAnalyser(String fileName) throws IOException
+	{
+		initialiseScanner() ;
+		reset(fileName) ;
+	} // end of constructor method
+
+	/** Creates a new LexicalAnalyser which will run over the given text, which
+	  may start part of the way through a larger input.
+
+	  @param source The text to read.
+	  @param offset The offset of the start of the text in the whole input.
+	  @param line The line number of the start of the text.
+	  @throws IOException if any read errors occur during parsing.
+	 */
+	public LexicalAnalyser(Reader source, int offset, int line) throws IOException
+	{
+		initialiseScanner() ;
+		reset(source, offset, line) ;
+	} // end of constructor method
+
+	/** Points this LexicalAnalyser at another file, as if it had just been
+	  created for it, but keeping the symbol table and buffers.  Limits, the
+	  cancellation token and the token count are cleared.  If the file cannot
+	  be opened the analyser is left reading an empty input.
+
+	  @param fileName The file to read.
+	  @throws IOException if the file cannot be opened or read.
+	 */
+	public void reset(String fileName) throws IOException
+	{
+		try
+		{
+			sourceFile.reset(fileName) ;
+		}
+		finally
+		{
+			restart(0, 0) ;
+		}
+	} // end of method reset
+
+	/** Points this LexicalAnalyser at some other text, as reset(String) does for a file.
+
+	  @param source The text to read.
+	  @param offset The offset of the start of the text in the whole input.
+	  @param line The line number of the start of the text.
+	  @throws IOException if the text cannot be read.
+	 */
+	public void reset(Reader source, int offset, int line) throws IOException
+	{
+		sourceFile.reset(source) ;
+		restart(offset, line) ;
+	} // end of method reset
+
+	/** Sets the scanning state back to the start of a new input. */
+	private void restart(int offset, int line) throws IOException
+	{
+		currentText.setLength(0) ;
+		maxTokenLength = 0 ;
+		maxTokens = 0 ;
+		tokenCount = 0 ;
+		tokenTooLong = false ;
+		errorMessage = null ;
+		stopped = false ;
+		cancelled = false ;
+		cancel = null ;
+		untilCancelCheck = cancelCheckInterval ;
+		profile = null ;
+
+		lines.clear(line) ;
+		currentLine = sourceFile.readLine() ;
+		if (currentLine != null)
+			lines.add(offset) ;
+		currentOffset = 0 ;
+		firstCall = true ;
+		currentLineNumber = line ;
+		position = offset - 1 ;
+		tokenStart = offset ;
+	} // end of method restart
+
+	/** Limits how much work one input can cause.  Breaking a limit produces an
+	  ERROR token, see getErrorMessage.
+
+	  @param tokenLength The longest identifier, number or string allowed, or zero for no limit.
+	  @param tokens The most tokens to read from the file, or zero for no limit.
+	 */
+	public void setLimits(int tokenLength, int tokens)
+	{
+		maxTokenLength = tokenLength ;
+		maxTokens = tokens ;
+	} // end of method setLimits
+
+	/** Hands the lexer a cancellation token to poll while scanning.
+
+	  @param c The token to poll, or null to scan to the end regardless.
+	 */
+	public void setCancellation(CancellationToken c)
+	{
+		cancel = c ;
+		untilCancelCheck = cancelCheckInterval ;
+	} // end of method setCancellation
+
+	/** Hands the lexer a profiler to count tokens into.
+
+	  @param p The recorder for the current parse, or null to stop counting.
+	 */
+	void setProfile(ParseProfiler.Recorder p)
+	{
+		profile = p ;
+	} // end of method setProfile
+
+	/** Counts down to the next poll of the cancellation token and polls it when due.
+
+	  @return true if the scan should be abandoned.
+	 */
+	private boolean cancelDue()
+	{
+		if (--untilCancelCheck > 0)
+			return false ;
+		untilCancelCheck = cancelCheckInterval ;
+		return cancel.isCancelled() ;
+	} // end of method cancelDue
+
+	/** @return the number of tokens handed out so far. */
+	public int getTokenCount()
+	{
+		return tokenCount ;
+	} // end of method getTokenCount
+
+	/** @return true if the scan was abandoned because the cancellation token fired. */
+	public boolean wasCancelled()
+	{
+		return cancelled ;
+	} // end of method wasCancelled
+
+	/** Explains why the last token returned was an ERROR token.
+
+	  @return the explanation, or null if the token was just an unexpected character.
+	 */
+	public String getErrorMessage()
+	{
+		return errorMessage ;
+	} // end of method getErrorMessage
+
+	/** Adds the current character to the token text, unless the token is already too long. */
+	private void appendCharacter()
+	{
+		if ((maxTokenLength == 0) || (currentText.length() < maxTokenLength))
+			currentText.append(currentCharacter) ;
+		else
+			tokenTooLong = true ;
+	} // end of method appendCharacter
+
+	/** Makes a token from the text collected so far, or an ERROR token if it was too long.
+
+	  @param s The type of symbol, typically as a class constant from Token.
+	  @return the new token.
+	 */
+	private Token textToken(int s)
+	{
+		if (tokenTooLong)
+		{
+			tokenTooLong = false ;
+			errorMessage = "token longer than " + maxTokenLength + " characters" ;
+			return new Token(Token.errorSymbol, currentText, currentLineNumber) ;
+		}
+		return new Token(s, currentText, currentLineNumber) ;
+	} // end of method textToken
+
+	/** Loads the next character of the input into the buffer.
+
+	  @throws IOException in the event that something like velociraptor attack happens to the input stream.
+	 */
+	private void getNextCharacter() throws IOException
+	{
+		if (currentLine == null)
+			currentCharacter = EOF ;
+		else if (currentOffset >= currentLine.length())
+		{
+			position++ ;
+			currentLine = sourceFile.readLine() ;
+			if (currentLine != null)
+				lines.add(position + 1) ;
+			currentOffset = 0 ;
+			currentCharacter = '\n' ;
+			// a long comment or string makes no tokens, so poll once a line as well
+			if ((cancel != null) && cancelDue())
+			{
+				currentLine = null ;
+				stopped = true ;
+				cancelled = true ;
+			}
+		}
+		else
+		{
+			currentCharacter = currentLine.charAt(currentOffset) ;
+			currentOffset++ ;
+			position++ ;
+		}
+	} // end of method getNextCharacter
+
+	/** Returns the next token from the source file.  Repeatedly calling this
+	  will return each token in the file, and eventually null.
+
+	  @throws IOException in the event that the file cannot be read.
+	  @return the next token from the source file.
+	 */
+	public Token getNextToken() throws IOException
+	{
+		Token t ;
+		errorMessage = null ;
+		tokenStart = Math.max(position, 0) ;
+		if (!stopped)
+			tokenCount++ ;
+		// report a broken limit or a cancellation once, then behave as if the file ended there
+		if (stopped)
+			t = new Token(Token.eofSymbol, "", currentLineNumber) ;
+		else if ((maxTokens != 0) && (tokenCount > maxTokens))
+		{
+			stopped = true ;
+			errorMessage = "more than " + maxTokens + " tokens in file" ;
+			t = new Token(Token.errorSymbol, "", currentLineNumber) ;
+		}
+		else if ((cancel != null) && cancelDue())
+		{
+			stopped = true ;
+			cancelled = true ;
+			errorMessage = cancel.getReason() ;
+			t = new Token(Token.errorSymbol, "", currentLineNumber) ;
+		}
+		else
+		{
+			t = scanToken() ;
+			if (profile != null)
+				profile.lexed(t.symbol) ;
+		}
+		t.offset = tokenStart ;
+		return t ;
+	} // end of method getNextToken
+
+	/** @return where each line read so far starts, for turning a token's offset into a line and column. */
+	public LineIndex getLineIndex()
+	{
+		return lines ;
+	} // end of method getLineIndex
+
+	/** @return the offset just past the last token returned, counting each line end as one character. */
+	public int getPosition()
+	{
+		return Math.max(position, 0) ;
+	} // end of method getPosition
+
+	/** Reads the next token from the source file.
+
+	  @throws IOException in the event that the file cannot be read.
+	  @return the next token from the source file.
+	 */
+	private Token scanToken() throws IOException
+	{
+		if (firstCall)
+		{
+			getNextCharacter() ;
+			firstCall = false ;
+		}
+
+		while ((currentCharacter == ' ') || (currentCharacter == '\t') ||
+				(currentCharacter == '\n') || (currentCharacter == '-'))
+		{
+			if (currentCharacter == '-')
+			{
+				tokenStart = position ;
+				getNextCharacter() ;
+				if (currentCharacter == '-')
+				{
+					while ((currentCharacter != '\n') && (currentCharacter != EOF))
+						getNextCharacter() ;
+				}
+				else
+					return new Token(Token.minusSymbol, "-", currentLineNumber) ;
+			}
+
+			if (currentCharacter == '\n')
+				currentLineNumber++ ;
+			getNextCharacter() ;
+		}
+		tokenStart = position ;
+
+		if (Character.isLetter(currentCharacter))
+		{
+			currentText.setLength(0) ;
+			while ((Character.isLetter(currentCharacter)) ||
+					(Character.isDigit(currentCharacter)))
+			{
+				appendCharacter() ;
+				getNextCharacter() ;
+			}
+
+			int i = 0 ;
+			String t = (new String(currentText)).toLowerCase() ;
+			while ((i < noOfSymbols) &&
+					(!t.equals(symbols[i].text)))
+				i++ ;
+
+			if (i < noOfSymbols)
+				return new Token(symbols[i].symbol, currentText, currentLineNumber) ;
+			else
+				return textToken(Token.identifier) ;
+		}
+		else if (Character.isDigit(currentCharacter))
+		{
+			currentText.setLength(0);
+			while (Character.isDigit(currentCharacter))
+			{
+				appendCharacter() ;
+				getNextCharacter() ;
+			}
+			if (currentCharacter == '.')
+			{
+				appendCharacter() ;
+				getNextCharacter() ;
+				while (Character.isDigit(currentCharacter))
+				{
+					appendCharacter() ;
+					getNextCharacter() ;
+				}
+			}
+			return textToken(Token.numberConstant) ;
+		}
+		else if (currentCharacter == '"')
+		{
+			getNextCharacter() ;
+			currentText.setLength(0) ;
+			while ((currentCharacter != '"') && (currentCharacter != EOF))
+			{
+				appendCharacter() ;
+				getNextCharacter() ;
+			}
+			if (currentCharacter == EOF)
+			{
+				tokenTooLong = false ;
+				errorMessage = "string constant not closed before end of file" ;
+				return new Token(Token.errorSymbol, currentText, currentLineNumber) ;
+			}
+			getNextCharacter() ;
+			return textToken(Token.stringConstant) ;
+		}
+		else if (currentCharacter == ':')
+		{
+			getNextCharacter() ;
+			if (currentCharacter == '=')
+			{
+				getNextCharacter() ;
+				return new Token(Token.becomesSymbol, ":=", currentLineNumber) ;
+			}
+			else
+				return new Token(Token.colonSymbol, ":", currentLineNumber) ;
+		}
+		else if (currentCharacter == '>')
+		{
+			getNextCharacter() ;
+			if (currentCharacter == '=')
+			{
+				getNextCharacter() ;
+				return new Token(Token.greaterEqualSymbol, ">=", currentLineNumber) ;
+			}
+			else
+				return new Token(Token.greaterThanSymbol, ">", currentLineNumber) ;
+		}
+		else if (currentCharacter == '<')
+		{
+			getNextCharacter() ;
+			if (currentCharacter == '=')
+			{
+				getNextCharacter() ;
+				return new Token(Token.lessEqualSymbol, "<=", currentLineNumber) ;
+			}
+			else
+				return new Token(Token.lessThanSymbol, "<", currentLineNumber) ;
+		}
+		else if (currentCharacter == '/')
+		{
+			getNextCharacter() ;
+			if (currentCharacter == '=')
+			{
+				getNextCharacter() ;
+				return new Token(Token.notEqualSymbol, "/=", currentLineNumber) ;
+			}
+			else
+				return new Token(Token.divideSymbol, "/", currentLineNumber) ;
+		}
+		else if (currentCharacter == '=')
+		{
+			getNextCharacter() ;
+			return new Token(Token.equalSymbol, "=", currentLineNumber) ;
+		}
+		else if (currentCharacter == ',')
+		{
+			getNextCharacter() ;
+			return new Token(Token.commaSymbol, ",", currentLineNumber) ;
+		}
+		else if (currentCharacter == ';')
+		{
+			getNextCharacter() ;
+			return new Token(Token.semicolonSymbol, ";", currentLineNumber) ;
+		}
+		else if (currentCharacter == '+')
+		{
+			getNextCharacter() ;
+			return new Token(Token.plusSymbol, "+", currentLineNumber) ;
+		}
+		else if (currentCharacter == '*')
+		{
+			getNextCharacter() ;
+			return new Token(Token.timesSymbol, "*", currentLineNumber) ;
+		}
+		else if (currentCharacter == '(')
+		{
+			getNextCharacter() ;
+			return new Token(Token.leftParenthesis, "(", currentLineNumber) ;
+		}
+		else if (currentCharacter == ')')
+		{
+			getNextCharacter() ;
+			return new Token(Token.rightParenthesis, ")", currentLineNumber) ;
+		}
+		else if (currentCharacter == EOF)
+		{
+			return new Token(Token.eofSymbol, "", currentLineNumber) ;
+		}
+		else
+		{
+			currentText = new StringBuffer(currentCharacter) ;
+			getNextCharacter() ;
+			return new Token(Token.errorSymbol, currentText, currentLineNumber) ;
+		}
+	} // end of method scanToken
+
+	/** Entry point to text Lexer */
+	public static void main(String[] args) throws IOException
+	{
+		BufferedReader din = new BufferedReader(new InputStreamReader(System.in)) ;
+		System.err.print("file? ") ;
+		System.err.flush() ;
+		String fileName = din.readLine().trim() ;
+		LexicalAnalyser lex = new LexicalAnalyser(fileName) ;
+		Token t = null ;
+		do
+		{
+			t = lex.getNextToken() ;
+			System.out.println(t) ;
+		}
+		while (t.symbol != Token.eofSymbol) ;
+	} // end of main method
+} // end of class LexicalAnalyser
@@ -0,0 +1,96 @@
+
+/**
+ *
+ * The offsets at which the lines of a source start, kept in a plain int
+ * array, so that the line and column of any offset can be found by binary
+ * search instead of being tracked for every token.
+ *
+ * Offsets count each line end as one character, as the lexical analyser
+ * does.  Lines are numbered from the first line given, and columns from 1.
+ *
+ **/
+
+public class LineIndex
+{
+	private int[] starts = new int[64] ;
+	private int count ;
+	/** The number of the first line in the index. */
+	private int firstLine ;
+
+	/** Builds the index of some text in one pass.
+
+	  @param text Text with '\n' line ends.
+	  @return the index, with the first line numbered 0.
+	*/
+	public static LineIndex of( CharSequence text )
+	{
+		LineIndex index = new LineIndex() ;
+		index.clear( 0 ) ;
+		index.add( 0 ) ;
+		int length = text.length() ;
+		for( int i = 0; i < length; i++ )
+			if( text.charAt( i ) == '\n' )
+				index.add( i + 1 ) ;
+		return index ;
+	} // end of method of
+
+	/** Empties the index, ready for the lines of a new input.
+
+	  @param line The number of the first line to be added.
+	*/
+	public void clear( int line )
+	{
+		count = 0 ;
+		firstLine = line ;
+	} // end of method clear
+
+	/** Adds the next line.
+
+	  @param start The offset of its first character.
+	*/
+	public void add( int start )
+	{
+		if( count == starts.length )
+			starts = java.util.Arrays.copyOf( starts, count * 2 ) ;
+		starts[count++] = start ;
+	} // end of method add
+
+	/** @return the number of lines in the index. */
+	public int lineCount()
+	{
+		return count ;
+	} // end of method lineCount
+
+	/** @return the position of the line holding an offset in the index, by binary search. */
+	private int find( int offset )
+	{
+		int lo = 0, hi = count - 1 ;
+		while( lo < hi )
+		{
+			int mid = ( lo + hi + 1 ) >>> 1 ;
+			if( starts[mid] <= offset )
+				lo = mid ;
+			else
+				hi = mid - 1 ;
+		}
+		return lo ;
+	} // end of method find
+
+	/** @return the number of the line holding an offset. */
+	public int line( int offset )
+	{
+		return firstLine + find( offset ) ;
+	} // end of method line
+
+	/** @return the column of an offset within its line, counting from 1. */
+	public int column( int offset )
+	{
+		return count == 0 ? offset + 1 : offset - starts[find( offset )] + 1 ;
+	} // end of method column
+
+	/** @return the offset at which a line starts. */
+	public int lineStart( int line )
+	{
+		return starts[line - firstLine] ;
+	} // end of method lineStart
+} // end of class LineIndex
@@ -0,0 +1,764 @@
+
+/**
+ *
+ * An optimisation stage between the syntax analyser and any other
+ * generator.  The events of a program are held back until it has been
+ * recognised, the program is rewritten, and the events of the rewritten
+ * program are passed on, so every backend and every other consumer gets
+ * less to do.  A program with a syntax error is passed on unchanged: the
+ * events held back so far go out when the error is reported, and the rest
+ * go straight through.
+ *
+ * The rewrites are:
+ *
+ *   constant folding: operators whose operands are all constants are worked
+ *   out, left to right as the backends apply them, so "2 * 3 + y" becomes
+ *   "6 + y" but "y + 2 + 3" is left alone;
+ *   constant propagation: a variable known to hold a number or a string at
+ *   some point is replaced by it in expressions and conditions there;
+ *   dead branches: an if whose condition is known is replaced by the branch
+ *   taken, and a while or for loop whose condition is false on the way in by
+ *   nothing, or by its first assignment;
+ *   loop-invariant hoisting: assignments at the start of a loop body whose
+ *   values use no variable the loop changes, to variables assigned nowhere
+ *   else in the loop and not read by its condition, are done once before the
+ *   loop instead, under "if <condition> then ... end if" so that a loop that
+ *   never runs still does nothing.  A for loop's first assignment is done
+ *   before the guard as well, so it must not read what it or the hoisted
+ *   assignments assign.
+ *
+ * Only constants the lexical analyser could have read are put back into the
+ * program: numbers that are not negative and print exactly.  Everything
+ * stays in the grammar, so the events passed on are those of a program the
+ * syntax analyser would recognise.
+ *
+ **/
+
+import java.math.BigDecimal ;
+import java.util.* ;
+
+public class Optimiser extends Generate
+{
+	/** A nonterminal and its children, or a terminal. */
+	static final class Node
+	{
+		final String name ;
+		final Token token ;
+		final ArrayList<Node> children ;
+		/** Has the parser finished this nonterminal? */
+		boolean closed ;
+		/** The number an expression, term or factor is known to work out to, or null. */
+		Double value ;
+		/** For a statement, the ';' that followed it in its list, or null. */
+		Token separator ;
+
+		Node( String name )
+		{
+			this.name = name ;
+			token = null ;
+			children = new ArrayList<Node>( 4 ) ;
+		} // end of constructor method
+
+		Node( Token token )
+		{
+			name = null ;
+			this.token = token ;
+			children = null ;
+			closed = true ;
+		} // end of constructor method
+
+		/** A finished nonterminal made by the optimiser. */
+		Node( String name, Node... parts )
+		{
+			this( name ) ;
+			children.addAll( Arrays.asList( parts ) ) ;
+			closed = true ;
+		} // end of constructor method
+
+		Node child( int i )
+		{
+			return children.get( i ) ;
+		} // end of method child
+
+		/** @return true for a terminal with the given symbol. */
+		boolean is( int symbol )
+		{
+			return token != null && token.symbol == symbol ;
+		} // end of method is
+	} // end of class Node
+
+	/* Whether a condition is known. */
+	private static final int unknown = 0, alwaysTrue = 1, alwaysFalse = 2 ;
+
+	/** Where to pass the events on to. */
+	private final Generate next ;
+	/** The nonterminals entered and not yet finished, under a nameless root. */
+	private final ArrayList<Node> open = new ArrayList<Node>() ;
+	/** Has this parse reported an error, so that events go straight through? */
+	private boolean failed ;
+
+	/* What the optimiser has done. */
+	private long programs, folds, propagated, branchesRemoved, loopsRemoved, hoisted, tokensIn, tokensOut ;
+
+	/** @param n The generator to pass the optimised events on to. */
+	public Optimiser( Generate n )
+	{
+		next = n ;
+		clear() ;
+	} // end of constructor method
+
+	/** Forgets the events held back, ready for the next file. */
+	public void clear()
+	{
+		open.clear() ;
+		open.add( new Node( "" ) ) ;
+		failed = false ;
+	} // end of method clear
+
+	/** @return what the optimiser has changed since it was made. */
+	public String statistics()
+	{
+		return "optimiser: " + programs + " programs, " + folds + " constants folded, " + propagated + " constants propagated, "
+			+ branchesRemoved + " branches removed, " + loopsRemoved + " loops removed, " + hoisted + " assignments hoisted, "
+			+ tokensIn + " tokens in, " + tokensOut + " tokens out" ;
+	} // end of method statistics
+
+	private Node top()
+	{
+		return open.get( open.size() - 1 ) ;
+	} // end of method top
+
+	public void commenceNonterminal( String name )
+	{
+		if( failed )
+		{
+			next.commenceNonterminal( name ) ;
+			return ;
+		}
+		Node n = new Node( name ) ;
+		top().children.add( n ) ;
+		open.add( n ) ;
+	} // end of method commenceNonterminal
+
+	public void finishNonterminal( String name )
+	{
+		if( failed )
+		{
+			next.finishNonterminal( name ) ;
+			return ;
+		}
+		open.remove( open.size() - 1 ).closed = true ;
+	} // end of method finishNonterminal
+
+	public void insertTerminal( Token token )
+	{
+		if( failed )
+		{
+			next.insertTerminal( token ) ;
+			return ;
+		}
+		top().children.add( new Node( token ) ) ;
+		tokensIn++ ;
+	} // end of method insertTerminal
+
+	/** Passes on anything held back by a parse that ended without reporting success or an error,
+	  such as one cut short by a limit or one whose errors were all recovered from, and gets ready for the next file. */
+	public void finish()
+	{
+		if( !failed )
+			replay( open.get( 0 ) ) ;
+		clear() ;
+	} // end of method finish
+
+	public void reportError( Token token, String explanatoryMessage ) throws CompilationException
+	{
+		if( !failed )
+		{
+			failed = true ;
+			replay( open.get( 0 ) ) ;
+		}
+		next.reportError( token, explanatoryMessage ) ;
+	} // end of method reportError
+
+	public void reportSuccess()
+	{
+		if( !failed )
+		{
+			Node root = open.get( 0 ) ;
+			Node part = root.child( 0 ) ;
+			part.children.set( 1, list( block( part.child( 1 ), new HashMap<String, Object>() ) ) ) ;
+			programs++ ;
+			replay( root ) ;
+		}
+		next.reportSuccess() ;
+		clear() ;
+	} // end of method reportSuccess
+
+	/** Passes on the events of the children of a node, closing only the nonterminals the parser has closed.
+	  Works with a stack of its own, as statement lists nest once per statement. */
+	private void replay( Node root )
+	{
+		ArrayList<Node> nodes = new ArrayList<Node>() ;
+		int[] positions = new int[16] ;
+		nodes.add( root ) ;
+		while( !nodes.isEmpty() )
+		{
+			int depth = nodes.size() - 1 ;
+			Node n = nodes.get( depth ) ;
+			if( positions[depth] == n.children.size() )
+			{
+				nodes.remove( depth ) ;
+				if( depth > 0 && n.closed )
+					next.finishNonterminal( n.name ) ;
+				continue ;
+			}
+			Node c = n.child( positions[depth]++ ) ;
+			if( c.token != null )
+			{
+				next.insertTerminal( c.token ) ;
+				tokensOut++ ;
+				continue ;
+			}
+			next.commenceNonterminal( c.name ) ;
+			if( depth + 1 == positions.length )
+				positions = Arrays.copyOf( positions, positions.length * 2 ) ;
+			positions[depth + 1] = 0 ;
+			nodes.add( c ) ;
+		}
+	} // end of method replay
+
+	/** @return the first token under a node. */
+	private static Token firstToken( Node n )
+	{
+		while( n.token == null )
+			n = n.child( 0 ) ;
+		return n.token ;
+	} // end of method firstToken
+
+	/** @return the last token under a node. */
+	private static Token lastToken( Node n )
+	{
+		while( n.token == null )
+			n = n.child( n.children.size() - 1 ) ;
+		return n.token ;
+	} // end of method lastToken
+
+	/** @return the statements of a statement list, each with the ';' that followed it. */
+	private static List<Node> statements( Node list )
+	{
+		List<Node> statements = new ArrayList<Node>() ;
+		while( true )
+		{
+			Node s = list.child( 0 ) ;
+			statements.add( s ) ;
+			if( list.children.size() == 1 )
+				return statements ;
+			s.separator = list.child( 1 ).token ;
+			list = list.child( 2 ) ;
+		}
+	} // end of method statements
+
+	/** @return a statement list holding some statements, with a ';' made up where one did not follow a statement. */
+	private static Node list( List<Node> statements )
+	{
+		Node tail = null ;
+		for( int i = statements.size() - 1; i >= 0; i-- )
+		{
+			Node s = statements.get( i ) ;
+			if( tail == null )
+				tail = new Node( "StatementList", s ) ;
+			else
+			{
+				Token separator = s.separator ;
+				if( separator == null )
+					separator = new Token( Token.semicolonSymbol, ";", firstToken( tail ).lineNumber ) ;
+				tail = new Node( "StatementList", s, new Node( separator ), tail ) ;
+			}
+		}
+		return tail ;
+	} // end of method list
+
+	private static Node statement( Node inner, Token separator )
+	{
+		Node s = new Node( "Statement", inner ) ;
+		s.separator = separator ;
+		return s ;
+	} // end of method statement
+
+	/** @return a made-up terminal on the line of another. */
+	private static Node terminal( int symbol, String text, Token at )
+	{
+		Token t = new Token( symbol, text, at.lineNumber ) ;
+		t.offset = at.offset ;
+		return new Node( t ) ;
+	} // end of method terminal
+
+	/** @return a number as the lexical analyser would read it, or null if it cannot be written exactly. */
+	static String number( double value )
+	{
+		if( !( value >= 0 ) || Double.isInfinite( value ) )
+			return null ;
+		String text = value == Math.rint( value ) && value < 1e15 ? Long.toString( (long) value )
+			: BigDecimal.valueOf( value ).toPlainString() ;
+		// -0.0 would come back as 0.0
+		if( Double.doubleToRawLongBits( Double.parseDouble( text ) ) != Double.doubleToRawLongBits( value ) )
+			return null ;
+		return text ;
+	} // end of method number
+
+	/** @return a factor that is a number constant, or null if the number cannot be written. */
+	private static Node numberFactor( double value, Token at )
+	{
+		String text = number( value ) ;
+		if( text == null )
+			return null ;
+		Node f = new Node( "Factor", terminal( Token.numberConstant, text, at ) ) ;
+		f.value = value ;
+		return f ;
+	} // end of method numberFactor
+
+	private static double apply( int operator, double a, double b )
+	{
+		switch( operator )
+		{
+			case Token.plusSymbol: return a + b ;
+			case Token.minusSymbol: return a - b ;
+			case Token.timesSymbol: return a * b ;
+			default: return a / b ;
+		}
+	} // end of method apply
+
+	/** Folds the constant operands at the start of a chain of operands joined by operators, applied left to right.
+
+	  @param operands The operands, with their values worked out.
+	  @param operators The operators between them.
+	  @param term Are the operands terms, rather than factors?
+	*/
+	private void foldChain( List<Node> operands, List<Node> operators, boolean term )
+	{
+		if( operands.size() < 2 || operands.get( 0 ).value == null || operands.get( 1 ).value == null )
+			return ;
+		double value = operands.get( 0 ).value ;
+		int best = 0 ;
+		Node folded = null ;
+		for( int i = 1; i < operands.size() && operands.get( i ).value != null; i++ )
+		{
+			value = apply( operators.get( i - 1 ).token.symbol, value, operands.get( i ).value ) ;
+			if( Double.isNaN( value ) || Double.isInfinite( value ) )
+				break ;
+			Node f = numberFactor( value, firstToken( operands.get( 0 ) ) ) ;
+			if( f != null )
+			{
+				best = i ;
+				folded = f ;
+			}
+		}
+		if( folded == null )
+			return ;
+		if( term )
+		{
+			folded = new Node( "Term", folded ) ;
+			folded.value = folded.child( 0 ).value ;
+		}
+		operands.subList( 0, best + 1 ).clear() ;
+		operators.subList( 0, best ).clear() ;
+		operands.add( 0, folded ) ;
+		folds++ ;
+	} // end of method foldChain
+
+	/** Builds a right-recursive chain such as an expression from its operands and operators. */
+	private static Node chain( String name, List<Node> operands, List<Node> operators )
+	{
+		int last = operands.size() - 1 ;
+		Node n = new Node( name, operands.get( last ) ) ;
+		for( int i = last - 1; i >= 0; i-- )
+			n = new Node( name, operands.get( i ), operators.get( i ), n ) ;
+		n.value = last == 0 ? operands.get( 0 ).value : null ;
+		return n ;
+	} // end of method chain
+
+	/** @return an expression with constants folded and known variables replaced. */
+	private Node expression( Node e, Map<String, Object> env )
+	{
+		List<Node> terms = new ArrayList<Node>(), operators = new ArrayList<Node>() ;
+		while( true )
+		{
+			terms.add( term( e.child( 0 ), env ) ) ;
+			if( e.children.size() == 1 )
+				break ;
+			operators.add( e.child( 1 ) ) ;
+			e = e.child( 2 ) ;
+		}
+		foldChain( terms, operators, true ) ;
+		return chain( "Expression", terms, operators ) ;
+	} // end of method expression
+
+	private Node term( Node t, Map<String, Object> env )
+	{
+		List<Node> factors = new ArrayList<Node>(), operators = new ArrayList<Node>() ;
+		while( true )
+		{
+			factors.add( factor( t.child( 0 ), env ) ) ;
+			if( t.children.size() == 1 )
+				break ;
+			operators.add( t.child( 1 ) ) ;
+			t = t.child( 2 ) ;
+		}
+		foldChain( factors, operators, false ) ;
+		return chain( "Term", factors, operators ) ;
+	} // end of method term
+
+	private Node factor( Node f, Map<String, Object> env )
+	{
+		Node first = f.child( 0 ) ;
+		if( first.is( Token.numberConstant ) )
+		{
+			f.value = Double.valueOf( first.token.text ) ;
+			return f ;
+		}
+		if( first.is( Token.identifier ) )
+		{
+			Object known = env.get( first.token.text ) ;
+			if( !( known instanceof Double ) )
+				return f ;
+			Node n = numberFactor( (Double) known, first.token ) ;
+			if( n != null )
+			{
+				propagated++ ;
+				return n ;
+			}
+			// still worth knowing, as it may fold with what is next to it
+			f.value = (Double) known ;
+			return f ;
+		}
+		Node inner = expression( f.child( 1 ), env ) ;
+		if( inner.value != null )
+		{
+			Node n = numberFactor( inner.value, first.token ) ;
+			if( n != null )
+			{
+				folds++ ;
+				return n ;
+			}
+		}
+		Node n = new Node( "Factor", first, inner, f.child( 2 ) ) ;
+		n.value = inner.value ;
+		return n ;
+	} // end of method factor
+
+	/** @return what a constant token holds, or what a variable is known to hold, or null. */
+	private static Object valueOf( Token t, Map<String, Object> env )
+	{
+		switch( t.symbol )
+		{
+			case Token.numberConstant: return Double.valueOf( t.text ) ;
+			case Token.stringConstant: return t.text ;
+			default: return env.get( t.text ) ;
+		}
+	} // end of method valueOf
+
+	/** Works out a condition if the values it compares are known, as the backends would.
+
+	  @return unknown, alwaysTrue or alwaysFalse.
+	*/
+	private static int decide( Node c, Map<String, Object> env )
+	{
+		Object a = env.get( c.child( 0 ).token.text ) ;
+		Object b = valueOf( c.child( 2 ).token, env ) ;
+		if( a == null || b == null )
+			return unknown ;
+		int operator = c.child( 1 ).child( 0 ).token.symbol ;
+		int order ;
+		if( a instanceof Double && b instanceof Double )
+		{
+			double x = (Double) a, y = (Double) b ;
+			boolean result ;
+			switch( operator )
+			{
+				case Token.equalSymbol: result = x == y ; break ;
+				case Token.notEqualSymbol: result = x != y ; break ;
+				case Token.lessThanSymbol: result = x < y ; break ;
+				case Token.lessEqualSymbol: result = x <= y ; break ;
+				case Token.greaterThanSymbol: result = x > y ; break ;
+				default: result = x >= y ;
+			}
+			return result ? alwaysTrue : alwaysFalse ;
+		}
+		if( operator == Token.equalSymbol )
+			return a.equals( b ) ? alwaysTrue : alwaysFalse ;
+		if( operator == Token.notEqualSymbol )
+			return a.equals( b ) ? alwaysFalse : alwaysTrue ;
+		// ordering a string against a number fails when the program runs, so leave it to fail
+		if( !( a instanceof String && b instanceof String ) )
+			return unknown ;
+		order = ( (String) a ).compareTo( (String) b ) ;
+		switch( operator )
+		{
+			case Token.lessThanSymbol: return order < 0 ? alwaysTrue : alwaysFalse ;
+			case Token.lessEqualSymbol: return order <= 0 ? alwaysTrue : alwaysFalse ;
+			case Token.greaterThanSymbol: return order > 0 ? alwaysTrue : alwaysFalse ;
+			default: return order >= 0 ? alwaysTrue : alwaysFalse ;
+		}
+	} // end of method decide
+
+	/** Replaces a variable on the right of a condition with the constant it is known to hold. */
+	private void propagate( Node c, Map<String, Object> env )
+	{
+		Token right = c.child( 2 ).token ;
+		if( right.symbol != Token.identifier )
+			return ;
+		Object known = env.get( right.text ) ;
+		if( known instanceof String )
+			c.children.set( 2, terminal( Token.stringConstant, (String) known, right ) ) ;
+		else if( known != null && number( (Double) known ) != null )
+			c.children.set( 2, terminal( Token.numberConstant, number( (Double) known ), right ) ) ;
+		else
+			return ;
+		propagated++ ;
+	} // end of method propagate
+
+	/** Optimises an assignment, and records what it leaves the variable holding. */
+	private Node assignment( Node a, Map<String, Object> env )
+	{
+		String target = a.child( 0 ).token.text ;
+		Node value = a.child( 2 ) ;
+		if( value.is( Token.stringConstant ) )
+		{
+			env.put( target, value.token.text ) ;
+			return a ;
+		}
+		Node e = expression( value, env ) ;
+		if( e.value != null )
+			env.put( target, e.value ) ;
+		else
+			env.remove( target ) ;
+		return new Node( "AssignmentStatement", a.child( 0 ), a.child( 1 ), e ) ;
+	} // end of method assignment
+
+	/** @return the arguments of a call. */
+	private static List<Token> arguments( Node call )
+	{
+		List<Token> arguments = new ArrayList<Token>() ;
+		Node list = call.child( 3 ) ;
+		while( true )
+		{
+			arguments.add( list.child( 0 ).token ) ;
+			if( list.children.size() == 1 )
+				return arguments ;
+			list = list.child( 2 ) ;
+		}
+	} // end of method arguments
+
+	/** Counts the assignments to each variable anywhere under a node; calls other than put may assign their arguments. */
+	private static Map<String, Integer> assigned( Node root )
+	{
+		Map<String, Integer> counts = new HashMap<String, Integer>() ;
+		ArrayDeque<Node> pending = new ArrayDeque<Node>() ;
+		pending.push( root ) ;
+		while( !pending.isEmpty() )
+		{
+			Node n = pending.pop() ;
+			if( n.token != null )
+				continue ;
+			if( n.name.equals( "AssignmentStatement" ) )
+				counts.merge( n.child( 0 ).token.text, 1, Integer::sum ) ;
+			else if( n.name.equals( "ProcedureStatement" ) && !n.child( 1 ).token.text.equals( "put" ) )
+				for( Token t : arguments( n ) )
+					counts.merge( t.text, 1, Integer::sum ) ;
+			for( Node c : n.children )
+				pending.push( c ) ;
+		}
+		return counts ;
+	} // end of method assigned
+
+	/** @return every identifier under a node. */
+	private static Set<String> identifiers( Node root )
+	{
+		Set<String> names = new HashSet<String>() ;
+		ArrayDeque<Node> pending = new ArrayDeque<Node>() ;
+		pending.push( root ) ;
+		while( !pending.isEmpty() )
+		{
+			Node n = pending.pop() ;
+			if( n.is( Token.identifier ) )
+				names.add( n.token.text ) ;
+			else if( n.token == null )
+				for( Node c : n.children )
+					pending.push( c ) ;
+		}
+		return names ;
+	} // end of method identifiers
+
+	/** Keeps only what both paths agree on. */
+	private static void meet( Map<String, Object> env, Map<String, Object> other )
+	{
+		env.entrySet().removeIf( e -> !e.getValue().equals( other.get( e.getKey() ) ) ) ;
+	} // end of method meet
+
+	/** Optimises the statements of a statement list.
+
+	  @param list The statement list.
+	  @param env What variables are known to hold on the way in; updated to what they hold on the way out.
+	  @return the statements to replace the list with, never none.
+	*/
+	private List<Node> block( Node list, Map<String, Object> env )
+	{
+		List<Node> out = new ArrayList<Node>() ;
+		// a list cannot be empty, so the last statement taken out may have to go back
+		Node removed = null ;
+		boolean removedLoop = false ;
+		for( Node s : statements( list ) )
+		{
+			Node st = s.child( 0 ) ;
+			switch( st.name )
+			{
+				case "AssignmentStatement":
+					out.add( statement( assignment( st, env ), s.separator ) ) ;
+					break ;
+				case "ProcedureStatement":
+					if( !st.child( 1 ).token.text.equals( "put" ) )
+						for( Token t : arguments( st ) )
+							env.remove( t.text ) ;
+					out.add( s ) ;
+					break ;
+				case "IfStatement":
+				{
+					int decided = decide( st.child( 1 ), env ) ;
+					boolean hasElse = st.child( 4 ).is( Token.elseSymbol ) ;
+					if( decided == alwaysTrue || ( decided == alwaysFalse && hasElse ) )
+					{
+						List<Node> taken = block( st.child( decided == alwaysTrue ? 3 : 5 ), env ) ;
+						taken.get( taken.size() - 1 ).separator = s.separator ;
+						out.addAll( taken ) ;
+						branchesRemoved++ ;
+						break ;
+					}
+					if( decided == alwaysFalse )
+					{
+						removed = s ;
+						removedLoop = false ;
+						branchesRemoved++ ;
+						break ;
+					}
+					propagate( st.child( 1 ), env ) ;
+					Map<String, Object> thenEnv = new HashMap<String, Object>( env ) ;
+					st.children.set( 3, list( block( st.child( 3 ), thenEnv ) ) ) ;
+					if( hasElse )
+						st.children.set( 5, list( block( st.child( 5 ), env ) ) ) ;
+					meet( env, thenEnv ) ;
+					out.add( s ) ;
+					break ;
+				}
+				case "WhileStatement":
+				{
+					if( decide( st.child( 1 ), env ) == alwaysFalse )
+					{
+						removed = s ;
+						removedLoop = true ;
+						loopsRemoved++ ;
+						break ;
+					}
+					Map<String, Integer> changed = assigned( st ) ;
+					env.keySet().removeAll( changed.keySet() ) ;
+					propagate( st.child( 1 ), env ) ;
+					st.children.set( 3, list( block( st.child( 3 ), new HashMap<String, Object>( env ) ) ) ) ;
+					out.addAll( hoist( s, null, changed ) ) ;
+					break ;
+				}
+				case "ForStatement":
+				{
+					Node first = assignment( st.child( 2 ), env ) ;
+					st.children.set( 2, first ) ;
+					if( decide( st.child( 4 ), env ) == alwaysFalse )
+					{
+						out.add( statement( first, s.separator ) ) ;
+						loopsRemoved++ ;
+						break ;
+					}
+					Map<String, Integer> changed = assigned( st.child( 9 ) ) ;
+					changed.merge( st.child( 6 ).child( 0 ).token.text, 1, Integer::sum ) ;
+					env.keySet().removeAll( changed.keySet() ) ;
+					propagate( st.child( 4 ), env ) ;
+					st.children.set( 6, assignment( st.child( 6 ), new HashMap<String, Object>( env ) ) ) ;
+					st.children.set( 9, list( block( st.child( 9 ), new HashMap<String, Object>( env ) ) ) ) ;
+					out.addAll( hoist( s, first, changed ) ) ;
+					break ;
+				}
+				default:
+					env.keySet().removeAll( assigned( st ).keySet() ) ;
+					out.add( s ) ;
+			}
+		}
+		if( out.isEmpty() )
+		{
+			// it is dead code, so putting it back changes nothing
+			out.add( removed ) ;
+			if( removedLoop )
+				loopsRemoved-- ;
+			else
+				branchesRemoved-- ;
+		}
+		return out ;
+	} // end of method block
+
+	/** Moves invariant assignments from the start of a loop body to before the loop, guarded by the loop's condition.
+
+	  @param s The statement holding the loop, already optimised.
+	  @param first For a for loop, its first assignment; null for a while loop.
+	  @param changed How often the loop assigns each variable.
+	  @return the statements to replace the loop with.
+	*/
+	private List<Node> hoist( Node s, Node first, Map<String, Integer> changed )
+	{
+		Node loop = s.child( 0 ) ;
+		Node condition = loop.child( first == null ? 1 : 4 ) ;
+		int bodyAt = first == null ? 3 : 9 ;
+		List<Node> body = statements( loop.child( bodyAt ) ) ;
+		Set<String> read = identifiers( condition ) ;
+		List<Node> moved = new ArrayList<Node>() ;
+		// the body must keep a statement
+		for( int i = 0; i < body.size() - 1; i++ )
+		{
+			Node st = body.get( i ).child( 0 ) ;
+			if( !st.name.equals( "AssignmentStatement" ) )
+				break ;
+			String target = st.child( 0 ).token.text ;
+			Set<String> uses = identifiers( st.child( 2 ) ) ;
+			if( changed.get( target ) != 1 || read.contains( target ) || !Collections.disjoint( uses, changed.keySet() ) )
+				break ;
+			moved.add( body.get( i ) ) ;
+			read.addAll( uses ) ;
+		}
+		if( moved.isEmpty() )
+			return Collections.singletonList( s ) ;
+		if( first != null )
+		{
+			// the first assignment is done again by the loop, so it must give the same result
+			Set<String> uses = identifiers( first.child( 2 ) ) ;
+			String counter = first.child( 0 ).token.text ;
+			if( uses.contains( counter ) )
+				return Collections.singletonList( s ) ;
+			for( Node m : moved )
+			{
+				String target = m.child( 0 ).child( 0 ).token.text ;
+				if( uses.contains( target ) || target.equals( counter ) )
+					return Collections.singletonList( s ) ;
+			}
+		}
+		loop.children.set( bodyAt, list( body.subList( moved.size(), body.size() ) ) ) ;
+		hoisted += moved.size() ;
+
+		// the guard opens where the loop does and closes where it ends, so lines stay in order
+		Token at = firstToken( loop ), end = lastToken( loop ) ;
+		List<Node> guarded = new ArrayList<Node>( moved ) ;
+		guarded.add( s ) ;
+		Node guard = new Node( "IfStatement", terminal( Token.ifSymbol, "if", at ), condition,
+			terminal( Token.thenSymbol, "then", at ), list( guarded ),
+			terminal( Token.endSymbol, "end", end ), terminal( Token.ifSymbol, "if", end ) ) ;
+		List<Node> out = new ArrayList<Node>() ;
+		if( first != null )
+			out.add( statement( first, null ) ) ;
+		out.add( statement( guard, s.separator ) ) ;
+		return out ;
+	} // end of method hoist
+} // end of class Optimiser
@@ -0,0 +1,367 @@
+
+/**
+ *
+ * Always-on profiling of the recogniser: per-nonterminal invocation counts,
+ * tokens consumed and inclusive/exclusive time, and per-kind counts of the
+ * tokens lexed.
+ *
+ * Each parse records into its own Recorder with plain arrays and adds them to
+ * the shared striped counters once at the end, so the parse loop never
+ * contends with other threads.  Counts are kept for every parse; the clock
+ * is only read for one parse in every sampleEvery, and times are scaled up
+ * from those.
+ *
+ * The counters are published as a JMX bean (recogniser:type=ParseProfiler)
+ * and as periodic JDK Flight Recorder events.  A Flight Recorder event per
+ * nonterminal invocation is also available but is off unless a recording
+ * enables recogniser.Nonterminal.
+ *
+ **/
+
+import java.lang.management.* ;
+import java.util.* ;
+import java.util.concurrent.atomic.* ;
+import javax.management.* ;
+import jdk.jfr.* ;
+
+public class ParseProfiler implements ParseProfilerMBean
+{
+	/** The nonterminals SyntaxAnalyser reports, in the order they are listed. */
+	static final String[] nonterminals = {
+		"StatementPart", "StatementList", "Statement", "AssignmentStatement",
+		"IfStatement", "WhileStatement", "ProcedureStatement", "UntilStatement",
+		"ForStatement", "ArgumentList", "Condition", "ConditionalOperator",
+		"Expression", "Term", "Factor"
+	} ;
+	/** Enough room for every symbol constant in Token. */
+	private static final int tokenKinds = 40 ;
+
+	private static final Map<String, Integer> index = new HashMap<String, Integer>() ;
+	static
+	{
+		for( int i = 0; i < nonterminals.length; i++ )
+			index.put( nonterminals[i], i ) ;
+	}
+
+	private static final LongAdder[] invocations = adders( nonterminals.length ) ;
+	private static final LongAdder[] tokens = adders( nonterminals.length ) ;
+	private static final LongAdder[] timedInvocations = adders( nonterminals.length ) ;
+	private static final LongAdder[] inclusiveNanos = adders( nonterminals.length ) ;
+	private static final LongAdder[] exclusiveNanos = adders( nonterminals.length ) ;
+	private static final LongAdder[] lexed = adders( tokenKinds ) ;
+	private static final LongAdder files = new LongAdder() ;
+
+	private static volatile boolean enabled = false ;
+	private static int sampleEvery = 16 ;
+	private static final AtomicLong parses = new AtomicLong() ;
+
+	/** One Flight Recorder event per nonterminal invocation; off by default as there are a great many. */
+	@Name( "recogniser.Nonterminal" )
+	@Label( "Nonterminal" )
+	@Category( "Recogniser" )
+	@Enabled( false )
+	@StackTrace( false )
+	public static class NonterminalEvent extends jdk.jfr.Event
+	{
+		@Label( "Nonterminal" ) String nonterminal ;
+		@Label( "Tokens" ) long tokens ;
+	} // end of class NonterminalEvent
+
+	/** Periodic totals for one nonterminal. */
+	@Name( "recogniser.NonterminalStatistics" )
+	@Label( "Nonterminal Statistics" )
+	@Category( "Recogniser" )
+	@Period( "1 s" )
+	@StackTrace( false )
+	public static class NonterminalStatisticsEvent extends jdk.jfr.Event
+	{
+		@Label( "Nonterminal" ) String nonterminal ;
+		@Label( "Invocations" ) long invocations ;
+		@Label( "Tokens" ) long tokens ;
+		@Label( "Inclusive Time" ) @Timespan( Timespan.NANOSECONDS ) long inclusive ;
+		@Label( "Exclusive Time" ) @Timespan( Timespan.NANOSECONDS ) long exclusive ;
+	} // end of class NonterminalStatisticsEvent
+
+	/** Periodic total for one kind of token. */
+	@Name( "recogniser.TokenStatistics" )
+	@Label( "Token Statistics" )
+	@Category( "Recogniser" )
+	@Period( "1 s" )
+	@StackTrace( false )
+	public static class TokenStatisticsEvent extends jdk.jfr.Event
+	{
+		@Label( "Token" ) String token ;
+		@Label( "Count" ) long count ;
+	} // end of class TokenStatisticsEvent
+
+	private static LongAdder[] adders( int n )
+	{
+		LongAdder[] a = new LongAdder[n] ;
+		for( int i = 0; i < n; i++ )
+			a[i] = new LongAdder() ;
+		return a ;
+	} // end of method adders
+
+	/** Turns profiling on for every parse from now on, and publishes the counters.
+
+	  @param sample Read the clock for one parse in this many.
+	*/
+	public static synchronized void enable( int sample )
+	{
+		sampleEvery = Math.max( 1, sample ) ;
+		if( enabled )
+			return ;
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().registerMBean( new ParseProfiler(),
+				new ObjectName( "recogniser:type=ParseProfiler" ) ) ;
+		}
+		catch( JMException e )
+		{
+			System.err.println( "unable to register profiler bean " + e ) ;
+		}
+		FlightRecorder.addPeriodicEvent( NonterminalStatisticsEvent.class, ParseProfiler::emitStatistics ) ;
+		FlightRecorder.addPeriodicEvent( TokenStatisticsEvent.class, ParseProfiler::emitStatistics ) ;
+		enabled = true ;
+	} // end of method enable
+
+	/** @return true if parses should be profiled. */
+	public static boolean isEnabled()
+	{
+		return enabled ;
+	} // end of method isEnabled
+
+	/** Estimates total time from the sampled parses. */
+	private static long scaled( int i, LongAdder[] nanos )
+	{
+		long timed = timedInvocations[i].sum() ;
+		return timed == 0 ? 0 : (long) ( (double) nanos[i].sum() * invocations[i].sum() / timed ) ;
+	} // end of method scaled
+
+	private static void emitStatistics()
+	{
+		for( int i = 0; i < nonterminals.length; i++ )
+		{
+			NonterminalStatisticsEvent e = new NonterminalStatisticsEvent() ;
+			e.nonterminal = nonterminals[i] ;
+			e.invocations = invocations[i].sum() ;
+			e.tokens = tokens[i].sum() ;
+			e.inclusive = scaled( i, inclusiveNanos ) ;
+			e.exclusive = scaled( i, exclusiveNanos ) ;
+			e.commit() ;
+		}
+		for( int s = 1; s < tokenKinds; s++ )
+		{
+			long count = lexed[s].sum() ;
+			if( count == 0 )
+				continue ;
+			TokenStatisticsEvent e = new TokenStatisticsEvent() ;
+			e.token = Token.getName( s ) ;
+			e.count = count ;
+			e.commit() ;
+		}
+	} // end of method emitStatistics
+
+	/** @return the counters so far, formatted as a table. */
+	public static String snapshot()
+	{
+		StringBuilder b = new StringBuilder() ;
+		b.append( String.format( "%-20s %12s %12s %12s %12s%n", "nonterminal", "invocations", "tokens", "incl ms", "excl ms" ) ) ;
+		for( int i = 0; i < nonterminals.length; i++ )
+			b.append( String.format( "%-20s %12d %12d %12.1f %12.1f%n", nonterminals[i],
+				invocations[i].sum(), tokens[i].sum(), scaled( i, inclusiveNanos ) / 1e6, scaled( i, exclusiveNanos ) / 1e6 ) ) ;
+		b.append( String.format( "%-20s %12s%n", "token", "lexed" ) ) ;
+		for( int s = 1; s < tokenKinds; s++ )
+			if( lexed[s].sum() > 0 )
+				b.append( String.format( "%-20s %12d%n", Token.getName( s ), lexed[s].sum() ) ) ;
+		return b.toString() ;
+	} // end of method snapshot
+
+	public String getSnapshot()
+	{
+		return snapshot() ;
+	} // end of method getSnapshot
+
+	public long getFilesParsed()
+	{
+		return files.sum() ;
+	} // end of method getFilesParsed
+
+	public void reset()
+	{
+		for( LongAdder[] a : new LongAdder[][] { invocations, tokens, timedInvocations, inclusiveNanos, exclusiveNanos, lexed } )
+			for( LongAdder adder : a )
+				adder.reset() ;
+		files.reset() ;
+	} // end of method reset
+
+	/** Starts recording one parse.
+
+	  @return a recorder for the parse.
+	*/
+	static Recorder start()
+	{
+		return new Recorder( parses.getAndIncrement() % sampleEvery == 0 ) ;
+	} // end of method start
+
+	/** Records one parse on one thread, then adds its totals to the shared counters. */
+	static class Recorder
+	{
+		private final boolean timed ;
+		private final boolean jfr = EventType.getEventType( NonterminalEvent.class ).isEnabled() ;
+
+		private final long[] calls = new long[nonterminals.length] ;
+		private final long[] consumed = new long[nonterminals.length] ;
+		private final long[] inclusive = new long[nonterminals.length] ;
+		private final long[] exclusive = new long[nonterminals.length] ;
+		private final long[] kinds = new long[tokenKinds] ;
+
+		/* The open nonterminals, innermost last. */
+		private int top = 0 ;
+		private int[] open = new int[64] ;
+		private long[] started = new long[64] ;
+		private long[] childNanos = new long[64] ;
+		private long[] tokensAtStart = new long[64] ;
+		private NonterminalEvent[] events = new NonterminalEvent[64] ;
+		/** Terminals accepted so far. */
+		private long accepted = 0 ;
+
+		Recorder( boolean t )
+		{
+			timed = t ;
+		} // end of constructor method
+
+		/** Counts a token handed out by the lexical analyser. */
+		void lexed( int symbol )
+		{
+			if( symbol > 0 && symbol < tokenKinds )
+				kinds[symbol]++ ;
+		} // end of method lexed
+
+		/** Counts a terminal accepted by the syntax analyser. */
+		void accepted()
+		{
+			accepted++ ;
+		} // end of method accepted
+
+		void commence( String name )
+		{
+			Integer i = index.get( name ) ;
+			if( i == null )
+				return ;
+			if( top == open.length )
+			{
+				open = Arrays.copyOf( open, top * 2 ) ;
+				started = Arrays.copyOf( started, top * 2 ) ;
+				childNanos = Arrays.copyOf( childNanos, top * 2 ) ;
+				tokensAtStart = Arrays.copyOf( tokensAtStart, top * 2 ) ;
+				events = Arrays.copyOf( events, top * 2 ) ;
+			}
+			calls[i]++ ;
+			open[top] = i ;
+			tokensAtStart[top] = accepted ;
+			childNanos[top] = 0 ;
+			if( timed )
+				started[top] = System.nanoTime() ;
+			if( jfr )
+			{
+				events[top] = new NonterminalEvent() ;
+				events[top].begin() ;
+			}
+			top++ ;
+		} // end of method commence
+
+		void finish( String name )
+		{
+			Integer i = index.get( name ) ;
+			if( i == null )
+				return ;
+			// nonterminals abandoned by error recovery never finish, so unwind past them
+			while( top > 0 && open[top - 1] != i )
+				top-- ;
+			if( top == 0 )
+				return ;
+			top-- ;
+			long t = accepted - tokensAtStart[top] ;
+			consumed[i] += t ;
+			if( timed )
+			{
+				long spent = System.nanoTime() - started[top] ;
+				inclusive[i] += spent ;
+				exclusive[i] += spent - childNanos[top] ;
+				if( top > 0 )
+					childNanos[top - 1] += spent ;
+			}
+			if( jfr )
+			{
+				events[top].nonterminal = name ;
+				events[top].tokens = t ;
+				events[top].commit() ;
+				events[top] = null ;
+			}
+		} // end of method finish
+
+		/** Adds this parse's totals to the shared counters. */
+		void flush()
+		{
+			for( int i = 0; i < nonterminals.length; i++ )
+			{
+				if( calls[i] == 0 )
+					continue ;
+				invocations[i].add( calls[i] ) ;
+				tokens[i].add( consumed[i] ) ;
+				if( timed )
+				{
+					timedInvocations[i].add( calls[i] ) ;
+					inclusiveNanos[i].add( inclusive[i] ) ;
+					exclusiveNanos[i].add( exclusive[i] ) ;
+				}
+			}
+			for( int s = 0; s < tokenKinds; s++ )
+				if( kinds[s] != 0 )
+					lexed[s].add( kinds[s] ) ;
+			files.increment() ;
+		} // end of method flush
+	} // end of class Recorder
+
+	/** Passes every event on to another generator, recording it on the way. */
+	static class ProfilingGenerate extends Generate
+	{
+		private final Generate inner ;
+		private final Recorder recorder ;
+
+		ProfilingGenerate( Generate g, Recorder r )
+		{
+			inner = g ;
+			recorder = r ;
+		} // end of constructor method
+
+		public void insertTerminal( Token token )
+		{
+			recorder.accepted() ;
+			inner.insertTerminal( token ) ;
+		}
+
+		public void commenceNonterminal( String name )
+		{
+			recorder.commence( name ) ;
+			inner.commenceNonterminal( name ) ;
+		}
+
+		public void finishNonterminal( String name )
+		{
+			inner.finishNonterminal( name ) ;
+			recorder.finish( name ) ;
+		}
+
+		public void reportSuccess()
+		{
+			inner.reportSuccess() ;
+		}
+
+		public void reportError( Token token, String explanatoryMessage ) throws CompilationException
+		{
+			inner.reportError( token, explanatoryMessage ) ;
+		}
+	} // end of class ProfilingGenerate
+} // end of class ParseProfiler
@@ -0,0 +1,19 @@
+
+/**
+ *
+ * Management interface for ParseProfiler, so the counters can be read from a
+ * running JVM with jconsole or any other JMX client.
+ *
+ **/
+
+public interface ParseProfilerMBean
+{
+	/** @return the counters so far, formatted as a table. */
+	public String getSnapshot() ;
+
+	/** @return the number of files parsed while profiling was on. */
+	public long getFilesParsed() ;
+
+	/** Sets every counter back to zero. */
+	public void reset() ;
+} // end of interface ParseProfilerMBean
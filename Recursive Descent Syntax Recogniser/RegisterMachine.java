@@ -0,0 +1,239 @@
+
+/**
+ *
+ * Runs bytecode from the BytecodeCompiler.  Registers are two primitive
+ * arrays: the number each one holds, and which string constant it holds,
+ * or -1 if it holds a number.  Strings only ever come from the string pool,
+ * so comparing two strings for equality is comparing their pool indexes.
+ *
+ * The registers are allocated with the machine and loaded again from the
+ * constant pools at the start of every run, so the dispatch loop itself
+ * allocates nothing; only the I/O hooks may.
+ *
+ **/
+
+import java.io.* ;
+import java.util.* ;
+
+public class RegisterMachine
+{
+	/** Where get reads values from and put writes them to. */
+	public interface Io
+	{
+		/** @return the next number for get. */
+		double get() throws IOException ;
+
+		/** Writes a number for put. */
+		void put( double value ) throws IOException ;
+
+		/** Writes a string for put. */
+		void put( String value ) throws IOException ;
+	} // end of interface Io
+
+	/** Reads numbers from standard input, one or more to a line, and writes to standard output. */
+	public static class Console implements Io
+	{
+		private final BufferedReader in = new BufferedReader( new InputStreamReader( System.in ) ) ;
+		private StringTokenizer words = new StringTokenizer( "" ) ;
+
+		public double get() throws IOException
+		{
+			while( !words.hasMoreTokens() )
+			{
+				String line = in.readLine() ;
+				if( line == null )
+					throw new EOFException( "no more input for get" ) ;
+				words = new StringTokenizer( line ) ;
+			}
+			return Double.parseDouble( words.nextToken() ) ;
+		} // end of method get
+
+		public void put( double value )
+		{
+			System.out.println( format( value ) ) ;
+		} // end of method put
+
+		public void put( String value )
+		{
+			System.out.println( value ) ;
+		} // end of method put
+	} // end of class Console
+
+	/** An error while a program runs, such as arithmetic on a string. */
+	public static class RuntimeError extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L ;
+
+		public RuntimeError( int line, String message )
+		{
+			super( "Error at line " + line + " : " + message ) ;
+		} // end of constructor method
+	} // end of class RuntimeError
+
+	private final BytecodeCompiler.Program program ;
+	private final double[] numbers ;
+	private final int[] strings ;
+	/** How many instructions the last run carried out. */
+	private long steps ;
+
+	public RegisterMachine( BytecodeCompiler.Program program )
+	{
+		this.program = program ;
+		numbers = new double[program.registerCount()] ;
+		strings = new int[program.registerCount()] ;
+	} // end of constructor method
+
+	/** @return a number as put writes it: whole numbers without a fraction. */
+	public static String format( double value )
+	{
+		if( value == Math.rint( value ) && Math.abs( value ) < 1e15 )
+			return Long.toString( (long) value ) ;
+		return Double.toString( value ) ;
+	} // end of method format
+
+	/** @return the instructions carried out by the last run. */
+	public long steps()
+	{
+		return steps ;
+	} // end of method steps
+
+	/** @return the number a variable held at the end of the last run, or NaN if it held a string or is not used. */
+	public double valueOf( String variable )
+	{
+		for( int r = 0; r < program.variables.length; r++ )
+			if( variable.equals( program.variables[r] ) )
+				return strings[r] < 0 ? numbers[r] : Double.NaN ;
+		return Double.NaN ;
+	} // end of method valueOf
+
+	/** Runs the program from the start.
+
+	  @param io Where get and put read and write.
+	  @throws RuntimeError if the program does arithmetic on a string or compares a string with a number.
+	*/
+	public void run( Io io ) throws IOException
+	{
+		final int[] code = program.code ;
+		final double[] n = numbers ;
+		final int[] s = strings ;
+		Arrays.fill( n, 0 ) ;
+		Arrays.fill( s, -1 ) ;
+		for( int i = 0; i < program.numbers.length; i++ )
+			n[program.numberRegisters[i]] = program.numbers[i] ;
+		for( int i = 0; i < program.strings.length; i++ )
+			s[program.stringRegisters[i]] = i ;
+
+		long count = 0 ;
+		int pc = 0 ;
+		while( true )
+		{
+			count++ ;
+			int a = code[pc + 1], b = code[pc + 2], c = code[pc + 3] ;
+			switch( code[pc] )
+			{
+				case BytecodeCompiler.HALT:
+					steps = count ;
+					return ;
+				case BytecodeCompiler.MOVE:
+					n[a] = n[b] ;
+					s[a] = s[b] ;
+					pc += 4 ;
+					break ;
+				case BytecodeCompiler.ADD:
+					// -1 is all ones, so the and is negative only if both hold numbers
+					if( ( s[b] & s[c] ) >= 0 )
+						throw arithmetic( pc ) ;
+					n[a] = n[b] + n[c] ;
+					s[a] = -1 ;
+					pc += 4 ;
+					break ;
+				case BytecodeCompiler.SUB:
+					if( ( s[b] & s[c] ) >= 0 )
+						throw arithmetic( pc ) ;
+					n[a] = n[b] - n[c] ;
+					s[a] = -1 ;
+					pc += 4 ;
+					break ;
+				case BytecodeCompiler.MUL:
+					if( ( s[b] & s[c] ) >= 0 )
+						throw arithmetic( pc ) ;
+					n[a] = n[b] * n[c] ;
+					s[a] = -1 ;
+					pc += 4 ;
+					break ;
+				case BytecodeCompiler.DIV:
+					if( ( s[b] & s[c] ) >= 0 )
+						throw arithmetic( pc ) ;
+					n[a] = n[b] / n[c] ;
+					s[a] = -1 ;
+					pc += 4 ;
+					break ;
+				case BytecodeCompiler.JMP:
+					pc = c ;
+					break ;
+				case BytecodeCompiler.JEQ:
+					pc = equal( a, b ) ? c : pc + 4 ;
+					break ;
+				case BytecodeCompiler.JNE:
+					pc = equal( a, b ) ? pc + 4 : c ;
+					break ;
+				case BytecodeCompiler.JLT:
+					if( ( s[a] & s[b] ) < 0 )
+						pc = n[a] < n[b] ? c : pc + 4 ;
+					else
+						pc = compare( pc, a, b ) < 0 ? c : pc + 4 ;
+					break ;
+				case BytecodeCompiler.JLE:
+					if( ( s[a] & s[b] ) < 0 )
+						pc = n[a] <= n[b] ? c : pc + 4 ;
+					else
+						pc = compare( pc, a, b ) <= 0 ? c : pc + 4 ;
+					break ;
+				case BytecodeCompiler.JGT:
+					if( ( s[a] & s[b] ) < 0 )
+						pc = n[a] > n[b] ? c : pc + 4 ;
+					else
+						pc = compare( pc, a, b ) > 0 ? c : pc + 4 ;
+					break ;
+				case BytecodeCompiler.JGE:
+					if( ( s[a] & s[b] ) < 0 )
+						pc = n[a] >= n[b] ? c : pc + 4 ;
+					else
+						pc = compare( pc, a, b ) >= 0 ? c : pc + 4 ;
+					break ;
+				case BytecodeCompiler.GET:
+					n[a] = io.get() ;
+					s[a] = -1 ;
+					pc += 4 ;
+					break ;
+				case BytecodeCompiler.PUT:
+					if( s[a] < 0 )
+						io.put( n[a] ) ;
+					else
+						io.put( program.strings[s[a]] ) ;
+					pc += 4 ;
+					break ;
+				default:
+					throw new RuntimeError( program.lines[pc / 4], "bad opcode " + code[pc] ) ;
+			}
+		}
+	} // end of method run
+
+	private boolean equal( int a, int b )
+	{
+		return strings[a] < 0 && strings[b] < 0 ? numbers[a] == numbers[b] : strings[a] == strings[b] ;
+	} // end of method equal
+
+	/** Compares two registers, at least one of which holds a string. */
+	private int compare( int pc, int a, int b )
+	{
+		if( strings[a] < 0 || strings[b] < 0 )
+			throw new RuntimeError( program.lines[pc / 4], "a string compared with a number" ) ;
+		return program.strings[strings[a]].compareTo( program.strings[strings[b]] ) ;
+	} // end of method compare
+
+	private RuntimeError arithmetic( int pc )
+	{
+		return new RuntimeError( program.lines[pc / 4], "arithmetic on a string" ) ;
+	} // end of method arithmetic
+} // end of class RegisterMachine
@@ -0,0 +1,271 @@
+
+/**
+ *
+ * Persistent cache of recogniser results, so unchanged programs are not
+ * lexed and parsed again on every run.
+ *
+ * Entries are keyed by a hash of the source, its length, the name it is
+ * reported under and a stamp made from the analyser classes themselves and
+ * the options in force, so a rebuilt parser or different options never
+ * replay stale output.  The name is in the key because the messages in
+ * res.txt give it, so two files with the same text have different entries.  Each entry
+ * holds the event trace and the res.txt text for one file, exactly as they
+ * were first written.
+ *
+ * Every entry is its own file, written under a temporary name and renamed
+ * into place, so readers in other processes either see a whole entry or
+ * none.  A hit touches the file's modification time, and eviction removes
+ * the least recently used entries once the cache grows past its size limit.
+ *
+ **/
+
+import java.io.* ;
+import java.nio.* ;
+import java.nio.channels.* ;
+import java.nio.file.* ;
+import java.nio.file.attribute.* ;
+import java.util.* ;
+
+public class ResultCache
+{
+	/** How old a temporary file must be before eviction takes it for one left by a process that died, in milliseconds. */
+	private static final long staleTemporary = 60 * 60 * 1000 ;
+	/** Marks an entry file, and changes whenever the entry layout does. */
+	private static final int magic = 0x33313201 ;
+	/** The classes whose code decides what a parse produces. */
+	private static final String[] analyserClasses = {
+		"AbstractGenerate", "Generate", "AbstractSyntaxAnalyser", "SyntaxAnalyser",
+		"LexicalAnalyser", "SourceReader", "Token", "CompilationException", "SemanticChecker", "Optimiser",
+		"FusedAnalyser", "LineIndex"
+	} ;
+
+	/** What the cache holds for one file. */
+	public static class Entry
+	{
+		/** Tokens read, errors reported and the RunReport outcome. */
+		public int tokens, errors, outcome ;
+		/** The event trace written to standard output. */
+		public byte[] events ;
+		/** The text written to res.txt. */
+		public byte[] diagnostics ;
+	} // end of class Entry
+
+	private final Path dir ;
+	private final long maxBytes ;
+	/** Mixed into every key: the analyser version and the options. */
+	private final long stamp ;
+
+	private int hits, misses ;
+
+	/** Opens a cache, creating the directory if need be.
+
+	  @param d The cache directory.
+	  @param limit The most bytes of entries to keep.
+	  @param options The options that affect what a parse produces.
+	*/
+	public ResultCache( String d, long limit, String options ) throws IOException
+	{
+		dir = Paths.get( d ) ;
+		maxBytes = limit ;
+		Files.createDirectories( dir ) ;
+
+		ByteArrayOutputStream versions = new ByteArrayOutputStream() ;
+		for( String name : analyserClasses )
+		{
+			try( InputStream in = ResultCache.class.getResourceAsStream( "/" + name + ".class" ) )
+			{
+				if( in != null )
+					in.transferTo( versions ) ;
+			}
+		}
+		versions.write( options.getBytes( "UTF-8" ) ) ;
+		stamp = hash( versions.toByteArray(), 0 ) ;
+	} // end of constructor method
+
+	/** A 64-bit hash of some bytes, eight at a time, in the style of MurmurHash3.
+
+	  @param data The bytes to hash.
+	  @param seed Where to start from.
+	  @return the hash.
+	*/
+	static long hash( byte[] data, long seed )
+	{
+		final long c1 = 0x87c37b91114253d5L, c2 = 0x4cf5ad432745937fL ;
+		ByteBuffer b = ByteBuffer.wrap( data ).order( ByteOrder.LITTLE_ENDIAN ) ;
+		long h = seed ^ ( data.length * c1 ) ;
+		int i = 0 ;
+		for( ; i + 8 <= data.length; i += 8 )
+		{
+			long k = b.getLong( i ) ;
+			k *= c1 ;
+			k = Long.rotateLeft( k, 31 ) ;
+			k *= c2 ;
+			h ^= k ;
+			h = Long.rotateLeft( h, 27 ) * 5 + 0x52dce729 ;
+		}
+		long k = 0 ;
+		for( int shift = 0; i < data.length; i++, shift += 8 )
+			k |= ( data[i] & 0xffL ) << shift ;
+		k *= c1 ;
+		k = Long.rotateLeft( k, 31 ) ;
+		k *= c2 ;
+		h ^= k ;
+
+		h ^= h >>> 33 ;
+		h *= 0xff51afd7ed558ccdL ;
+		h ^= h >>> 33 ;
+		h *= 0xc4ceb9fe1a85ec53L ;
+		h ^= h >>> 33 ;
+		return h ;
+	} // end of method hash
+
+	/** Works out the key for a source file.
+
+	  @param name The name the file is reported under.
+	  @param source The contents of the file.
+	  @return the key.
+	*/
+	public String key( String name, byte[] source ) throws UnsupportedEncodingException
+	{
+		return String.format( "%016x-%x", hash( source, hash( name.getBytes( "UTF-8" ), stamp ) ), source.length ) ;
+	} // end of method key
+
+	/** Looks an entry up.
+
+	  @param key The key from key().
+	  @return the entry, or null if there is none or it cannot be read.
+	*/
+	public Entry get( String key )
+	{
+		Path p = dir.resolve( key ) ;
+		try
+		{
+			byte[] data = Files.readAllBytes( p ) ;
+			DataInputStream in = new DataInputStream( new ByteArrayInputStream( data ) ) ;
+			if( in.readInt() != magic )
+			{
+				misses++ ;
+				return null ;
+			}
+			Entry e = new Entry() ;
+			e.tokens = in.readInt() ;
+			e.errors = in.readInt() ;
+			e.outcome = in.readInt() ;
+			e.events = new byte[in.readInt()] ;
+			in.readFully( e.events ) ;
+			e.diagnostics = new byte[in.readInt()] ;
+			in.readFully( e.diagnostics ) ;
+			try
+			{
+				Files.setLastModifiedTime( p, FileTime.fromMillis( System.currentTimeMillis() ) ) ;
+			}
+			catch( IOException ex )
+			{
+				// evicted by another process since we read it; the entry we have is still good
+			}
+			hits++ ;
+			return e ;
+		}
+		catch( IOException ex )
+		{
+			// missing, or cut short: either way, parse the file again
+			misses++ ;
+			return null ;
+		}
+	} // end of method get
+
+	/** Stores an entry, replacing any with the same key.
+
+	  @param key The key from key().
+	  @param e The entry.
+	*/
+	public void put( String key, Entry e ) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream( e.events.length + e.diagnostics.length + 32 ) ;
+		DataOutputStream out = new DataOutputStream( bytes ) ;
+		out.writeInt( magic ) ;
+		out.writeInt( e.tokens ) ;
+		out.writeInt( e.errors ) ;
+		out.writeInt( e.outcome ) ;
+		out.writeInt( e.events.length ) ;
+		out.write( e.events ) ;
+		out.writeInt( e.diagnostics.length ) ;
+		out.write( e.diagnostics ) ;
+		out.flush() ;
+
+		Path temp = Files.createTempFile( dir, key, ".tmp" ) ;
+		try
+		{
+			Files.write( temp, bytes.toByteArray() ) ;
+			Files.move( temp, dir.resolve( key ), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING ) ;
+		}
+		finally
+		{
+			Files.deleteIfExists( temp ) ;
+		}
+	} // end of method put
+
+	/** Removes the least recently used entries until the cache is within its size limit.
+	  Only one process evicts at a time; the others skip it.  Entries still being written
+	  by put are left alone, unless they are so old that their writer must have died. */
+	public void evict() throws IOException
+	{
+		try( FileChannel lockFile = FileChannel.open( dir.resolve( ".lock" ), StandardOpenOption.CREATE, StandardOpenOption.WRITE ) ;
+			FileLock lock = lockFile.tryLock() )
+		{
+			if( lock == null )
+				return ;
+
+			final List<Path> entries = new ArrayList<Path>() ;
+			final Map<Path, BasicFileAttributes> attributes = new HashMap<Path, BasicFileAttributes>() ;
+			long total = 0 ;
+			try( DirectoryStream<Path> stream = Files.newDirectoryStream( dir ) )
+			{
+				for( Path p : stream )
+				{
+					String name = p.getFileName().toString() ;
+					if( name.startsWith( "." ) )
+						continue ;
+					try
+					{
+						BasicFileAttributes a = Files.readAttributes( p, BasicFileAttributes.class ) ;
+						if( name.endsWith( ".tmp" ) )
+						{
+							if( System.currentTimeMillis() - a.lastModifiedTime().toMillis() > staleTemporary )
+								Files.deleteIfExists( p ) ;
+							continue ;
+						}
+						entries.add( p ) ;
+						attributes.put( p, a ) ;
+						total += a.size() ;
+					}
+					catch( NoSuchFileException ex )
+					{
+						// removed by another process while we listed the directory
+					}
+				}
+			}
+			if( total <= maxBytes )
+				return ;
+
+			entries.sort( ( a, b ) -> attributes.get( a ).lastModifiedTime().compareTo( attributes.get( b ).lastModifiedTime() ) ) ;
+			for( Path p : entries )
+			{
+				if( total <= maxBytes )
+					break ;
+				Files.deleteIfExists( p ) ;
+				total -= attributes.get( p ).size() ;
+			}
+		}
+		catch( OverlappingFileLockException ex )
+		{
+			// another thread in this JVM is already evicting
+		}
+	} // end of method evict
+
+	/** @return hits and misses so far, for the end of a run. */
+	public String statistics()
+	{
+		return "cache: " + hits + " hits, " + misses + " misses" ;
+	} // end of method statistics
+} // end of class ResultCache
@@ -0,0 +1,194 @@
+
+/**
+ *
+ * Machine-readable report of a batch run: one entry per file with its size,
+ * tokens, wall time, bytes allocated and outcome, then totals, throughput and
+ * latency percentiles and a histogram.  Written as JSON at the end of the run.
+ *
+ * Recording a file only stores a few numbers in growable arrays; everything
+ * else is worked out when the report is written.  A file recorded again, as
+ * when a watched program changes, replaces its earlier entry, so the report
+ * is always of the latest version of each file.
+ *
+ **/
+
+import java.io.* ;
+import java.lang.management.* ;
+import java.util.* ;
+
+public class RunReport
+{
+	/** Outcomes of a file. */
+	public static final int success = 0, failed = 1, timedOut = 2 ;
+	private static final String[] outcomeNames = { "success", "error", "timeout" } ;
+
+	private static final com.sun.management.ThreadMXBean threads =
+		(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean() ;
+
+	private String[] names = new String[64] ;
+	private long[] bytes = new long[64] ;
+	private long[] tokens = new long[64] ;
+	private long[] nanos = new long[64] ;
+	private long[] allocated = new long[64] ;
+	private int[] outcomes = new int[64] ;
+	private int[] errors = new int[64] ;
+	private int count = 0 ;
+	/** Where each file's entry is in the arrays. */
+	private final Map<String, Integer> positions = new HashMap<String, Integer>() ;
+
+	private final long started = System.nanoTime() ;
+
+	/** @return the bytes allocated so far by the current thread, or -1 if the JVM cannot say. */
+	public static long allocatedBytes()
+	{
+		return threads.isThreadAllocatedMemorySupported() ? threads.getThreadAllocatedBytes( Thread.currentThread().getId() ) : -1 ;
+	} // end of method allocatedBytes
+
+	/** Records one file, replacing any earlier entry for it.
+
+	  @param name The file name.
+	  @param size The size of the file in bytes.
+	  @param tokenCount The number of tokens read from it.
+	  @param wallNanos How long it took.
+	  @param allocation The bytes allocated while it was processed.
+	  @param outcome One of success, failed or timedOut.
+	  @param errorCount The number of errors reported.
+	*/
+	public void record( String name, long size, long tokenCount, long wallNanos, long allocation, int outcome, int errorCount )
+	{
+		Integer at = positions.get( name ) ;
+		if( at != null )
+		{
+			set( at, name, size, tokenCount, wallNanos, allocation, outcome, errorCount ) ;
+			return ;
+		}
+		if( count == names.length )
+		{
+			int n = count * 2 ;
+			names = Arrays.copyOf( names, n ) ;
+			bytes = Arrays.copyOf( bytes, n ) ;
+			tokens = Arrays.copyOf( tokens, n ) ;
+			nanos = Arrays.copyOf( nanos, n ) ;
+			allocated = Arrays.copyOf( allocated, n ) ;
+			outcomes = Arrays.copyOf( outcomes, n ) ;
+			errors = Arrays.copyOf( errors, n ) ;
+		}
+		positions.put( name, count ) ;
+		set( count++, name, size, tokenCount, wallNanos, allocation, outcome, errorCount ) ;
+	} // end of method record
+
+	private void set( int i, String name, long size, long tokenCount, long wallNanos, long allocation, int outcome, int errorCount )
+	{
+		names[i] = name ;
+		bytes[i] = size ;
+		tokens[i] = tokenCount ;
+		nanos[i] = wallNanos ;
+		allocated[i] = allocation ;
+		outcomes[i] = outcome ;
+		errors[i] = errorCount ;
+	} // end of method set
+
+	/** Forgets a file that has gone, moving the last entry into its place.
+
+	  @param name The file name.
+	*/
+	public void remove( String name )
+	{
+		Integer at = positions.remove( name ) ;
+		if( at == null )
+			return ;
+		int last = --count ;
+		if( at != last )
+		{
+			set( at, names[last], bytes[last], tokens[last], nanos[last], allocated[last], outcomes[last], errors[last] ) ;
+			positions.put( names[at], at ) ;
+		}
+		names[last] = null ;
+	} // end of method remove
+
+	private static String quote( String s )
+	{
+		StringBuilder b = new StringBuilder( "\"" ) ;
+		for( char c : s.toCharArray() )
+		{
+			if( c == '"' || c == '\\' )
+				b.append( '\\' ).append( c ) ;
+			else if( c < ' ' )
+				b.append( String.format( "\\u%04x", (int) c ) ) ;
+			else
+				b.append( c ) ;
+		}
+		return b.append( '"' ).toString() ;
+	} // end of method quote
+
+	private static double millis( long n )
+	{
+		return n / 1e6 ;
+	} // end of method millis
+
+	/** The latency at a percentile, from sorted latencies, by the nearest-rank method. */
+	private static long percentile( long[] sorted, double p )
+	{
+		if( sorted.length == 0 )
+			return 0 ;
+		int rank = (int) Math.ceil( p / 100 * sorted.length ) ;
+		return sorted[Math.max( 0, rank - 1 )] ;
+	} // end of method percentile
+
+	/** Writes the report.
+
+	  @param fileName Where to write it.
+	*/
+	public void write( String fileName ) throws IOException
+	{
+		long runNanos = System.nanoTime() - started ;
+		long totalBytes = 0, totalTokens = 0, totalAllocated = 0 ;
+		int[] outcomeCounts = new int[outcomeNames.length] ;
+
+		try( PrintWriter out = new PrintWriter( new BufferedWriter( new FileWriter( fileName ) ) ) )
+		{
+			out.println( "{" ) ;
+			out.println( "  \"files\": [" ) ;
+			for( int i = 0; i < count; i++ )
+			{
+				totalBytes += bytes[i] ;
+				totalTokens += tokens[i] ;
+				totalAllocated += allocated[i] ;
+				outcomeCounts[outcomes[i]]++ ;
+				out.print( String.format( Locale.ROOT,
+					"    { \"file\": %s, \"bytes\": %d, \"tokens\": %d, \"wall_ms\": %.3f, \"allocated_bytes\": %d, \"outcome\": \"%s\", \"errors\": %d }",
+					quote( names[i] ), bytes[i], tokens[i], millis( nanos[i] ), allocated[i], outcomeNames[outcomes[i]], errors[i] ) ) ;
+				out.println( i < count - 1 ? "," : "" ) ;
+			}
+			out.println( "  ]," ) ;
+
+			long[] sorted = Arrays.copyOf( nanos, count ) ;
+			Arrays.sort( sorted ) ;
+			double seconds = runNanos / 1e9 ;
+			out.println( "  \"summary\": {" ) ;
+			out.println( String.format( Locale.ROOT, "    \"files\": %d, \"success\": %d, \"error\": %d, \"timeout\": %d,",
+				count, outcomeCounts[success], outcomeCounts[failed], outcomeCounts[timedOut] ) ) ;
+			out.println( String.format( Locale.ROOT, "    \"bytes\": %d, \"tokens\": %d, \"allocated_bytes\": %d, \"run_ms\": %.3f,",
+				totalBytes, totalTokens, totalAllocated, millis( runNanos ) ) ) ;
+			out.println( String.format( Locale.ROOT, "    \"files_per_s\": %.2f, \"mb_per_s\": %.3f, \"tokens_per_s\": %.1f,",
+				count / seconds, totalBytes / ( 1024.0 * 1024.0 ) / seconds, totalTokens / seconds ) ) ;
+			out.println( String.format( Locale.ROOT, "    \"latency_ms\": { \"p50\": %.3f, \"p95\": %.3f, \"p99\": %.3f, \"max\": %.3f },",
+				millis( percentile( sorted, 50 ) ), millis( percentile( sorted, 95 ) ), millis( percentile( sorted, 99 ) ),
+				millis( count == 0 ? 0 : sorted[count - 1] ) ) ) ;
+
+			// power-of-two buckets from 16 microseconds up, each counting every file no slower than its bound, as Prometheus does
+			out.println( "    \"latency_histogram\": [" ) ;
+			int i = 0 ;
+			for( long bound = 16000; i < count; bound *= 2 )
+			{
+				while( i < count && sorted[i] <= bound )
+					i++ ;
+				out.print( String.format( Locale.ROOT, "      { \"le_ms\": %.3f, \"count\": %d }", millis( bound ), i ) ) ;
+				out.println( i < count ? "," : "" ) ;
+			}
+			out.println( "    ]" ) ;
+			out.println( "  }" ) ;
+			out.println( "}" ) ;
+		}
+	} // end of method write
+} // end of class RunReport
@@ -0,0 +1,246 @@
+
+/**
+ *
+ * Semantic checks made while the syntax analyser recognises a program, so
+ * they cost no second pass over the tokens:
+ *
+ *   a variable read before any assignment to it earlier in the program;
+ *   a variable holding a string used in arithmetic;
+ *   a call to a procedure that is not known.
+ *
+ * The checks follow the text rather than the flow of control, so an
+ * assignment in either branch of an if counts from then on, and a loop body
+ * is checked once in order.  Arguments to get count as assignments.
+ *
+ * Identifiers are interned to small ints, and what is known about each is
+ * kept in primitive arrays indexed by them.  Each file gets a new stamp, so
+ * starting the next file does not have to clear the arrays.
+ *
+ **/
+
+import java.util.* ;
+
+public class SemanticChecker
+{
+	/** What a variable is known to hold. */
+	private static final byte unassigned = 0, number = 1, string = 2, input = 3 ;
+
+	/** Procedures known unless others are given. */
+	public static final String[] builtInProcedures = { "get", "put" } ;
+
+	/* Interned identifiers, by open addressing. */
+	private String[] keys = new String[256] ;
+	private int[] ids = new int[256] ;
+	private int size ;
+
+	/* By identifier: the file the entries were last set for, and what was found. */
+	private int[] stamps = new int[128] ;
+	private byte[] types = new byte[128] ;
+	/** Has a read before assignment or an unknown call already been reported for this name in this file? */
+	private boolean[] reported = new boolean[128] ;
+	/** Is this name a known procedure?  Not cleared between files. */
+	private boolean[] procedures = new boolean[128] ;
+	private int stamp ;
+
+	private String fileName ;
+	private LineIndex lines ;
+	private final List<CompilationException> problems = new ArrayList<CompilationException>() ;
+
+	/* The assignment being checked. */
+	private Token target ;
+	private byte valueType ;
+	private boolean arithmetic ;
+	private Token stringOperand ;
+	/** The procedure named by the call being checked. */
+	private int calling = -1 ;
+	private final int get ;
+
+	public SemanticChecker()
+	{
+		get = intern( "get" ) ;
+		setProcedures( Arrays.asList( builtInProcedures ) ) ;
+	} // end of constructor method
+
+	/** Sets the procedures that calls may name.
+
+	  @param names The known procedures.
+	*/
+	public void setProcedures( Collection<String> names )
+	{
+		Arrays.fill( procedures, false ) ;
+		for( String name : names )
+			procedures[intern( name )] = true ;
+	} // end of method setProcedures
+
+	/** @return the number for an identifier, the same every time it is seen. */
+	private int intern( String name )
+	{
+		int mask = keys.length - 1 ;
+		int h = name.hashCode() ;
+		int i = ( h ^ ( h >>> 16 ) ) & mask ;
+		while( keys[i] != null )
+		{
+			if( keys[i].equals( name ) )
+				return ids[i] ;
+			i = ( i + 1 ) & mask ;
+		}
+		keys[i] = name ;
+		ids[i] = size ;
+		if( size == stamps.length )
+		{
+			int n = size * 2 ;
+			stamps = Arrays.copyOf( stamps, n ) ;
+			types = Arrays.copyOf( types, n ) ;
+			reported = Arrays.copyOf( reported, n ) ;
+			procedures = Arrays.copyOf( procedures, n ) ;
+		}
+		size++ ;
+		if( size * 2 > keys.length )
+			rehash() ;
+		return size - 1 ;
+	} // end of method intern
+
+	private void rehash()
+	{
+		String[] oldKeys = keys ;
+		int[] oldIds = ids ;
+		keys = new String[oldKeys.length * 2] ;
+		ids = new int[oldKeys.length * 2] ;
+		int mask = keys.length - 1 ;
+		for( int j = 0; j < oldKeys.length; j++ )
+		{
+			if( oldKeys[j] == null )
+				continue ;
+			int h = oldKeys[j].hashCode() ;
+			int i = ( h ^ ( h >>> 16 ) ) & mask ;
+			while( keys[i] != null )
+				i = ( i + 1 ) & mask ;
+			keys[i] = oldKeys[j] ;
+			ids[i] = oldIds[j] ;
+		}
+	} // end of method rehash
+
+	/** @return the number for an identifier, with its entries cleared if they belong to an earlier file. */
+	private int lookup( Token t )
+	{
+		int id = intern( t.text ) ;
+		if( stamps[id] != stamp )
+		{
+			stamps[id] = stamp ;
+			types[id] = unassigned ;
+			reported[id] = false ;
+		}
+		return id ;
+	} // end of method lookup
+
+	/** Starts checking a new file.
+
+	  @param name The file name, for messages.
+	  @param index Where the lines start, for columns in messages.
+	*/
+	public void reset( String name, LineIndex index )
+	{
+		fileName = name ;
+		lines = index ;
+		problems.clear() ;
+		stamp++ ;
+		target = null ;
+		calling = -1 ;
+	} // end of method reset
+
+	/** @return the problems found in the file so far. */
+	public List<CompilationException> problems()
+	{
+		return problems ;
+	} // end of method problems
+
+	private void report( Token t, String message )
+	{
+		problems.add( new CompilationException( "Error at line " + t.lineNumber + " in " + fileName + ": - "
+			+ message + " at column " + lines.column( t.offset ) ) ) ;
+	} // end of method report
+
+	/** A variable is read. */
+	private void read( Token t )
+	{
+		int id = lookup( t ) ;
+		if( types[id] == unassigned && !reported[id] )
+		{
+			reported[id] = true ;
+			report( t, "variable '" + t.text + "' is read before it is assigned" ) ;
+		}
+	} // end of method read
+
+	/** An assignment to a variable starts; its value follows. */
+	public void beginAssignment( Token t )
+	{
+		target = t ;
+		valueType = number ;
+		arithmetic = false ;
+		stringOperand = null ;
+	} // end of method beginAssignment
+
+	/** The value being assigned is a string constant. */
+	public void stringValue()
+	{
+		valueType = string ;
+	} // end of method stringValue
+
+	/** An identifier is used as a factor in the value being assigned. */
+	public void operand( Token t )
+	{
+		read( t ) ;
+		if( types[lookup( t )] == string && stringOperand == null )
+			stringOperand = t ;
+	} // end of method operand
+
+	/** An arithmetic operator is used in the value being assigned. */
+	public void arithmetic()
+	{
+		arithmetic = true ;
+	} // end of method arithmetic
+
+	/** The value has been parsed, so the variable is now assigned. */
+	public void endAssignment()
+	{
+		if( target == null )
+			return ;
+		if( stringOperand != null && arithmetic )
+			report( stringOperand, "string variable '" + stringOperand.text + "' is used in arithmetic" ) ;
+		// a lone string variable copies its string
+		else if( stringOperand != null )
+			valueType = string ;
+		types[lookup( target )] = valueType ;
+		target = null ;
+	} // end of method endAssignment
+
+	/** An identifier is used in a condition. */
+	public void condition( Token t )
+	{
+		read( t ) ;
+	} // end of method condition
+
+	/** A procedure is called; its arguments follow. */
+	public void call( Token t )
+	{
+		calling = intern( t.text ) ;
+		if( !procedures[calling] )
+		{
+			int id = lookup( t ) ;
+			if( !reported[id] )
+			{
+				reported[id] = true ;
+				report( t, "call to unknown procedure '" + t.text + "'" ) ;
+			}
+		}
+	} // end of method call
+
+	/** An identifier is passed to the procedure being called. */
+	public void argument( Token t )
+	{
+		if( calling == get )
+			types[lookup( t )] = input ;
+		else
+			read( t ) ;
+	} // end of method argument
+} // end of class SemanticChecker
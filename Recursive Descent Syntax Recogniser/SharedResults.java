@@ -0,0 +1,434 @@
+
+/**
+ *
+ * Hands the results of checking programs to other processes on the same
+ * machine through a memory-mapped file, so that a client reads a program's
+ * tokens, events and diagnostics where the recogniser wrote them instead of
+ * having the whole event trace copied to it through a pipe or socket.
+ *
+ * The file is laid out as:
+ *
+ *   header     magic, slot count, slot size, where the data starts and how
+ *              long it is, the last sequence number published, how far the
+ *              writer has claimed the data, and the writer's process id
+ *   slots      a ring of fixed-size slots, result n in slot n % count, each
+ *              holding n, where its data is, the length of each part, and
+ *              the outcome, token and error counts
+ *   data       a ring of bytes holding, for each result, its name in UTF-8,
+ *              four ints for each token (symbol, line, offset and length of
+ *              its text), the 312 event text and the res.txt text
+ *
+ * Data positions only ever grow; a position is found in the ring by taking
+ * it modulo the ring's length, and a result's data never wraps round the end.
+ * The writer claims the data for a result before writing it, so data that has
+ * been claimed over is no longer a result's.  A slot's sequence number is
+ * made negative while the slot is written and set to the result's number
+ * last, and the header's published number is moved on after that, all with
+ * release stores that readers match with acquire loads.
+ *
+ * A client polls published() and calls get( n ) for each new number.  What
+ * get returns looks straight into the mapping, so once the client has read
+ * what it wants it calls valid() to learn whether the writer lapped it in the
+ * meantime; a client that keeps up never sees that happen.
+ *
+ **/
+
+import java.io.* ;
+import java.lang.invoke.* ;
+import java.nio.* ;
+import java.nio.channels.* ;
+import java.nio.charset.StandardCharsets ;
+import java.nio.file.* ;
+import java.util.* ;
+
+public class SharedResults implements Closeable
+{
+	/** Marks a results file, and changes whenever the layout does. */
+	private static final int magic = 0x33313253 ;
+	private static final int headerSize = 64, slotSize = 64 ;
+	/* Where the header's fields are. */
+	private static final int slotCountAt = 4, slotSizeAt = 8, dataStartAt = 16, dataSizeAt = 24,
+		publishedAt = 32, claimedAt = 40, writerAt = 48 ;
+	/* Where a slot's fields are. */
+	private static final int sequenceAt = 0, positionAt = 8, nameLengthAt = 16, tokenCountAt = 20,
+		eventsLengthAt = 24, diagnosticsLengthAt = 28, outcomeAt = 32, errorsAt = 36, tokensReadAt = 40,
+		flagsAt = 44, timeAt = 48 ;
+	/** Each token takes four ints. */
+	private static final int tokenSize = 16 ;
+
+	/** A result replayed from the cache, which has no token table. */
+	public static final int noTokens = 1 ;
+	/** A result too big for the data ring, published with its counts only. */
+	public static final int tooLarge = 2 ;
+
+	private static final VarHandle longs = MethodHandles.byteBufferViewVarHandle( long[].class, ByteOrder.BIG_ENDIAN ) ;
+
+	private final String path ;
+	private final FileChannel channel ;
+	private final MappedByteBuffer map ;
+	private final boolean writing ;
+	private final int slotCount ;
+	private final int dataStart ;
+	private final long dataSize ;
+	/** The last sequence number given out, on the writer. */
+	private long sequence ;
+	private long bytesPublished ;
+
+	private SharedResults( String path, FileChannel channel, MappedByteBuffer map, boolean writing ) throws IOException
+	{
+		this.path = path ;
+		this.channel = channel ;
+		this.map = map ;
+		this.writing = writing ;
+		if( map.capacity() < headerSize || map.getInt( 0 ) != magic || map.getInt( slotSizeAt ) != slotSize )
+			throw new IOException( path + " is not a results file" ) ;
+		slotCount = map.getInt( slotCountAt ) ;
+		dataStart = (int) map.getLong( dataStartAt ) ;
+		dataSize = map.getLong( dataSizeAt ) ;
+		sequence = published() ;
+	} // end of constructor method
+
+	/** Makes a new results file for this process to write, in place of any old one.
+	  A client still reading the old one keeps its mapping and sees the writer's process id change when it opens the new one.
+
+	  @param path The file.
+	  @param slots How many results are kept before the oldest is reused.
+	  @param dataBytes How many bytes of results are kept before the oldest are overwritten.
+	  @throws IOException if the file cannot be made.
+	*/
+	public static SharedResults create( String path, int slots, long dataBytes ) throws IOException
+	{
+		slots = Math.max( 1, slots ) ;
+		dataBytes = Math.max( 4096, dataBytes ) ;
+		long start = headerSize + (long) slots * slotSize ;
+		if( start + dataBytes > Integer.MAX_VALUE )
+			throw new IOException( "a results file must be under 2 GB" ) ;
+		Path file = Paths.get( path ) ;
+		Path temp = Files.createTempFile( file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp" ) ;
+		try
+		{
+			try( FileChannel c = FileChannel.open( temp, StandardOpenOption.READ, StandardOpenOption.WRITE ) )
+			{
+				ByteBuffer header = ByteBuffer.allocate( headerSize ) ;
+				header.putInt( 0, magic ) ;
+				header.putInt( slotCountAt, slots ) ;
+				header.putInt( slotSizeAt, slotSize ) ;
+				header.putLong( dataStartAt, start ) ;
+				header.putLong( dataSizeAt, dataBytes ) ;
+				header.putLong( writerAt, ProcessHandle.current().pid() ) ;
+				c.write( header, 0 ) ;
+				// the slots and data read as zeros, which no result is numbered
+				c.write( ByteBuffer.allocate( 1 ), start + dataBytes - 1 ) ;
+			}
+			Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE ) ;
+		}
+		finally
+		{
+			Files.deleteIfExists( temp ) ;
+		}
+		FileChannel c = FileChannel.open( file, StandardOpenOption.READ, StandardOpenOption.WRITE ) ;
+		return new SharedResults( path, c, c.map( FileChannel.MapMode.READ_WRITE, 0, c.size() ), true ) ;
+	} // end of method create
+
+	/** Opens a results file to read.
+
+	  @param path The file.
+	  @throws IOException if it cannot be read or is not a results file.
+	*/
+	public static SharedResults open( String path ) throws IOException
+	{
+		FileChannel c = FileChannel.open( Paths.get( path ), StandardOpenOption.READ ) ;
+		try
+		{
+			return new SharedResults( path, c, c.map( FileChannel.MapMode.READ_ONLY, 0, c.size() ), false ) ;
+		}
+		catch( IOException e )
+		{
+			c.close() ;
+			throw e ;
+		}
+	} // end of method open
+
+	/** @return the number of the last result published, or zero if there is none yet. */
+	public long published()
+	{
+		return (long) longs.getAcquire( map, publishedAt ) ;
+	} // end of method published
+
+	/** @return the process that writes the file. */
+	public long writer()
+	{
+		return map.getLong( writerAt ) ;
+	} // end of method writer
+
+	private int slot( long n )
+	{
+		return headerSize + (int) ( n % slotCount ) * slotSize ;
+	} // end of method slot
+
+	/** Publishes the result of checking a program, reusing the oldest slot and data as needed.
+
+	  @param name The program's name.
+	  @param tokens The tokens accepted, or null if there are none to give.
+	  @param outcome RunReport.success, failed or timedOut.
+	  @param tokensRead How many tokens the analyser read.
+	  @param errors How many errors it reported.
+	  @param events The 312 event text.
+	  @param diagnostics The res.txt text.
+	  @return the result's sequence number.
+	*/
+	public long publish( String name, Tokens tokens, int outcome, int tokensRead, int errors, byte[] events, byte[] diagnostics )
+	{
+		if( !writing )
+			throw new IllegalStateException( path + " is open to read" ) ;
+		byte[] n = name.getBytes( StandardCharsets.UTF_8 ) ;
+		int tokenCount = tokens == null ? 0 : tokens.count ;
+		long length = n.length + (long) tokenCount * tokenSize + events.length + diagnostics.length ;
+		int flags = tokens == null ? noTokens : 0 ;
+		if( length > dataSize )
+		{
+			flags |= tooLarge ;
+			tokenCount = 0 ;
+			length = 0 ;
+		}
+
+		long number = ++sequence ;
+		int slot = slot( number ) ;
+		longs.setRelease( map, slot + sequenceAt, -number ) ;
+		// a reader must see the slot taken before it sees any of it change
+		VarHandle.storeStoreFence() ;
+
+		// a result's data never runs round the end of the ring, so it can be read as one piece
+		long position = (long) longs.getOpaque( map, claimedAt ) ;
+		if( position % dataSize + length > dataSize )
+			position += dataSize - position % dataSize ;
+		longs.setRelease( map, claimedAt, position + length ) ;
+		VarHandle.storeStoreFence() ;
+		int at = dataStart + (int) ( position % dataSize ) ;
+		if( length > 0 )
+		{
+			ByteBuffer data = map.duplicate() ;
+			data.position( at ) ;
+			data.put( n ) ;
+			for( int i = 0; i < tokenCount * 4; i++ )
+				data.putInt( tokens.values[i] ) ;
+			data.put( events ) ;
+			data.put( diagnostics ) ;
+		}
+
+		map.putLong( slot + positionAt, position ) ;
+		map.putInt( slot + nameLengthAt, length > 0 ? n.length : 0 ) ;
+		map.putInt( slot + tokenCountAt, tokenCount ) ;
+		map.putInt( slot + eventsLengthAt, length > 0 ? events.length : 0 ) ;
+		map.putInt( slot + diagnosticsLengthAt, length > 0 ? diagnostics.length : 0 ) ;
+		map.putInt( slot + outcomeAt, outcome ) ;
+		map.putInt( slot + errorsAt, errors ) ;
+		map.putInt( slot + tokensReadAt, tokensRead ) ;
+		map.putInt( slot + flagsAt, flags ) ;
+		map.putLong( slot + timeAt, System.currentTimeMillis() ) ;
+		longs.setRelease( map, slot + sequenceAt, number ) ;
+		longs.setRelease( map, publishedAt, number ) ;
+		bytesPublished += length ;
+		return number ;
+	} // end of method publish
+
+	/** Reads a result.
+
+	  @param number The result's sequence number.
+	  @return the result, or null if it has not been published or has already been overwritten.
+	*/
+	public Result get( long number )
+	{
+		if( number <= 0 || number > published() )
+			return null ;
+		int slot = slot( number ) ;
+		if( (long) longs.getAcquire( map, slot + sequenceAt ) != number )
+			return null ;
+		Result r = new Result( number, slot ) ;
+		return r.valid() ? r : null ;
+	} // end of method get
+
+	/** One published result, read in place.  Check valid() after reading it. */
+	public class Result
+	{
+		public final long sequence ;
+		public final int outcome, errors, tokensRead, flags, tokenCount ;
+		public final long time ;
+		private final long position ;
+		private final int slot, nameLength, eventsLength, diagnosticsLength ;
+
+		private Result( long sequence, int slot )
+		{
+			this.sequence = sequence ;
+			this.slot = slot ;
+			position = map.getLong( slot + positionAt ) ;
+			nameLength = map.getInt( slot + nameLengthAt ) ;
+			tokenCount = map.getInt( slot + tokenCountAt ) ;
+			eventsLength = map.getInt( slot + eventsLengthAt ) ;
+			diagnosticsLength = map.getInt( slot + diagnosticsLengthAt ) ;
+			outcome = map.getInt( slot + outcomeAt ) ;
+			errors = map.getInt( slot + errorsAt ) ;
+			tokensRead = map.getInt( slot + tokensReadAt ) ;
+			flags = map.getInt( slot + flagsAt ) ;
+			time = map.getLong( slot + timeAt ) ;
+		} // end of constructor method
+
+		/** @return a view of part of the result's data, in place in the mapping. */
+		private ByteBuffer part( int skip, int length )
+		{
+			ByteBuffer b = map.duplicate() ;
+			int at = dataStart + (int) ( position % dataSize ) + skip ;
+			b.limit( at + length ).position( at ) ;
+			return b.slice().asReadOnlyBuffer() ;
+		} // end of method part
+
+		public String name()
+		{
+			byte[] n = new byte[nameLength] ;
+			part( 0, nameLength ).get( n ) ;
+			return new String( n, StandardCharsets.UTF_8 ) ;
+		} // end of method name
+
+		/** @return the tokens, four ints each: symbol, line, offset and length of its text. */
+		public IntBuffer tokens()
+		{
+			return part( nameLength, tokenCount * tokenSize ).asIntBuffer() ;
+		} // end of method tokens
+
+		/** @return the 312 event text. */
+		public ByteBuffer events()
+		{
+			return part( nameLength + tokenCount * tokenSize, eventsLength ) ;
+		} // end of method events
+
+		/** @return the res.txt text. */
+		public ByteBuffer diagnostics()
+		{
+			return part( nameLength + tokenCount * tokenSize + eventsLength, diagnosticsLength ) ;
+		} // end of method diagnostics
+
+		/** @return true if nothing read from the result so far can have been overwritten by the writer. */
+		public boolean valid()
+		{
+			VarHandle.acquireFence() ;
+			long claimed = (long) longs.getAcquire( map, claimedAt ) ;
+			return (long) longs.getAcquire( map, slot + sequenceAt ) == sequence && claimed - position <= dataSize ;
+		} // end of method valid
+	} // end of class Result
+
+	/** Records the tokens a parse accepts, passing every event on. */
+	public static class Tokens extends Generate
+	{
+		private final Generate next ;
+		/** Four ints for each token, one after another. */
+		int[] values = new int[1024] ;
+		int count ;
+
+		/** @param n The generator to pass events on to. */
+		public Tokens( Generate n )
+		{
+			next = n ;
+		} // end of constructor method
+
+		/** Forgets the tokens, ready for the next program. */
+		public void clear()
+		{
+			count = 0 ;
+		} // end of method clear
+
+		public void insertTerminal( Token token )
+		{
+			if( count * 4 == values.length )
+				values = Arrays.copyOf( values, values.length * 2 ) ;
+			int i = count++ * 4 ;
+			values[i] = token.symbol ;
+			values[i + 1] = token.lineNumber ;
+			values[i + 2] = token.offset ;
+			values[i + 3] = token.text.length() ;
+			next.insertTerminal( token ) ;
+		} // end of method insertTerminal
+
+		public void commenceNonterminal( String name )
+		{
+			next.commenceNonterminal( name ) ;
+		} // end of method commenceNonterminal
+
+		public void finishNonterminal( String name )
+		{
+			next.finishNonterminal( name ) ;
+		} // end of method finishNonterminal
+
+		public void reportSuccess()
+		{
+			next.reportSuccess() ;
+		} // end of method reportSuccess
+
+		public void reportError( Token token, String explanatoryMessage ) throws CompilationException
+		{
+			next.reportError( token, explanatoryMessage ) ;
+		} // end of method reportError
+	} // end of class Tokens
+
+	/** @return what has been published, for the end of a run. */
+	public String statistics()
+	{
+		return path + ": " + sequence + " results published, " + bytesPublished + " bytes, " + slotCount + " slots, " + dataSize + " bytes of data" ;
+	} // end of method statistics
+
+	public void close() throws IOException
+	{
+		if( writing )
+			map.force() ;
+		channel.close() ;
+	} // end of method close
+
+	/** Prints results as they are published, as a client would read them.
+
+	  @param args "FILE [-follow] [-events]": -follow keeps waiting for more, -events prints each result's events.
+	*/
+	public static void main( String[] args ) throws IOException, InterruptedException
+	{
+		if( args.length == 0 )
+		{
+			System.err.println( "usage: java SharedResults FILE [-follow] [-events]" ) ;
+			System.exit( 1 ) ;
+		}
+		boolean follow = Arrays.asList( args ).contains( "-follow" ), events = Arrays.asList( args ).contains( "-events" ) ;
+		SharedResults shared = open( args[0] ) ;
+		// start with what is still held
+		long next = Math.max( 1, shared.published() - shared.slotCount + 1 ) ;
+		byte[] buffer = new byte[0] ;
+		while( true )
+		{
+			long published = shared.published() ;
+			for( ; next <= published; next++ )
+			{
+				Result r = shared.get( next ) ;
+				String line = r == null ? null : r.sequence + "\t" + r.name() + "\t" + r.outcome + "\t" + r.tokensRead + " tokens read, "
+					+ r.tokenCount + " held, " + r.errors + " errors, " + r.eventsLength + " bytes of events, " + r.diagnosticsLength + " of diagnostics" ;
+				int length = 0 ;
+				if( r != null && events )
+				{
+					ByteBuffer b = r.events() ;
+					length = b.remaining() ;
+					if( buffer.length < length )
+						buffer = new byte[length] ;
+					b.get( buffer, 0, length ) ;
+				}
+				if( r == null || !r.valid() )
+				{
+					System.out.println( next + "\toverwritten before it was read" ) ;
+					continue ;
+				}
+				System.out.println( line ) ;
+				if( events )
+					System.out.write( buffer, 0, length ) ;
+			}
+			if( !follow )
+				break ;
+			System.out.flush() ;
+			Thread.sleep( 1 ) ;
+		}
+		shared.close() ;
+	} // end of main method
+} // end of class SharedResults
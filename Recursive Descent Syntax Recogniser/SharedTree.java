@@ -0,0 +1,319 @@
+
+/**
+ *
+ * Parse trees that share identical subtrees.  Generated programs repeat the
+ * same statements and expressions over and over, and a tree that stores each
+ * copy separately grows with the program text; here every subtree is looked
+ * up in a table when it is finished, and if the same subtree (the same
+ * nonterminal over the same children, or the same kind of token with the same
+ * text) has been built before, that node is used instead.  Children are
+ * shared already by the time their parent is finished, so comparing two
+ * nonterminals is comparing their children by identity, and a lookup costs
+ * one probe per child rather than a walk of the subtree.
+ *
+ * A shared node cannot say where it is, so where each token came from is kept
+ * apart from the tree, in token order.  The tokens of a node are numbered on
+ * from the first token of its parent by the sizes of the children before it.
+ *
+ * One table can be used for a whole corpus, so subtrees are shared between
+ * programs as well as within them.
+ *
+ **/
+
+import java.util.* ;
+
+public class SharedTree
+{
+	/** A subtree, shared by every place it appears.  Never change one. */
+	public static final class Node
+	{
+		/** The nonterminal, or null for a terminal. */
+		public final String name ;
+		/** The kind of token, or -1 for a nonterminal. */
+		public final int symbol ;
+		/** The token's text, or null for a nonterminal. */
+		public final String text ;
+		/** The children in order, or null for a terminal. */
+		final Node[] children ;
+		/** The number of tokens under the node. */
+		public final int size ;
+		private final int hash ;
+
+		private Node( String name, int symbol, String text, Node[] children, int size, int hash )
+		{
+			this.name = name ;
+			this.symbol = symbol ;
+			this.text = text ;
+			this.children = children ;
+			this.size = size ;
+			this.hash = hash ;
+		} // end of constructor method
+
+		public int childCount()
+		{
+			return children == null ? 0 : children.length ;
+		} // end of method childCount
+
+		public Node child( int i )
+		{
+			return children[i] ;
+		} // end of method child
+	} // end of class Node
+
+	/** The distinct nodes, by open addressing on their hashes. */
+	private Node[] table = new Node[1024] ;
+	private int distinct ;
+	/* Nodes asked for, and how many of them were new, for the statistics. */
+	private long requested, distinctTerminals, requestedTerminals, sharedBytes, unsharedBytes ;
+
+	/** @return roughly what a node takes on the heap: a header, six fields and its array of children. */
+	private static long bytes( int children )
+	{
+		return 40 + ( children < 0 ? 0 : ( 16 + 4L * children + 7 ) & ~7 ) ;
+	} // end of method bytes
+
+	private static int hashTerminal( int symbol, String text )
+	{
+		return symbol * 31 + Objects.hashCode( text ) ;
+	} // end of method hashTerminal
+
+	private static int mix( int h )
+	{
+		h *= 0x9e3779b9 ;
+		return h ^ ( h >>> 16 ) ;
+	} // end of method mix
+
+	/** @return the node for a token, shared with every other token of its kind and text. */
+	public Node terminal( int symbol, String text )
+	{
+		int hash = hashTerminal( symbol, text ) ;
+		int mask = table.length - 1 ;
+		requested++ ;
+		requestedTerminals++ ;
+		unsharedBytes += bytes( -1 ) ;
+		for( int i = mix( hash ) & mask; ; i = ( i + 1 ) & mask )
+		{
+			Node n = table[i] ;
+			if( n == null )
+				break ;
+			if( n.hash == hash && n.children == null && n.symbol == symbol && Objects.equals( n.text, text ) )
+				return n ;
+		}
+		distinctTerminals++ ;
+		return add( new Node( null, symbol, text, null, 1, hash ) ) ;
+	} // end of method terminal
+
+	/** @return the node for a nonterminal over some shared children, itself shared.
+
+	  @param name The nonterminal.
+	  @param children Holds the children.
+	  @param from Where the children start in the array.
+	  @param count How many children there are.
+	*/
+	public Node nonterminal( String name, Node[] children, int from, int count )
+	{
+		int hash = name == null ? 0 : name.hashCode() ;
+		for( int c = from; c < from + count; c++ )
+			hash = hash * 31 + children[c].hash ;
+		int mask = table.length - 1 ;
+		requested++ ;
+		unsharedBytes += bytes( count ) ;
+		for( int i = mix( hash ) & mask; ; i = ( i + 1 ) & mask )
+		{
+			Node n = table[i] ;
+			if( n == null )
+				break ;
+			if( n.hash == hash && n.children != null && n.children.length == count && Objects.equals( n.name, name )
+				&& same( n.children, children, from ) )
+				return n ;
+		}
+		int size = 0 ;
+		for( int c = from; c < from + count; c++ )
+			size += children[c].size ;
+		return add( new Node( name, -1, null, Arrays.copyOfRange( children, from, from + count ), size, hash ) ) ;
+	} // end of method nonterminal
+
+	private static boolean same( Node[] a, Node[] b, int from )
+	{
+		for( int i = 0; i < a.length; i++ )
+			if( a[i] != b[from + i] )
+				return false ;
+		return true ;
+	} // end of method same
+
+	private Node add( Node n )
+	{
+		if( ( distinct + 1 ) * 2 > table.length )
+			grow() ;
+		int mask = table.length - 1 ;
+		int i = mix( n.hash ) & mask ;
+		while( table[i] != null )
+			i = ( i + 1 ) & mask ;
+		table[i] = n ;
+		distinct++ ;
+		sharedBytes += bytes( n.children == null ? -1 : n.children.length ) ;
+		return n ;
+	} // end of method add
+
+	private void grow()
+	{
+		Node[] old = table ;
+		table = new Node[old.length * 2] ;
+		int mask = table.length - 1 ;
+		for( Node n : old )
+			if( n != null )
+			{
+				int i = mix( n.hash ) & mask ;
+				while( table[i] != null )
+					i = ( i + 1 ) & mask ;
+				table[i] = n ;
+			}
+	} // end of method grow
+
+	/** Forgets every node, so that trees built so far no longer share with new ones. */
+	public void clear()
+	{
+		table = new Node[1024] ;
+		distinct = 0 ;
+		requested = requestedTerminals = distinctTerminals = sharedBytes = unsharedBytes = 0 ;
+	} // end of method clear
+
+	/** @return how much sharing has saved since the table was made or cleared. */
+	public String statistics()
+	{
+		long distinctNonterminals = distinct - distinctTerminals ;
+		long requestedNonterminals = requested - requestedTerminals ;
+		return String.format( "shared tree: %d nodes kept as %d (%.1fx), %d nonterminals as %d (%.1fx), %d tokens as %d (%.1fx), about %d KB instead of %d KB",
+			requested, distinct, ratio( requested, distinct ),
+			requestedNonterminals, distinctNonterminals, ratio( requestedNonterminals, distinctNonterminals ),
+			requestedTerminals, distinctTerminals, ratio( requestedTerminals, distinctTerminals ),
+			// the shared tree needs the line and offset of every token kept beside it
+			( sharedBytes + 8 * requestedTerminals ) >> 10, unsharedBytes >> 10 ) ;
+	} // end of method statistics
+
+	private static double ratio( long all, long kept )
+	{
+		return kept == 0 ? 1 : (double) all / kept ;
+	} // end of method ratio
+
+	/** Builds a shared tree from one parse's events, and keeps where each token was. */
+	public static class Builder extends Generate
+	{
+		private final SharedTree nodes ;
+		/** Where to pass events on to, or null to drop them. */
+		private final Generate next ;
+		/** The finished children of the open nonterminals, one after another. */
+		private Node[] pending = new Node[64] ;
+		private int pendingCount ;
+		/** Where the children of each open nonterminal start in pending. */
+		private int[] starts = new int[16] ;
+		private String[] names = new String[16] ;
+		private int depth ;
+		/** The line and offset of each token, in order. */
+		private int[] lines = new int[256], offsets = new int[256] ;
+		private int tokens ;
+		private Node root ;
+
+		/** @param s The table to share nodes through.
+		  @param n The generator to pass events on to, or null to drop them. */
+		public Builder( SharedTree s, Generate n )
+		{
+			nodes = s ;
+			next = n ;
+		} // end of constructor method
+
+		/** Forgets the tree built so far, ready for the next file.  Its nodes stay in the table. */
+		public void clear()
+		{
+			pendingCount = depth = tokens = 0 ;
+			root = null ;
+		} // end of method clear
+
+		/** @return the whole program after a successful parse, with the end of file token as its last child, or null. */
+		public Node root()
+		{
+			return root ;
+		} // end of method root
+
+		/** @return the number of tokens read. */
+		public int tokens()
+		{
+			return tokens ;
+		} // end of method tokens
+
+		/** @return the line of a token, given its number in the order the tokens were read, from 0. */
+		public int line( int token )
+		{
+			return lines[token] ;
+		} // end of method line
+
+		/** @return the character offset of a token in its file. */
+		public int offset( int token )
+		{
+			return offsets[token] ;
+		} // end of method offset
+
+		private void push( Node n )
+		{
+			if( pendingCount == pending.length )
+				pending = Arrays.copyOf( pending, pendingCount * 2 ) ;
+			pending[pendingCount++] = n ;
+		} // end of method push
+
+		public void commenceNonterminal( String name )
+		{
+			if( depth == starts.length )
+			{
+				starts = Arrays.copyOf( starts, depth * 2 ) ;
+				names = Arrays.copyOf( names, depth * 2 ) ;
+			}
+			starts[depth] = pendingCount ;
+			names[depth++] = name ;
+			if( next != null )
+				next.commenceNonterminal( name ) ;
+		} // end of method commenceNonterminal
+
+		public void finishNonterminal( String name )
+		{
+			int start = starts[--depth] ;
+			Node n = nodes.nonterminal( names[depth], pending, start, pendingCount - start ) ;
+			Arrays.fill( pending, start, pendingCount, null ) ;
+			pendingCount = start ;
+			push( n ) ;
+			if( next != null )
+				next.finishNonterminal( name ) ;
+		} // end of method finishNonterminal
+
+		public void insertTerminal( Token token )
+		{
+			if( tokens == lines.length )
+			{
+				lines = Arrays.copyOf( lines, tokens * 2 ) ;
+				offsets = Arrays.copyOf( offsets, tokens * 2 ) ;
+			}
+			lines[tokens] = token.lineNumber ;
+			offsets[tokens++] = token.offset ;
+			push( nodes.terminal( token.symbol, token.text ) ) ;
+			if( next != null )
+				next.insertTerminal( token ) ;
+		} // end of method insertTerminal
+
+		public void reportSuccess()
+		{
+			// what is left is the statement part and the end of file token, outside any nonterminal
+			root = nodes.nonterminal( null, pending, 0, pendingCount ) ;
+			Arrays.fill( pending, 0, pendingCount, null ) ;
+			pendingCount = 0 ;
+			if( next != null )
+				next.reportSuccess() ;
+		} // end of method reportSuccess
+
+		public void reportError( Token token, String explanatoryMessage ) throws CompilationException
+		{
+			if( next != null )
+				next.reportError( token, explanatoryMessage ) ;
+			else
+				super.reportError( token, explanatoryMessage ) ;
+		} // end of method reportError
+	} // end of class Builder
+} // end of class SharedTree
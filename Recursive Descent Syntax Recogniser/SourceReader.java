@@ -0,0 +1,166 @@
+
+/**
+ *
+ * Reads source text a line at a time for the lexical analyser, through
+ * buffers and a character decoder that are kept and reused for each new
+ * input, so that a lexical analyser pointed at file after file does not
+ * build a new reader and new buffers for every one.
+ *
+ * Lines end at "\n", "\r" or "\r\n", as with BufferedReader.readLine, and
+ * files are decoded with the platform's default character set, as with
+ * FileReader.  The input is closed as soon as it has been read to the end.
+ *
+ **/
+
+import java.io.* ;
+import java.nio.* ;
+import java.nio.channels.* ;
+import java.nio.charset.* ;
+
+public class SourceReader
+{
+	private static final int bufferSize = 8192 ;
+
+	private final ByteBuffer bytes = ByteBuffer.allocate( bufferSize ) ;
+	/** Decoded characters, kept ready for reading between calls. */
+	private final CharBuffer chars = CharBuffer.allocate( bufferSize ) ;
+	private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+		.onMalformedInput( CodingErrorAction.REPLACE )
+		.onUnmappableCharacter( CodingErrorAction.REPLACE ) ;
+	/** Collects a line that runs across a refill of the buffer. */
+	private final StringBuilder line = new StringBuilder( 128 ) ;
+
+	/** Where the bytes of a file come from, or null. */
+	private ReadableByteChannel channel ;
+	/** Where the characters of other text come from, or null. */
+	private Reader reader ;
+	/** Has the channel run out, and has everything from it been decoded? */
+	private boolean endOfInput, drained ;
+	/** Did the last line end with '\r', so that a '\n' straight after it belongs to it? */
+	private boolean skipLineFeed ;
+
+	/** Starts reading a file, closing whatever was being read before.
+
+	  @param fileName The file to read.
+	  @throws FileNotFoundException if the file cannot be opened.
+	*/
+	public void reset( String fileName ) throws IOException
+	{
+		close() ;
+		channel = new FileInputStream( fileName ).getChannel() ;
+		bytes.clear() ;
+		decoder.reset() ;
+		restart() ;
+	} // end of method reset
+
+	/** Starts reading some text, closing whatever was being read before.
+
+	  @param source The text to read.
+	*/
+	public void reset( Reader source ) throws IOException
+	{
+		close() ;
+		reader = source ;
+		restart() ;
+	} // end of method reset
+
+	private void restart()
+	{
+		chars.clear() ;
+		chars.limit( 0 ) ;
+		endOfInput = false ;
+		drained = false ;
+		skipLineFeed = false ;
+	} // end of method restart
+
+	/** Refills the character buffer once it has all been read.
+
+	  @return false at the end of the input.
+	*/
+	private boolean fill() throws IOException
+	{
+		chars.clear() ;
+		if( reader != null )
+		{
+			int n ;
+			do
+				n = reader.read( chars.array(), 0, chars.capacity() ) ;
+			while( n == 0 ) ;
+			chars.limit( Math.max( n, 0 ) ) ;
+			return n > 0 ;
+		}
+		while( channel != null && chars.position() == 0 && !drained )
+		{
+			if( !endOfInput && channel.read( bytes ) < 0 )
+				endOfInput = true ;
+			bytes.flip() ;
+			CoderResult result = decoder.decode( bytes, chars, endOfInput ) ;
+			bytes.compact() ;
+			if( endOfInput && result.isUnderflow() )
+			{
+				decoder.flush( chars ) ;
+				drained = true ;
+			}
+		}
+		chars.flip() ;
+		return chars.hasRemaining() ;
+	} // end of method fill
+
+	/** Reads the next line.
+
+	  @return the line without its line end, or null at the end of the input.
+	*/
+	public String readLine() throws IOException
+	{
+		line.setLength( 0 ) ;
+		boolean any = false ;
+		while( true )
+		{
+			if( !chars.hasRemaining() && !fill() )
+			{
+				close() ;
+				return any ? line.toString() : null ;
+			}
+			char[] a = chars.array() ;
+			int p = chars.position(), end = chars.limit() ;
+			if( skipLineFeed )
+			{
+				skipLineFeed = false ;
+				if( a[p] == '\n' )
+				{
+					chars.position( p + 1 ) ;
+					continue ;
+				}
+			}
+			int i = p ;
+			while( i < end && a[i] != '\n' && a[i] != '\r' )
+				i++ ;
+			line.append( a, p, i - p ) ;
+			any |= i > p ;
+			if( i < end )
+			{
+				skipLineFeed = a[i] == '\r' ;
+				chars.position( i + 1 ) ;
+				return line.toString() ;
+			}
+			chars.position( end ) ;
+		}
+	} // end of method readLine
+
+	/** Closes the input, if it is still open. */
+	public void close() throws IOException
+	{
+		try
+		{
+			if( channel != null )
+				channel.close() ;
+			if( reader != null )
+				reader.close() ;
+		}
+		finally
+		{
+			channel = null ;
+			reader = null ;
+		}
+	} // end of method close
+} // end of class SourceReader
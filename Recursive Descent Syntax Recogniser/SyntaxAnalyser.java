@@ -1,514 +1,1035 @@
-import java.io.IOException;
-
-/**
- * SyntaxAnalyser class which extends AbstractSyntaxAnalyser.
- * This class implements the parsing logic for the given grammar rules.
- * 
- * @author Laksan Thavarajah
- */
-public class SyntaxAnalyser extends AbstractSyntaxAnalyser{
-    String fileName;
-    
-    /**
-     * Constructs a new SyntaxAnalyser object with the specified file name.
-     * Initializes the lexical analyzer with the provided file.
-     * @param fileName the name of the source code file to be analyzed
-     */
-    public SyntaxAnalyser(String fileName)
-    {
-        this.fileName = fileName;
-        try 
-        {
-            lex = new LexicalAnalyser(fileName);
-        } 
-        catch (IOException e) 
-        {
-            System.err.println("Cannot load Lexical Analyser due to Error: " + e.getMessage());
-        }
-    }
-
-     /***
-     * returns an error string for all tokens. 
-     * @param expected is the expected value
-     * @param next is the next token
-     * @return the error message string
-     */
-    public String errorString(String expected, Token next)
-    {
-        return this.fileName + ": - Expected these tokens: " + expected + " , Found: (' " + next.text + " ')";
-    }
- 
-    /**
-     * returns an error string for all non terminals.
-     * @param nonTerminal is the name of the non terminal
-     * @param token used to receive the line number of the error
-     * @return the error message string
-     */
-    public String nonTerminalError(String nonTerminal, Token token)
-    {
-        return this.fileName + ": - Parsed error : " + nonTerminal;
-    }
-    
-    /**
-     * Accepts a terminal symbol if it matches the next token in the input stream.
-     * 
-     * @param symbol the expected terminal symbol
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void acceptTerminal(int symbol) throws IOException, CompilationException 
-    {
-        if(nextToken.symbol == symbol)
-        {
-            myGenerate.insertTerminal(nextToken);
-            nextToken = lex.getNextToken();
-        }
-        else
-        {
-            //if token causes error a string statement is printed
-            myGenerate.reportError(nextToken, errorString(" ' " + Token.getName(symbol) + " ' ", nextToken));
-        }
-    }
-
-    /**
-     * Parses the statement part, following grammar rules <statement part> ::= begin <statement list> end.
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-	public void _statementPart_() throws IOException, CompilationException 
-    {
-        myGenerate.commenceNonterminal("StatementPart"); 
-        try 
-        {
-            acceptTerminal(Token.beginSymbol); //check if begin symbol exists
-            statementList(); // Parse through statement list
-            acceptTerminal(Token.endSymbol); // Accept if end
-        } 
-        catch (CompilationException e) 
-        {
-            throw new CompilationException(nonTerminalError(" statement part ", nextToken), e);
-        } 
-        myGenerate.finishNonterminal("StatementPart");
-    }
-    /**
-     * Parses a statement list, following grammar rules <statement list> ::= <statement> | <statement list> ; <statement.
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void statementList() throws IOException, CompilationException
-    {
-        myGenerate.commenceNonterminal("StatementList"); // Kept name together to avoid confusion in showing start and end
-        try 
-        {
-            statement(); // Parse statement
-            while(nextToken.symbol == Token.semicolonSymbol)
-            {
-                acceptTerminal(Token.semicolonSymbol);
-                statementList();
-            }
-        } 
-        catch (CompilationException e)
-        {
-            throw new CompilationException(nonTerminalError(" statement List ", nextToken), e);
-        }
-        myGenerate.finishNonterminal("StatementList");
-    }
-
-    /**
-     * Parses a single statement, following grammar rules <statement> ::= <assignment statement> | <if statement> | <while statement> | <procedure statement> | <until statement> | <for statement>.
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void statement() throws IOException, CompilationException
-    {
-        myGenerate.commenceNonterminal("Statement"); 
-        // use try and catch for matching the statement to token and handle error checking. 
-        try
-        {
-            switch(nextToken.symbol)
-            {
-                case Token.identifier:
-                        assignmentStatement();
-                        break;
-                    case Token.whileSymbol:
-                        whileStatement();
-                        break;
-                    case Token.ifSymbol:
-                        ifStatement();
-                        break;
-                    case Token.callSymbol:
-                        procedureStatement();
-                        break;
-                    case Token.untilSymbol:
-                        untilStatement();
-                        break;
-                    case Token.forSymbol:
-                        forStatement();
-                        break;
-                default:
-                    // Defaults to an error if none of the symbols are matched
-                    myGenerate.reportError(nextToken, errorString(" ' IDENTIFIER ' , ' if ' , ' while ' , ' call ' , ' until ',  or ' for ' ", nextToken));
-            }
-        } 
-        catch (CompilationException e) 
-        {
-            throw new CompilationException(nonTerminalError(" statement ", nextToken), e);
-        }
-        myGenerate.finishNonterminal("Statement");
-    }
-
-    /**
-     * Parses an assignment statement, following grammar rules  <assignment statement> ::= identifier := <expression> | identifier := stringConstant.
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void assignmentStatement() throws IOException, CompilationException
-    {
-        myGenerate.commenceNonterminal("AssignmentStatement"); // Kept name together to avoid confusion in showing start and end
-        try
-        {
-            acceptTerminal(Token.identifier); // Accepts the identifier
-            acceptTerminal(Token.becomesSymbol);// Accepts the assignment operator
-            if (nextToken.symbol == Token.stringConstant)// Check if string Constant exists 
-            {
-                acceptTerminal(Token.stringConstant);
-            }
-            else
-            {
-                expression(); // parses the expression
-            } 
-        } 
-        catch (CompilationException e) 
-        {
-            throw new CompilationException(nonTerminalError(" Assignment Statement ", nextToken), e);
-        }
-        myGenerate.finishNonterminal("AssignmentStatement");
-    }
-
-    /**
-     * Parses an if statement following grammar <if statement> ::= if <condition> then <statement list> end if | if <condition> then <statement list> else <statement list> end if.
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void ifStatement() throws IOException, CompilationException
-    {
-        myGenerate.commenceNonterminal("IfStatement"); 
-        try
-        { 
-            acceptTerminal(Token.ifSymbol); //Accepts if symbol
-            condition(); // parse the conditions of if statement
-            acceptTerminal(Token.thenSymbol); //accept the then symbol
-            statementList(); // Parses statement list
-            if (nextToken.symbol == Token.elseSymbol)  //checks for else symbol exists then accept it
-            {
-                acceptTerminal(Token.elseSymbol); //Acccept else
-                statementList(); // parse statement list
-            }
-
-            acceptTerminal(Token.endSymbol); //Accept end symbol
-            acceptTerminal(Token.ifSymbol); // Check for if to follow end to close statement
-        }   
-        catch (CompilationException e)
-        {
-            throw new CompilationException(nonTerminalError(" If Statement ", nextToken), e);
-        }
-        myGenerate.finishNonterminal("IfStatement");
-    }
-    
-    /**
-     * Parses a while statement, following grammar rules <while statement> ::= while <condition> loop <statement list> end loop.
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void whileStatement() throws IOException, CompilationException
-    {
-        myGenerate.commenceNonterminal("WhileStatement"); 
-        try 
-        {
-            acceptTerminal(Token.whileSymbol); // Accepts while symbol
-            condition();                       // Parses the condition for while loop
-            acceptTerminal(Token.loopSymbol);  // Accept loop symbol
-            statementList();                   // Parse statement list
-            acceptTerminal(Token.endSymbol);   // Accepts end
-            acceptTerminal(Token.loopSymbol);  // Checks for loop behind 'end' to close loop
-        }
-        catch (CompilationException e)
-        {
-            throw new CompilationException(nonTerminalError(" While statement ", nextToken), e);
-        }   
-        myGenerate.finishNonterminal("WhileStatement");
-    }
-
-    /**
-     * Parses a procedure statement following grammar rules <procedure statement> ::= call identifier ( <argument list> ).
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void procedureStatement() throws IOException, CompilationException
-    {
-        myGenerate.commenceNonterminal("ProcedureStatement"); 
-        try
-        {
-            acceptTerminal(Token.callSymbol);   //Accepts call symbol
-            acceptTerminal(Token.identifier);   // Accepts identifier
-            acceptTerminal(Token.leftParenthesis); // Accepts left paranthesis
-            argumentList();                     // Parse argument list
-            acceptTerminal(Token.rightParenthesis);// Accepts right paranthesis
-        } 
-        catch (CompilationException e) 
-        {
-            throw new CompilationException(nonTerminalError(" Procedure list ", nextToken), e);
-        }   
-        myGenerate.finishNonterminal("ProcedureStatement");
-    }
-
-    /**
-     * Parses an until statement, following grammar rules <until statement> ::= do <statement list> until <condition>.
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void untilStatement() throws IOException, CompilationException
-    {
-        myGenerate.commenceNonterminal("UntilStatement"); // Kept name together to avoid confusion in showing start and end
-        try
-        {
-            acceptTerminal(Token.doSymbol); // Accepts do symbol
-            statementList();                // Parse through statement list
-            acceptTerminal(Token.untilSymbol); // Accepts until symbol
-            condition();                     // Parse condition for the loop
-        }
-        catch (CompilationException e) 
-        {
-            throw new CompilationException(nonTerminalError(" Until Statement ", nextToken), e);
-        } 
-        myGenerate.finishNonterminal("UntilStatement");
-    }
-    
-    /**
-     * Parses a for statement, following grammar rules <for statement> ::= for ( <assignment statement> ; <condition> ; <assignment statement> ) do <statement list> end loop.
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void forStatement() throws IOException, CompilationException
-    {
-        myGenerate.commenceNonterminal("ForStatement");
-        try{
-            acceptTerminal(Token.forSymbol); // Accept for symbol
-            acceptTerminal(Token.leftParenthesis); // Accept left paranthesis
-            assignmentStatement();              // Parse assignment statement
-            acceptTerminal(Token.semicolonSymbol); // Accepts the expected semicolon
-            condition();                          // parse condition
-            acceptTerminal(Token.semicolonSymbol); // Accept semi colon
-            assignmentStatement();                 // Parse assignment statement
-            acceptTerminal(Token.rightParenthesis); // accepts the right paranthesis
-            acceptTerminal(Token.doSymbol);        // accept do symbol
-            statementList();                      // parse statement list
-            acceptTerminal(Token.endSymbol); // Accepts the end symbol
-            acceptTerminal(Token.loopSymbol); // Check for loop symbol to close loop
-        }
-        catch (CompilationException e) 
-        {
-            throw new CompilationException(nonTerminalError(" For Statement ", nextToken), e);
-        }   
-
-        myGenerate.finishNonterminal("ForStatement");
-    }
-
-    /**
-     * Parses an argument list, following grammar rules <argument list> ::= identifier |<argument list> , identifier.
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void argumentList() throws IOException, CompilationException
-    {
-        myGenerate.commenceNonterminal("ArgumentList"); 
-        try{
-            acceptTerminal(Token.identifier);    // Accept first argument
-            while (nextToken.symbol == Token.commaSymbol)
-            {
-                acceptTerminal(Token.commaSymbol); // Accepts comma
-                argumentList();                    // parse argument List recursively
-            }
-        }
-        catch (CompilationException e) 
-        {
-            throw new CompilationException(nonTerminalError(" Argument List ", nextToken), e);
-        }   
-        myGenerate.finishNonterminal("ArgumentList");
-    }
-
-    /**
-     * Parses a condition, following grammar rules <condition> ::= identifier <conditional operator> identifier | identifier <conditional operator> numberConstant | identifier <conditional operator> stringConstant.
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void condition() throws IOException, CompilationException
-    {
-        myGenerate.commenceNonterminal("Condition"); 
-        try 
-        {
-            acceptTerminal(Token.identifier); // Accepts identifier
-            conditionalOperator();  
-            switch(nextToken.symbol)         // switch statement to see which case is the next token
-            {
-                case Token.numberConstant:
-                    acceptTerminal((Token.numberConstant));
-                    break;
-                case Token.stringConstant:
-                    acceptTerminal(Token.stringConstant);
-                    break;
-                case Token.identifier:
-                    acceptTerminal(Token.identifier);
-                    break;
-                default:
-                   // Prints error if none of the symbols match
-                    myGenerate.reportError(nextToken, errorString(" < identifer > , < number constant > or < string constant > ", nextToken));
-            }
-        } 
-        catch (CompilationException e) 
-        {
-            throw new CompilationException(nonTerminalError(" Condition ", nextToken), e);
-        }
-        myGenerate.finishNonterminal("Condition");
-
-    }
-
-    /**
-     * Parses a conditional operator, following grammar rules <conditional operator> ::= > | >= | = | /= | < | <=.
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void conditionalOperator() throws IOException, CompilationException
-    {
-        myGenerate.commenceNonterminal("ConditionalOperator"); 
-        try
-        {
-            switch(nextToken.symbol){// switch statement to see which case will be the next symbol it will then accept that token symbol
-                case Token.equalSymbol:
-                    acceptTerminal(Token.equalSymbol);
-                    break;
-                case Token.notEqualSymbol:
-                    acceptTerminal(Token.notEqualSymbol);
-                    break;
-                case Token.greaterThanSymbol:
-                    acceptTerminal(Token.greaterThanSymbol);
-                    break;
-                case Token.lessThanSymbol:
-                    acceptTerminal(Token.lessThanSymbol);
-                    break;
-                case Token.greaterEqualSymbol:
-                    acceptTerminal(Token.greaterEqualSymbol);
-                    break;
-                case Token.lessEqualSymbol:
-                    acceptTerminal(Token.lessEqualSymbol);
-                    break;
-                default:
-                    myGenerate.reportError(nextToken, errorString("  ' > '  , ' >= ' , ' = ' , ' /= ' , ' < ' or ' <= ' ", nextToken));
-            }
-        }
-        catch (CompilationException e) 
-        {
-            throw new CompilationException(nonTerminalError(" Conditional Operator ", nextToken), e);
-        } 
-        myGenerate.finishNonterminal("ConditionalOperator");
-    }
-
-    /**
-     * Parses an expression, following grammar rules <expression> ::= <term> | <expression> + <term> | <expression> - <term>.
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void expression() throws IOException, CompilationException{
-        myGenerate.commenceNonterminal("Expression"); // Kept name together to avoid confusion in showing start and end
-        try 
-        {
-            term();
-            // Checks if the + or - symbol exists and if it does accept the correct symbol and then call expression function
-            while (nextToken.symbol == Token.plusSymbol || nextToken.symbol == Token.minusSymbol) 
-            {
-                acceptTerminal(nextToken.symbol); // Accept the '+' or '-' symbol
-                expression(); // Handle the next Term recursively
-            }
-        }
-        catch (CompilationException e) 
-        {
-            throw new CompilationException(nonTerminalError(" Expression ", nextToken), e);
-        } 
-        myGenerate.finishNonterminal("Expression");
-    }
-
-    /**
-     * Parses a term, following grammar rules <term> ::= <factor> | <term> * <factor> | <term> / <factor> .
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void term() throws IOException, CompilationException
-    {
-        myGenerate.commenceNonterminal("Term"); // Kept name together to avoid confusion in showing start and end
-        try 
-        {
-            factor();
-            // Checks if the times symbol or divide symbol exists and if it does accept the correct symbol and then call term statement
-            while(nextToken.symbol == Token.timesSymbol || nextToken.symbol == Token.divideSymbol)
-            {
-                acceptTerminal(nextToken.symbol); // Accept the number or identifier
-                term(); // Handle the next Factor recursively
-            }
-        }
-        catch (CompilationException e) 
-        {
-            throw new CompilationException(nonTerminalError(" Term ", nextToken), e);
-        }
-        myGenerate.finishNonterminal("Term");
-    }
-
-    /**
-     * Parses a factor, following grammar rules <factor> ::= identifier | numberConstant | ( <expression> ).
-     * 
-     * @throws IOException if an I/O error occurs while parsing
-     * @throws CompilationException if a compilation error occurs
-     */
-    public void factor() throws IOException, CompilationException
-    {
-        myGenerate.commenceNonterminal("Factor");
-        try
-        {
-            switch(nextToken.symbol) // switch cases to check the next token and default case for report error. 
-            {
-                case Token.identifier:
-                    acceptTerminal(Token.identifier); // Handle identifier
-                    break;
-                case Token.numberConstant:
-                    acceptTerminal(Token.numberConstant); // Handler number Constant
-                    break;
-                case Token.leftParenthesis:
-                    acceptTerminal(Token.leftParenthesis); // handle Left Paranthesis
-                    expression();                          // parse expression
-                    acceptTerminal(Token.rightParenthesis); // close with right paranthesis
-                    break;
-                default:
-                    // If none of the symbols match then an error is printed
-                    myGenerate.reportError(nextToken, errorString(" ' identifier ' , ' number constant ' , ' ( ' , ' ) ' ", nextToken));
-            }
-        }
-        catch (CompilationException e) 
-        {
-            throw new CompilationException(nonTerminalError(" Factor ", nextToken), e);
-        }
-        myGenerate.finishNonterminal("Factor");
-    }
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * SyntaxAnalyser class which extends AbstractSyntaxAnalyser.
+ * This class implements the parsing logic for the given grammar rules.
+ * 
+ * @author Laksan Thavarajah
+ */
+public class SyntaxAnalyser extends AbstractSyntaxAnalyser{
+    String fileName;
+    
+    /** How far an if, while, for or do statement has got: still in its header, in its body, or past its 'end' or 'until'. */
+    private static final int inHeader = 0, inBody = 1, closing = 2;
+
+    /** The first token of each if, while, for and do statement being parsed, innermost last, for error recovery. */
+    private Token[] openStatements = new Token[16];
+    /** How far each of those statements has got; the entry just above the top is left for the statement that ended last. */
+    private int[] reached = new int[16];
+    private int open;
+    /** The token after nextToken, once error recovery has had to look at it. */
+    private Token peeked;
+
+    /**
+     * Constructs a new SyntaxAnalyser object with the specified file name.
+     * Initializes the lexical analyzer with the provided file.
+     * @param fileName the name of the source code file to be analyzed
+     */
+    public SyntaxAnalyser(String fileName)
+    {
+        this.fileName = fileName;
+        try 
+        {
+            lex = new LexicalAnalyser(fileName);
+        } 
+        catch (IOException e) 
+        {
+            System.err.println("Cannot load Lexical Analyser due to Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Points this analyser at another file, with options and state as they are in a new analyser,
+     * keeping the lexical analyser's tables and buffers and the code generator for reuse.
+     * @param fileName the name of the next source code file to be analysed
+     */
+    public void reset(String fileName)
+    {
+        reset();
+        peeked = null;
+        this.fileName = fileName;
+        try
+        {
+            if (lex == null)
+            {
+                lex = new LexicalAnalyser(fileName);
+            }
+            else
+            {
+                lex.reset(fileName);
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("Cannot load Lexical Analyser due to Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Points this analyser at text that is not in a file of its own, such as an entry in an archive,
+     * as reset(String) does for a file.
+     * @param fileName the name of the source used in messages
+     * @param source the text to analyse
+     */
+    public void reset(String fileName, Reader source)
+    {
+        reset();
+        peeked = null;
+        this.fileName = fileName;
+        try
+        {
+            if (lex == null)
+            {
+                lex = new LexicalAnalyser(source, 0, 0);
+            }
+            else
+            {
+                lex.reset(source, 0, 0);
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("Cannot load Lexical Analyser due to Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Constructs a new SyntaxAnalyser object which reads its tokens from the given lexical analyser
+     * instead of opening a file, for callers that re-parse part of a program they already hold.
+     * @param fileName the name of the source used in error messages
+     * @param lex the lexical analyser to read tokens from
+     */
+    public SyntaxAnalyser(String fileName, LexicalAnalyser lex)
+    {
+        this.fileName = fileName;
+        this.lex = lex;
+    }
+
+    /**
+     * Names the source in semantic check messages.
+     * @return the name of the file being analysed
+     */
+    @Override
+    String sourceName()
+    {
+        return this.fileName;
+    }
+
+     /***
+     * returns an error string for all tokens, pointing at the column the token starts in. 
+     * @param expected is the expected value
+     * @param next is the next token
+     * @return the error message string
+     */
+    public String errorString(String expected, Token next)
+    {
+        String column = " at column " + lex.getLineIndex().column(next.offset);
+        // limits broken in the lexer come through as ERROR tokens with an explanation
+        if (next.symbol == Token.errorSymbol && lex.getErrorMessage() != null)
+        {
+            return this.fileName + ": - " + lex.getErrorMessage() + column;
+        }
+        return this.fileName + ": - Expected these tokens: " + expected + " , Found: (' " + next.text + " ')" + column;
+    }
+ 
+    /**
+     * returns an error string for all non terminals.
+     * @param nonTerminal is the name of the non terminal
+     * @param token used to receive the line number of the error
+     * @return the error message string
+     */
+    public String nonTerminalError(String nonTerminal, Token token)
+    {
+        return this.fileName + ": - Parsed error : " + nonTerminal;
+    }
+    
+    /**
+     * Goes one level deeper into nested statements or brackets, reporting an error if that breaks the nesting limit.
+     * Every successful call must be matched by decrementing depth on the way out.
+     * 
+     * @throws CompilationException if the nesting limit is exceeded
+     */
+    private void enterNesting() throws CompilationException
+    {
+        depth++;
+        if (maxDepth != 0 && depth > maxDepth)
+        {
+            depth--;
+            myGenerate.reportError(nextToken, this.fileName + ": - Nesting deeper than " + maxDepth + " levels");
+        }
+    }
+
+    /**
+     * Accepts a terminal symbol if it matches the next token in the input stream.
+     * 
+     * @param symbol the expected terminal symbol
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void acceptTerminal(int symbol) throws IOException, CompilationException 
+    {
+        if(nextToken.symbol == symbol)
+        {
+            myGenerate.insertTerminal(nextToken);
+            advance();
+        }
+        else
+        {
+            //if token causes error a string statement is printed
+            myGenerate.reportError(nextToken, errorString(" ' " + Token.getName(symbol) + " ' ", nextToken));
+        }
+    }
+
+    /**
+     * Moves on to the next token, taking the one error recovery looked ahead at if there is one.
+     * @throws IOException if an I/O error occurs while reading tokens
+     */
+    private void advance() throws IOException
+    {
+        if (peeked != null)
+        {
+            nextToken = peeked;
+            peeked = null;
+        }
+        else
+        {
+            nextToken = lex.getNextToken();
+        }
+    }
+
+    /**
+     * Looks at the token after nextToken without moving on.
+     * @return the token after nextToken
+     * @throws IOException if an I/O error occurs while reading tokens
+     */
+    private Token peek() throws IOException
+    {
+        if (peeked == null)
+        {
+            peeked = lex.getNextToken();
+        }
+        return peeked;
+    }
+
+    /**
+     * Parses the statement part, following grammar rules <statement part> ::= begin <statement list> end.
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+	public void _statementPart_() throws IOException, CompilationException 
+    {
+        myGenerate.commenceNonterminal("StatementPart"); 
+        try 
+        {
+            acceptTerminal(Token.beginSymbol); //check if begin symbol exists
+            statementList(); // Parse through statement list
+            acceptTerminal(Token.endSymbol); // Accept if end
+        } 
+        catch (CompilationException e) 
+        {
+            throw new CompilationException(nonTerminalError(" statement part ", nextToken), e);
+        } 
+        myGenerate.finishNonterminal("StatementPart");
+    }
+    /**
+     * Parses a statement list, following grammar rules <statement list> ::= <statement> | <statement list> ; <statement.
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void statementList() throws IOException, CompilationException
+    {
+        myGenerate.commenceNonterminal("StatementList"); // Kept name together to avoid confusion in showing start and end
+        try 
+        {
+            recoverableStatement(); // Parse statement, resynchronising on error if recovery is on
+            while(nextToken.symbol == Token.semicolonSymbol)
+            {
+                acceptTerminal(Token.semicolonSymbol);
+                statementList();
+            }
+        } 
+        catch (CompilationException e)
+        {
+            throw new CompilationException(nonTerminalError(" statement List ", nextToken), e);
+        }
+        myGenerate.finishNonterminal("StatementList");
+    }
+
+    /**
+     * Parses a statement. If it fails and error recovery is enabled the error is recorded and parsing
+     * carries on from the next token that can start or follow a statement. An if, while, for or do
+     * statement that failed before its 'end' or 'until' is still open, so what comes next is taken
+     * as the rest of its body, up to the 'end if', 'end loop' or 'until' that closes it.
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs and cannot be recovered from
+     */
+    private void recoverableStatement() throws IOException, CompilationException
+    {
+        Token start = nextToken;
+        try
+        {
+            statement();
+        }
+        catch (CompilationException e)
+        {
+            if (!recordError(e))
+            {
+                throw e;
+            }
+            // statement() has taken the failed statement off the stack, leaving it just above the top
+            if (open < openStatements.length && openStatements[open] == start && reached[open] != closing
+                    && (reached[open] == inBody || skipHeader(start.symbol)))
+            {
+                recoverBody(start);
+                return;
+            }
+            synchronise();
+            // a missing ';' should not lose the statement that follows it
+            if (startsStatement(nextToken.symbol))
+            {
+                recoverableStatement();
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of a failed statement's header, up to and including the 'then', 'loop' or 'do'
+     * that ends it, stopping early at a token that cannot be part of the header. A statement whose
+     * header does not end like that has no body to recover, so it is left to synchronise.
+     * 
+     * @param opener the symbol the failed statement started with
+     * @return true if the header's last word was found and skipped
+     * @throws IOException if an I/O error occurs while reading tokens
+     */
+    private boolean skipHeader(int opener) throws IOException
+    {
+        int last = opener == Token.ifSymbol ? Token.thenSymbol : opener == Token.whileSymbol ? Token.loopSymbol : Token.doSymbol;
+        while (nextToken.symbol != last)
+        {
+            int symbol = nextToken.symbol;
+            // a for statement's header has ';' between its parts
+            if (symbol == Token.eofSymbol || symbol == Token.endSymbol || symbol == Token.elseSymbol || symbol == Token.untilSymbol
+                    || (startsStatement(symbol) && symbol != Token.identifier)
+                    || (symbol == Token.semicolonSymbol && opener != Token.forSymbol))
+            {
+                return false;
+            }
+            advance();
+        }
+        advance();
+        return true;
+    }
+
+    /**
+     * Parses the rest of the body of an if, while, for or do statement that failed, and the 'end if',
+     * 'end loop' or 'until' and condition that close it. Anything else that turns up is reported where
+     * the closing tokens were expected, as it would be had the statement not failed. Recovery stops,
+     * leaving the statement open, at a token that closes a statement around it or ends the program.
+     * 
+     * @param start the token the failed statement started on
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs and cannot be recovered from
+     */
+    private void recoverBody(Token start) throws IOException, CompilationException
+    {
+        int closer = closingSymbol(start.symbol);
+        openStatement(start, inBody);
+        try
+        {
+            synchronise();
+            while (true)
+            {
+                int symbol = nextToken.symbol;
+                if (startsStatement(symbol))
+                {
+                    statementList();
+                }
+                else if (symbol == Token.semicolonSymbol)
+                {
+                    advance();
+                }
+                else if (symbol == Token.elseSymbol && closer == Token.ifSymbol)
+                {
+                    acceptTerminal(Token.elseSymbol);
+                }
+                else if (symbol == Token.eofSymbol || (closesOuter(nextToken) && !closes(closer)))
+                {
+                    return;
+                }
+                else
+                {
+                    try
+                    {
+                        acceptTerminal(closer == Token.untilSymbol ? Token.untilSymbol : Token.endSymbol);
+                    }
+                    catch (CompilationException e)
+                    {
+                        if (!recordError(e))
+                        {
+                            throw e;
+                        }
+                        synchronise();
+                        continue;
+                    }
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            open--;
+        }
+        try
+        {
+            if (closer == Token.untilSymbol)
+            {
+                condition();
+            }
+            else
+            {
+                acceptTerminal(closer);
+            }
+        }
+        catch (CompilationException e)
+        {
+            if (!recordError(e))
+            {
+                throw e;
+            }
+            synchronise();
+        }
+    }
+
+    /**
+     * Skips tokens until one that the statement lists being parsed can carry on from: a token that
+     * starts a statement, ';', the end of the file, or an 'else', 'until', 'end if', 'end loop' or
+     * final 'end' that closes a statement still open or the program. These are FIRST(statement) and
+     * the part of FOLLOW(statement) that the statements around this one can take. An 'end if' or
+     * 'end loop' that closes nothing is skipped whole.
+     * 
+     * @throws IOException if an I/O error occurs while reading tokens
+     */
+    private void synchronise() throws IOException
+    {
+        while (true)
+        {
+            int symbol = nextToken.symbol;
+            // an identifier only starts a statement if ':=' follows it, otherwise it is the rest of the broken one
+            if (symbol == Token.eofSymbol || symbol == Token.semicolonSymbol || closesOuter(nextToken)
+                    || (startsStatement(symbol) && (symbol != Token.identifier || peek().symbol == Token.becomesSymbol)))
+            {
+                return;
+            }
+            if (symbol == Token.endSymbol)
+            {
+                advance();
+            }
+            advance();
+        }
+    }
+
+    /**
+     * Checks whether nextToken closes the failed statement whose body is being recovered: an 'until' for a
+     * do statement, otherwise an 'end' followed by its 'if' or 'loop', or by anything but another statement's
+     * closing word or the end of the file, in which case the 'if' or 'loop' is reported missing.
+     * @param closer the symbol that closes the failed statement
+     * @return true if nextToken starts the failed statement's closing
+     * @throws IOException if an I/O error occurs while looking at the token after an 'end'
+     */
+    private boolean closes(int closer) throws IOException
+    {
+        if (closer == Token.untilSymbol)
+        {
+            return nextToken.symbol == Token.untilSymbol;
+        }
+        if (nextToken.symbol != Token.endSymbol)
+        {
+            return false;
+        }
+        int after = peek().symbol;
+        return after == closer || (after != Token.ifSymbol && after != Token.loopSymbol && after != Token.eofSymbol);
+    }
+
+    /**
+     * Checks whether a token closes an if, while, for or do statement that is still open, or the program.
+     * @param token the token to check
+     * @return true if it is an 'else' or 'end if' with an if statement open, an 'end loop' with a while or
+     *         for statement open, an 'until' with a do statement open, or an 'end' not followed by 'if' or 'loop'
+     * @throws IOException if an I/O error occurs while looking at the token after an 'end'
+     */
+    private boolean closesOuter(Token token) throws IOException
+    {
+        int closer;
+        switch (token.symbol)
+        {
+            case Token.elseSymbol:
+                closer = Token.ifSymbol;
+                break;
+            case Token.untilSymbol:
+                closer = Token.untilSymbol;
+                break;
+            case Token.endSymbol:
+                closer = peek().symbol;
+                if (closer != Token.ifSymbol && closer != Token.loopSymbol)
+                {
+                    return true;
+                }
+                break;
+            default:
+                return false;
+        }
+        for (int i = 0; i < open; i++)
+        {
+            if (closingSymbol(openStatements[i].symbol) == closer)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Puts an if, while, for or do statement on the stack of those being parsed.
+     * @param start the token the statement starts with
+     * @param stage how far it has got
+     */
+    private void openStatement(Token start, int stage)
+    {
+        if (open == openStatements.length)
+        {
+            openStatements = Arrays.copyOf(openStatements, open * 2);
+            reached = Arrays.copyOf(reached, open * 2);
+        }
+        openStatements[open] = start;
+        reached[open++] = stage;
+    }
+
+    /**
+     * Notes how far the innermost if, while, for or do statement has got, for error recovery.
+     * @param stage inBody once its header is accepted, closing once its 'end' or 'until' is
+     */
+    private void reach(int stage)
+    {
+        if (open > 0)
+        {
+            reached[open - 1] = stage;
+        }
+    }
+
+    /**
+     * Gives the symbol that closes a statement starting with the given symbol.
+     * @param symbol the symbol the statement starts with
+     * @return 'if' for an if statement, 'loop' for a while or for statement, 'until' for a do statement, or -1
+     */
+    private static int closingSymbol(int symbol)
+    {
+        switch(symbol)
+        {
+            case Token.ifSymbol:
+                return Token.ifSymbol;
+            case Token.whileSymbol:
+            case Token.forSymbol:
+                return Token.loopSymbol;
+            case Token.doSymbol:
+                return Token.untilSymbol;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Checks whether a symbol is in FIRST(statement), the symbols a statement can start with.
+     * @param symbol the symbol to check
+     * @return true if a statement can start with the symbol
+     */
+    private static boolean startsStatement(int symbol)
+    {
+        switch(symbol)
+        {
+            case Token.identifier:
+            case Token.whileSymbol:
+            case Token.ifSymbol:
+            case Token.callSymbol:
+            case Token.doSymbol:
+            case Token.forSymbol:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parses a single statement, following grammar rules <statement> ::= <assignment statement> | <if statement> | <while statement> | <procedure statement> | <until statement> | <for statement>.
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void statement() throws IOException, CompilationException
+    {
+        myGenerate.commenceNonterminal("Statement"); 
+        enterNesting();
+        boolean compound = closingSymbol(nextToken.symbol) != -1;
+        if (compound)
+        {
+            openStatement(nextToken, inHeader);
+        }
+        // use try and catch for matching the statement to token and handle error checking. 
+        try
+        {
+            switch(nextToken.symbol)
+            {
+                case Token.identifier:
+                        assignmentStatement();
+                        break;
+                    case Token.whileSymbol:
+                        whileStatement();
+                        break;
+                    case Token.ifSymbol:
+                        ifStatement();
+                        break;
+                    case Token.callSymbol:
+                        procedureStatement();
+                        break;
+                    case Token.doSymbol:
+                        untilStatement();
+                        break;
+                    case Token.forSymbol:
+                        forStatement();
+                        break;
+                default:
+                    // Defaults to an error if none of the symbols are matched
+                    myGenerate.reportError(nextToken, errorString(" ' IDENTIFIER ' , ' if ' , ' while ' , ' call ' , ' do ',  or ' for ' ", nextToken));
+            }
+        } 
+        catch (CompilationException e) 
+        {
+            throw new CompilationException(nonTerminalError(" statement ", nextToken), e);
+        }
+        finally
+        {
+            depth--;
+            if (compound)
+            {
+                open--;
+            }
+        }
+        myGenerate.finishNonterminal("Statement");
+    }
+
+    /**
+     * Parses an assignment statement, following grammar rules  <assignment statement> ::= identifier := <expression> | identifier := stringConstant.
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void assignmentStatement() throws IOException, CompilationException
+    {
+        myGenerate.commenceNonterminal("AssignmentStatement"); // Kept name together to avoid confusion in showing start and end
+        try
+        {
+            Token target = nextToken;
+            acceptTerminal(Token.identifier); // Accepts the identifier
+            acceptTerminal(Token.becomesSymbol);// Accepts the assignment operator
+            if (checkSemantics)
+            {
+                semantics.beginAssignment(target);
+            }
+            if (nextToken.symbol == Token.stringConstant)// Check if string Constant exists 
+            {
+                acceptTerminal(Token.stringConstant);
+                if (checkSemantics)
+                {
+                    semantics.stringValue();
+                }
+            }
+            else
+            {
+                expression(); // parses the expression
+            } 
+            if (checkSemantics)
+            {
+                semantics.endAssignment(); // the target only counts as assigned once its value is parsed
+            }
+        } 
+        catch (CompilationException e) 
+        {
+            throw new CompilationException(nonTerminalError(" Assignment Statement ", nextToken), e);
+        }
+        myGenerate.finishNonterminal("AssignmentStatement");
+    }
+
+    /**
+     * Parses an if statement following grammar <if statement> ::= if <condition> then <statement list> end if | if <condition> then <statement list> else <statement list> end if.
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void ifStatement() throws IOException, CompilationException
+    {
+        myGenerate.commenceNonterminal("IfStatement"); 
+        try
+        { 
+            acceptTerminal(Token.ifSymbol); //Accepts if symbol
+            condition(); // parse the conditions of if statement
+            acceptTerminal(Token.thenSymbol); //accept the then symbol
+            reach(inBody);
+            statementList(); // Parses statement list
+            if (nextToken.symbol == Token.elseSymbol)  //checks for else symbol exists then accept it
+            {
+                acceptTerminal(Token.elseSymbol); //Acccept else
+                statementList(); // parse statement list
+            }
+
+            acceptTerminal(Token.endSymbol); //Accept end symbol
+            reach(closing);
+            acceptTerminal(Token.ifSymbol); // Check for if to follow end to close statement
+        }   
+        catch (CompilationException e)
+        {
+            throw new CompilationException(nonTerminalError(" If Statement ", nextToken), e);
+        }
+        myGenerate.finishNonterminal("IfStatement");
+    }
+    
+    /**
+     * Parses a while statement, following grammar rules <while statement> ::= while <condition> loop <statement list> end loop.
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void whileStatement() throws IOException, CompilationException
+    {
+        myGenerate.commenceNonterminal("WhileStatement"); 
+        try 
+        {
+            acceptTerminal(Token.whileSymbol); // Accepts while symbol
+            condition();                       // Parses the condition for while loop
+            acceptTerminal(Token.loopSymbol);  // Accept loop symbol
+            reach(inBody);
+            statementList();                   // Parse statement list
+            acceptTerminal(Token.endSymbol);   // Accepts end
+            reach(closing);
+            acceptTerminal(Token.loopSymbol);  // Checks for loop behind 'end' to close loop
+        }
+        catch (CompilationException e)
+        {
+            throw new CompilationException(nonTerminalError(" While statement ", nextToken), e);
+        }   
+        myGenerate.finishNonterminal("WhileStatement");
+    }
+
+    /**
+     * Parses a procedure statement following grammar rules <procedure statement> ::= call identifier ( <argument list> ).
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void procedureStatement() throws IOException, CompilationException
+    {
+        myGenerate.commenceNonterminal("ProcedureStatement"); 
+        try
+        {
+            acceptTerminal(Token.callSymbol);   //Accepts call symbol
+            Token name = nextToken;
+            acceptTerminal(Token.identifier);   // Accepts identifier
+            if (checkSemantics)
+            {
+                semantics.call(name);
+            }
+            acceptTerminal(Token.leftParenthesis); // Accepts left paranthesis
+            argumentList();                     // Parse argument list
+            acceptTerminal(Token.rightParenthesis);// Accepts right paranthesis
+        } 
+        catch (CompilationException e) 
+        {
+            throw new CompilationException(nonTerminalError(" Procedure list ", nextToken), e);
+        }   
+        myGenerate.finishNonterminal("ProcedureStatement");
+    }
+
+    /**
+     * Parses an until statement, following grammar rules <until statement> ::= do <statement list> until <condition>.
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void untilStatement() throws IOException, CompilationException
+    {
+        myGenerate.commenceNonterminal("UntilStatement"); // Kept name together to avoid confusion in showing start and end
+        try
+        {
+            acceptTerminal(Token.doSymbol); // Accepts do symbol
+            reach(inBody);
+            statementList();                // Parse through statement list
+            acceptTerminal(Token.untilSymbol); // Accepts until symbol
+            reach(closing);
+            condition();                     // Parse condition for the loop
+        }
+        catch (CompilationException e) 
+        {
+            throw new CompilationException(nonTerminalError(" Until Statement ", nextToken), e);
+        } 
+        myGenerate.finishNonterminal("UntilStatement");
+    }
+    
+    /**
+     * Parses a for statement, following grammar rules <for statement> ::= for ( <assignment statement> ; <condition> ; <assignment statement> ) do <statement list> end loop.
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void forStatement() throws IOException, CompilationException
+    {
+        myGenerate.commenceNonterminal("ForStatement");
+        try{
+            acceptTerminal(Token.forSymbol); // Accept for symbol
+            acceptTerminal(Token.leftParenthesis); // Accept left paranthesis
+            assignmentStatement();              // Parse assignment statement
+            acceptTerminal(Token.semicolonSymbol); // Accepts the expected semicolon
+            condition();                          // parse condition
+            acceptTerminal(Token.semicolonSymbol); // Accept semi colon
+            assignmentStatement();                 // Parse assignment statement
+            acceptTerminal(Token.rightParenthesis); // accepts the right paranthesis
+            acceptTerminal(Token.doSymbol);        // accept do symbol
+            reach(inBody);
+            statementList();                      // parse statement list
+            acceptTerminal(Token.endSymbol); // Accepts the end symbol
+            reach(closing);
+            acceptTerminal(Token.loopSymbol); // Check for loop symbol to close loop
+        }
+        catch (CompilationException e) 
+        {
+            throw new CompilationException(nonTerminalError(" For Statement ", nextToken), e);
+        }   
+
+        myGenerate.finishNonterminal("ForStatement");
+    }
+
+    /**
+     * Parses an argument list, following grammar rules <argument list> ::= identifier |<argument list> , identifier.
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void argumentList() throws IOException, CompilationException
+    {
+        myGenerate.commenceNonterminal("ArgumentList"); 
+        try{
+            Token argument = nextToken;
+            acceptTerminal(Token.identifier);    // Accept first argument
+            if (checkSemantics)
+            {
+                semantics.argument(argument);
+            }
+            while (nextToken.symbol == Token.commaSymbol)
+            {
+                acceptTerminal(Token.commaSymbol); // Accepts comma
+                argumentList();                    // parse argument List recursively
+            }
+        }
+        catch (CompilationException e) 
+        {
+            throw new CompilationException(nonTerminalError(" Argument List ", nextToken), e);
+        }   
+        myGenerate.finishNonterminal("ArgumentList");
+    }
+
+    /**
+     * Parses a condition, following grammar rules <condition> ::= identifier <conditional operator> identifier | identifier <conditional operator> numberConstant | identifier <conditional operator> stringConstant.
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void condition() throws IOException, CompilationException
+    {
+        myGenerate.commenceNonterminal("Condition"); 
+        try 
+        {
+            Token left = nextToken;
+            acceptTerminal(Token.identifier); // Accepts identifier
+            if (checkSemantics)
+            {
+                semantics.condition(left);
+            }
+            conditionalOperator();  
+            switch(nextToken.symbol)         // switch statement to see which case is the next token
+            {
+                case Token.numberConstant:
+                    acceptTerminal((Token.numberConstant));
+                    break;
+                case Token.stringConstant:
+                    acceptTerminal(Token.stringConstant);
+                    break;
+                case Token.identifier:
+                    if (checkSemantics)
+                    {
+                        semantics.condition(nextToken);
+                    }
+                    acceptTerminal(Token.identifier);
+                    break;
+                default:
+                   // Prints error if none of the symbols match
+                    myGenerate.reportError(nextToken, errorString(" < identifer > , < number constant > or < string constant > ", nextToken));
+            }
+        } 
+        catch (CompilationException e) 
+        {
+            throw new CompilationException(nonTerminalError(" Condition ", nextToken), e);
+        }
+        myGenerate.finishNonterminal("Condition");
+
+    }
+
+    /**
+     * Parses a conditional operator, following grammar rules <conditional operator> ::= > | >= | = | /= | < | <=.
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void conditionalOperator() throws IOException, CompilationException
+    {
+        myGenerate.commenceNonterminal("ConditionalOperator"); 
+        try
+        {
+            switch(nextToken.symbol){// switch statement to see which case will be the next symbol it will then accept that token symbol
+                case Token.equalSymbol:
+                    acceptTerminal(Token.equalSymbol);
+                    break;
+                case Token.notEqualSymbol:
+                    acceptTerminal(Token.notEqualSymbol);
+                    break;
+                case Token.greaterThanSymbol:
+                    acceptTerminal(Token.greaterThanSymbol);
+                    break;
+                case Token.lessThanSymbol:
+                    acceptTerminal(Token.lessThanSymbol);
+                    break;
+                case Token.greaterEqualSymbol:
+                    acceptTerminal(Token.greaterEqualSymbol);
+                    break;
+                case Token.lessEqualSymbol:
+                    acceptTerminal(Token.lessEqualSymbol);
+                    break;
+                default:
+                    myGenerate.reportError(nextToken, errorString("  ' > '  , ' >= ' , ' = ' , ' /= ' , ' < ' or ' <= ' ", nextToken));
+            }
+        }
+        catch (CompilationException e) 
+        {
+            throw new CompilationException(nonTerminalError(" Conditional Operator ", nextToken), e);
+        } 
+        myGenerate.finishNonterminal("ConditionalOperator");
+    }
+
+    /**
+     * Parses an expression, following grammar rules <expression> ::= <term> | <expression> + <term> | <expression> - <term>.
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void expression() throws IOException, CompilationException{
+        myGenerate.commenceNonterminal("Expression"); // Kept name together to avoid confusion in showing start and end
+        try 
+        {
+            term();
+            // Checks if the + or - symbol exists and if it does accept the correct symbol and then call expression function
+            while (nextToken.symbol == Token.plusSymbol || nextToken.symbol == Token.minusSymbol) 
+            {
+                if (checkSemantics)
+                {
+                    semantics.arithmetic();
+                }
+                acceptTerminal(nextToken.symbol); // Accept the '+' or '-' symbol
+                expression(); // Handle the next Term recursively
+            }
+        }
+        catch (CompilationException e) 
+        {
+            throw new CompilationException(nonTerminalError(" Expression ", nextToken), e);
+        } 
+        myGenerate.finishNonterminal("Expression");
+    }
+
+    /**
+     * Parses a term, following grammar rules <term> ::= <factor> | <term> * <factor> | <term> / <factor> .
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void term() throws IOException, CompilationException
+    {
+        myGenerate.commenceNonterminal("Term"); // Kept name together to avoid confusion in showing start and end
+        try 
+        {
+            factor();
+            // Checks if the times symbol or divide symbol exists and if it does accept the correct symbol and then call term statement
+            while(nextToken.symbol == Token.timesSymbol || nextToken.symbol == Token.divideSymbol)
+            {
+                if (checkSemantics)
+                {
+                    semantics.arithmetic();
+                }
+                acceptTerminal(nextToken.symbol); // Accept the number or identifier
+                term(); // Handle the next Factor recursively
+            }
+        }
+        catch (CompilationException e) 
+        {
+            throw new CompilationException(nonTerminalError(" Term ", nextToken), e);
+        }
+        myGenerate.finishNonterminal("Term");
+    }
+
+    /**
+     * Parses a factor, following grammar rules <factor> ::= identifier | numberConstant | ( <expression> ).
+     * 
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws CompilationException if a compilation error occurs
+     */
+    public void factor() throws IOException, CompilationException
+    {
+        myGenerate.commenceNonterminal("Factor");
+        try
+        {
+            switch(nextToken.symbol) // switch cases to check the next token and default case for report error. 
+            {
+                case Token.identifier:
+                    if (checkSemantics)
+                    {
+                        semantics.operand(nextToken);
+                    }
+                    acceptTerminal(Token.identifier); // Handle identifier
+                    break;
+                case Token.numberConstant:
+                    acceptTerminal(Token.numberConstant); // Handler number Constant
+                    break;
+                case Token.leftParenthesis:
+                    enterNesting();
+                    try
+                    {
+                        acceptTerminal(Token.leftParenthesis); // handle Left Paranthesis
+                        expression();                          // parse expression
+                        acceptTerminal(Token.rightParenthesis); // close with right paranthesis
+                    }
+                    finally
+                    {
+                        depth--;
+                    }
+                    break;
+                default:
+                    // If none of the symbols match then an error is printed
+                    myGenerate.reportError(nextToken, errorString(" ' identifier ' , ' number constant ' , ' ( ' , ' ) ' ", nextToken));
+            }
+        }
+        catch (CompilationException e) 
+        {
+            throw new CompilationException(nonTerminalError(" Factor ", nextToken), e);
+        }
+        myGenerate.finishNonterminal("Factor");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,296 @@
+
+/**
+ *
+ * Micro-benchmarks for the lexical analyser, the syntax analyser and the
+ * error path.  Each benchmark is warmed up, then timed over several
+ * iterations, and reports throughput along with the bytes allocated by the
+ * benchmark thread.
+ *
+ * Run with "make bench".  Pass -compare FILE to print the change against a
+ * saved set of results such as bench/baseline.txt.
+ *
+ **/
+
+import java.io.* ;
+import java.lang.management.* ;
+import java.util.* ;
+
+public class Benchmarks
+{
+	/** How long to warm each benchmark up for, in milliseconds. */
+	private static final long warmupMillis = 1000 ;
+	/** How long each measured iteration runs for, in milliseconds. */
+	private static final long iterationMillis = 1000 ;
+	/** How many measured iterations to run. */
+	private static final int iterations = 5 ;
+
+	/** A generator that drops every event, so only the parse itself is timed. */
+	static class NullGenerate extends Generate
+	{
+		public void insertTerminal( Token token ) {}
+		public void commenceNonterminal( String name ) {}
+		public void finishNonterminal( String name ) {}
+		public void reportSuccess() {}
+	} // end of class NullGenerate
+
+	/** One unit of work to time. */
+	interface Operation
+	{
+		/** Runs the operation once.
+		  @return the number of tokens processed. */
+		long run() throws Exception ;
+	} // end of interface Operation
+
+	/** Keeps results alive so the JIT cannot throw the work away. */
+	static long sink ;
+
+	/** Somewhere to send output that should cost nothing to write. */
+	private static final PrintStream nowhere = new PrintStream( OutputStream.nullOutputStream() ) ;
+
+	private static final com.sun.management.ThreadMXBean threads =
+		(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean() ;
+
+	/** Writes a source file made by repeating some text.
+
+	  @param name The benchmark the file is for.
+	  @param head Text to put at the start.
+	  @param body Text to repeat.
+	  @param separator Text between repeats.
+	  @param count How many times to repeat the body.
+	  @param tail Text to put at the end.
+	  @return the path of the file.
+	*/
+	private static String source( String name, String head, String body, String separator, int count, String tail ) throws IOException
+	{
+		File f = File.createTempFile( "bench-" + name + "-", ".txt" ) ;
+		f.deleteOnExit() ;
+		try( Writer w = new BufferedWriter( new FileWriter( f ) ) )
+		{
+			w.write( head ) ;
+			for( int i = 0; i < count; i++ )
+			{
+				if( i > 0 )
+					w.write( separator ) ;
+				w.write( body ) ;
+			}
+			w.write( tail ) ;
+		}
+		return f.getPath() ;
+	} // end of method source
+
+	/** Lexes a whole file.
+
+	  @param fileName The file to lex.
+	  @return the number of tokens read, including EOF.
+	*/
+	static long lex( String fileName ) throws IOException
+	{
+		LexicalAnalyser lex = new LexicalAnalyser( fileName ) ;
+		long count = 0 ;
+		Token t ;
+		do
+		{
+			t = lex.getNextToken() ;
+			sink += t.symbol ;
+			count++ ;
+		}
+		while( t.symbol != Token.eofSymbol ) ;
+		return count ;
+	} // end of method lex
+
+	/** Parses a whole file.
+
+	  @param fileName The file to parse.
+	  @param generate The generator to use, or null for the default printing one.
+	  @return zero, as the parser does not count tokens.
+	*/
+	static long parse( String fileName, Generate generate ) throws IOException
+	{
+		SyntaxAnalyser syn = new SyntaxAnalyser( fileName ) ;
+		if( generate != null )
+			syn.setGenerate( generate ) ;
+		syn.parse( nowhere ) ;
+		sink += syn.errors.size() ;
+		return 0 ;
+	} // end of method parse
+
+	/** Parses a whole file with this thread's pooled analyser.
+
+	  @param fileName The file to parse.
+	  @param generate The generator to use.
+	  @return zero, as the parser does not count tokens.
+	*/
+	static long parsePooled( String fileName, Generate generate ) throws IOException
+	{
+		SyntaxAnalyser syn = AnalyserPool.forFile( fileName ) ;
+		syn.setGenerate( generate ) ;
+		syn.parse( nowhere ) ;
+		sink += syn.errors.size() ;
+		return 0 ;
+	} // end of method parsePooled
+
+	/** Parses a whole file with a fused analyser, kept from one run to the next.
+
+	  @param fused The analyser to use.
+	  @param fileName The file to parse.
+	  @param generate The generator to use.
+	  @return zero, as the parser does not count tokens.
+	*/
+	static long parseFused( FusedAnalyser fused, String fileName, Generate generate ) throws IOException
+	{
+		fused.reset( fileName ) ;
+		fused.setGenerate( generate ) ;
+		fused.parse( nowhere ) ;
+		sink += fused.errors.size() ;
+		return 0 ;
+	} // end of method parseFused
+
+	/** Times one benchmark and prints a line of results.
+
+	  @param name The benchmark name.
+	  @param op The work to time.
+	  @param tokensPerOp Tokens processed by one run, for the tokens/s column.
+	  @param baseline Earlier ops/s results by name, or null.
+	*/
+	private static void measure( String name, Operation op, long tokensPerOp, Map<String, Double> baseline ) throws Exception
+	{
+		long end = System.nanoTime() + warmupMillis * 1000000L ;
+		while( System.nanoTime() - end < 0 )
+			op.run() ;
+
+		long thread = Thread.currentThread().getId() ;
+		double[] rates = new double[iterations] ;
+		long totalOps = 0, totalNanos = 0, totalBytes = 0 ;
+		for( int i = 0; i < iterations; i++ )
+		{
+			long ops = 0 ;
+			long bytes = threads.getThreadAllocatedBytes( thread ) ;
+			long start = System.nanoTime() ;
+			end = start + iterationMillis * 1000000L ;
+			long now ;
+			do
+			{
+				op.run() ;
+				ops++ ;
+				now = System.nanoTime() ;
+			}
+			while( now - end < 0 ) ;
+			totalBytes += threads.getThreadAllocatedBytes( thread ) - bytes ;
+			totalOps += ops ;
+			totalNanos += now - start ;
+			rates[i] = ops * 1e9 / ( now - start ) ;
+		}
+
+		double mean = totalOps * 1e9 / totalNanos ;
+		double spread = 0 ;
+		for( double r : rates )
+			spread = Math.max( spread, Math.abs( r - mean ) ) ;
+		double seconds = totalNanos / 1e9 ;
+
+		String line = String.format( "%-22s %12.1f %9.1f %14.0f %10.1f %12.0f",
+			name, mean, spread, mean * tokensPerOp,
+			totalBytes / seconds / ( 1024 * 1024 ), (double) totalBytes / totalOps ) ;
+		if( baseline != null && baseline.containsKey( name ) )
+			line += String.format( " %+8.1f%%", ( mean / baseline.get( name ) - 1 ) * 100 ) ;
+		System.out.println( line ) ;
+	} // end of method measure
+
+	/** Reads ops/s figures from an earlier run's output.
+
+	  @param fileName The saved results.
+	  @return ops/s by benchmark name.
+	*/
+	private static Map<String, Double> readBaseline( String fileName ) throws IOException
+	{
+		Map<String, Double> results = new HashMap<String, Double>() ;
+		try( BufferedReader in = new BufferedReader( new FileReader( fileName ) ) )
+		{
+			String line ;
+			while( ( line = in.readLine() ) != null )
+			{
+				if( line.startsWith( "#" ) || line.trim().isEmpty() )
+					continue ;
+				String[] fields = line.trim().split( "\\s+" ) ;
+				results.put( fields[0], Double.parseDouble( fields[1] ) ) ;
+			}
+		}
+		return results ;
+	} // end of method readBaseline
+
+	public static void main( String[] args ) throws Exception
+	{
+		Map<String, Double> baseline = null ;
+		if( args.length == 2 && args[0].equals( "-compare" ) )
+			baseline = readBaseline( args[1] ) ;
+
+		final String keywords = source( "keywords", "",
+			"begin end if then else while loop do until for call procedure is integer float string\n", "", 2000, "" ) ;
+		final String identifiers = source( "identifiers", "",
+			"alpha1 beta22 gamma333 deltaValue epsilonCount zetaIndex etaTotal thetaX\n", "", 2000, "" ) ;
+		final String comments = source( "comments", "",
+			"x := 1 -- a fairly long comment that the lexer has to skip over\n", "", 2000, "" ) ;
+		final String numbers = source( "numbers", "",
+			"12345 3.14159 42 0.5 987654321 7.0 100 2.75\n", "", 2000, "" ) ;
+
+		String statements = "call get(x1) ;\nx2 := 1 ;\n"
+			+ "while x1 /= 0 loop\n\tx2 := x2 * x1 ;\n\tx1 := x1 - 1\nend loop ;\n"
+			+ "if x2 > 100 then\n\ttext := \"big\"\nelse\n\ttext := \"small\"\nend if ;\n"
+			+ "for ( i := 0 ; i < 10 ; i := i + 1 ) do\n\ty := ( a + b ) * c / 2\nend loop ;\n"
+			+ "call put(text, x2)" ;
+		final String program = source( "program", "begin\n", statements, " ;\n", 100, "\nend\n" ) ;
+		// the error comes at the very end, so it unwinds through every level of the statement list
+		final String broken = source( "broken", "begin\n", statements, " ;\n", 100, " ;\nx := := 1\nend\n" ) ;
+		// most programs in a batch are this small, so setting up the analysers is most of the cost
+		final String tiny = source( "tiny", "begin\n", "x := 1", "", 1, "\nend\n" ) ;
+
+		System.out.println( "# " + System.getProperty( "java.vm.name" ) + " " + System.getProperty( "java.version" )
+			+ ", " + iterations + " x " + iterationMillis + " ms after " + warmupMillis + " ms warm-up" ) ;
+		System.out.println( String.format( "# %-20s %12s %9s %14s %10s %12s", "benchmark", "ops/s", "+/-", "tokens/s", "alloc MB/s", "alloc B/op" ) ) ;
+
+		PrintStream stdout = System.out ;
+		measure( "lex.keywords", () -> lex( keywords ), lex( keywords ), baseline ) ;
+		measure( "lex.identifiers", () -> lex( identifiers ), lex( identifiers ), baseline ) ;
+		measure( "lex.comments", () -> lex( comments ), lex( comments ), baseline ) ;
+		measure( "lex.numbers", () -> lex( numbers ), lex( numbers ), baseline ) ;
+		final Generate quiet = new NullGenerate() ;
+		measure( "parse.nullGenerate", () -> parse( program, quiet ), lex( program ), baseline ) ;
+		// the same program with the scanner folded into the parser, then with only the outcome wanted
+		final FusedAnalyser fused = new FusedAnalyser(), validating = new FusedAnalyser() ;
+		validating.setValidateOnly( true ) ;
+		measure( "parse.fused", () -> parseFused( fused, program, quiet ), lex( program ), baseline ) ;
+		measure( "parse.fusedValidate", () -> parseFused( validating, program, quiet ), lex( program ), baseline ) ;
+		measure( "parse.errorPath", () -> parse( broken, quiet ), lex( broken ), baseline ) ;
+		measure( "parse.tinyFile", () -> parse( tiny, quiet ), lex( tiny ), baseline ) ;
+		measure( "parse.tinyPooled", () -> parsePooled( tiny, quiet ), lex( tiny ), baseline ) ;
+		// the printing generator writes to System.out, so send that nowhere while it is timed
+		Operation printing = () -> {
+			System.setOut( nowhere ) ;
+			try {
+				return parse( program, null ) ;
+			} finally {
+				System.setOut( stdout ) ;
+			}
+		} ;
+		measure( "parse.printGenerate", printing, lex( program ), baseline ) ;
+		// the table outlives each parse, as it does over a corpus, so after the first every subtree is found in it
+		final SharedTree.Builder shared = new SharedTree.Builder( new SharedTree(), null ) ;
+		measure( "parse.sharedTree", () -> { shared.clear() ; return parse( program, shared ) ; }, lex( program ), baseline ) ;
+
+		// the factorial loop from program5, with its "end loop" put right; the tokens column counts loop iterations
+		final String factorial = source( "factorial", "begin\n",
+			"call get(x1) ;\nx2 := 1 ;\nwhile x1 /= 0 loop\n\tx2 := x2 * x1 ;\n\tx1 := x1 - 1\nend loop ;\ncall put(x2)", "", 1, "\nend\n" ) ;
+		// compiled to bytecode and interpreted, against compiled on to a JVM class
+		final RegisterMachine machine = new RegisterMachine( BytecodeCompiler.compile( factorial ) ) ;
+		final long loops = 1000000 ;
+		final RegisterMachine.Io io = new RegisterMachine.Io() {
+			public double get() { return loops ; }
+			public void put( double value ) { sink += (long) value ; }
+			public void put( String value ) {}
+		} ;
+		measure( "vm.factorial", () -> { machine.run( io ) ; return loops ; }, loops, baseline ) ;
+		final JvmCompiler.Compiled jitted = JvmCompiler.load( factorial ) ;
+		measure( "jit.factorial", () -> { jitted.run( io ) ; return loops ; }, loops, baseline ) ;
+		// a cache hit still reads and hashes the file
+		measure( "jit.load", () -> { JvmCompiler.load( factorial ) ; return 0 ; }, 0, baseline ) ;
+	} // end of main method
+} // end of class Benchmarks
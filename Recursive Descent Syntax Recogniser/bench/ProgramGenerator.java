@@ -0,0 +1,309 @@
+
+/**
+ *
+ * Seeded generator of programs for the grammar recognised by SyntaxAnalyser,
+ * for benchmarks and scaling runs.  The same seed and settings always give
+ * the same program.
+ *
+ * Until statements are not generated, so that a seed still gives the programs
+ * the benchmark baseline was measured on.
+ *
+ * Broken statements can be injected at random; the line of each one is
+ * recorded, numbered the way LexicalAnalyser numbers lines, so a run can be
+ * checked against the errors it should report.
+ *
+ **/
+
+import java.io.* ;
+import java.util.* ;
+
+public class ProgramGenerator
+{
+	/** How many statements to put in the top level statement list. */
+	public int statements = 100 ;
+	/** How deeply if, while and for statements may nest. */
+	public int maxDepth = 3 ;
+	/** The most operands in one expression. */
+	public int expressionLength = 4 ;
+	/** The chance that a line ends with a comment. */
+	public double commentDensity = 0.2 ;
+	/** How many different identifiers to use. */
+	public int vocabulary = 50 ;
+	/** The chance that a top level statement is replaced by a broken one. */
+	public double errorRate = 0 ;
+
+	private static final String[] conditionalOperators = { "=", "/=", "<", ">", "<=", ">=" } ;
+	private static final String[] arithmeticOperators = { "+", "-", "*", "/" } ;
+	/** Broken statements.  Each goes wrong on its own line, so the error is reported there,
+	  and none contains 'end', so error recovery picks up again at the next ';'. */
+	private static final String[] brokenStatements = {
+		"v0 := := 1",
+		"if v0 > then v1 := 1",
+		"call put(v0 v1)",
+		"while v0 loop v1 := 1",
+		"v0 := 1 + * 2"
+	} ;
+
+	private final Random random ;
+	/** Lines the broken statements were written on. */
+	private final List<Integer> errorLines = new ArrayList<Integer>() ;
+
+	/** Output waiting to be written. */
+	private final StringBuilder buffer = new StringBuilder() ;
+	private Writer out ;
+	/** The number of the line being written, as LexicalAnalyser would count it. */
+	private int line ;
+	private long written ;
+
+	/** Creates a generator.
+
+	  @param seed The seed for the random choices.
+	*/
+	public ProgramGenerator( long seed )
+	{
+		random = new Random( seed ) ;
+	} // end of constructor method
+
+	/** @return the lines of the broken statements in the last program written. */
+	public List<Integer> getErrorLines()
+	{
+		return errorLines ;
+	} // end of method getErrorLines
+
+	/** Writes a program.
+
+	  @param w Where to write it.
+	  @param targetSize Keep adding top level statements until the program is at least this many characters, or zero to write exactly 'statements' of them.
+	  @return the number of characters written.
+	*/
+	public long write( Writer w, long targetSize ) throws IOException
+	{
+		out = w ;
+		line = 0 ;
+		written = 0 ;
+		errorLines.clear() ;
+
+		// the lexer counts from line 0, so start with a blank line like the sample programs
+		newline() ;
+		emit( "begin" ) ;
+		newline() ;
+		for( int i = 0; targetSize > 0 ? written + buffer.length() < targetSize : i < statements; i++ )
+		{
+			if( i > 0 )
+				endLine( " ;" ) ;
+			if( random.nextDouble() < errorRate )
+			{
+				errorLines.add( line ) ;
+				emit( brokenStatements[random.nextInt( brokenStatements.length )] ) ;
+			}
+			else
+				statement( 0 ) ;
+		}
+		endLine( "" ) ;
+		emit( "end" ) ;
+		newline() ;
+		flush() ;
+		return written ;
+	} // end of method write
+
+	/** Writes a program to a file.
+
+	  @param f The file to write.
+	  @param targetSize As for write.
+	  @return the number of characters written.
+	*/
+	public long writeFile( File f, long targetSize ) throws IOException
+	{
+		try( Writer w = new BufferedWriter( new FileWriter( f ), 1 << 16 ) )
+		{
+			return write( w, targetSize ) ;
+		}
+	} // end of method writeFile
+
+	private void emit( String s ) throws IOException
+	{
+		buffer.append( s ) ;
+		if( buffer.length() >= 1 << 16 )
+			flush() ;
+	} // end of method emit
+
+	private void flush() throws IOException
+	{
+		written += buffer.length() ;
+		out.write( buffer.toString() ) ;
+		buffer.setLength( 0 ) ;
+	} // end of method flush
+
+	private void newline() throws IOException
+	{
+		emit( "\n" ) ;
+		line++ ;
+	} // end of method newline
+
+	/** Finishes a line with a separator and perhaps a comment. */
+	private void endLine( String separator ) throws IOException
+	{
+		emit( separator ) ;
+		if( random.nextDouble() < commentDensity )
+			emit( "\t-- " + comment() ) ;
+		newline() ;
+	} // end of method endLine
+
+	private void indent( int depth ) throws IOException
+	{
+		for( int i = 0; i <= depth; i++ )
+			emit( "\t" ) ;
+	} // end of method indent
+
+	private String identifier()
+	{
+		return "v" + random.nextInt( vocabulary ) ;
+	} // end of method identifier
+
+	private String number()
+	{
+		if( random.nextInt( 4 ) == 0 )
+			return random.nextInt( 1000 ) + "." + random.nextInt( 100 ) ;
+		return Integer.toString( random.nextInt( 10000 ) ) ;
+	} // end of method number
+
+	private String string()
+	{
+		return "\"text " + random.nextInt( 1000 ) + "\"" ;
+	} // end of method string
+
+	private String comment()
+	{
+		return "note " + random.nextInt( 1000 ) + " about " + identifier() ;
+	} // end of method comment
+
+	/** Writes one statement, leaving the line open for a separator. */
+	private void statement( int depth ) throws IOException
+	{
+		indent( depth ) ;
+		int kind = random.nextInt( depth < maxDepth ? 10 : 6 ) ;
+		if( kind < 4 )
+			emit( assignment() ) ;
+		else if( kind < 6 )
+			emit( "call " + ( random.nextBoolean() ? "get" : "put" ) + "(" + argumentList() + ")" ) ;
+		else if( kind < 8 )
+		{
+			emit( "if " + condition() + " then" ) ;
+			newline() ;
+			statementList( depth + 1 ) ;
+			if( random.nextBoolean() )
+			{
+				indent( depth ) ;
+				emit( "else" ) ;
+				newline() ;
+				statementList( depth + 1 ) ;
+			}
+			indent( depth ) ;
+			emit( "end if" ) ;
+		}
+		else if( kind == 8 )
+		{
+			emit( "while " + condition() + " loop" ) ;
+			newline() ;
+			statementList( depth + 1 ) ;
+			indent( depth ) ;
+			emit( "end loop" ) ;
+		}
+		else
+		{
+			emit( "for ( " + assignment() + " ; " + condition() + " ; " + assignment() + " ) do" ) ;
+			newline() ;
+			statementList( depth + 1 ) ;
+			indent( depth ) ;
+			emit( "end loop" ) ;
+		}
+	} // end of method statement
+
+	/** Writes a short statement list, each statement ending its own line. */
+	private void statementList( int depth ) throws IOException
+	{
+		int count = 1 + random.nextInt( 3 ) ;
+		for( int i = 0; i < count; i++ )
+		{
+			statement( depth ) ;
+			endLine( i < count - 1 ? " ;" : "" ) ;
+		}
+	} // end of method statementList
+
+	private String assignment()
+	{
+		if( random.nextInt( 10 ) == 0 )
+			return identifier() + " := " + string() ;
+		return identifier() + " := " + expression( 1 + random.nextInt( expressionLength ), 0 ) ;
+	} // end of method assignment
+
+	private String expression( int operands, int brackets )
+	{
+		StringBuilder e = new StringBuilder() ;
+		for( int i = 0; i < operands; i++ )
+		{
+			if( i > 0 )
+				e.append( ' ' ).append( arithmeticOperators[random.nextInt( arithmeticOperators.length )] ).append( ' ' ) ;
+			if( operands > 1 && brackets < 2 && random.nextInt( 8 ) == 0 )
+				e.append( "( " ).append( expression( 1 + random.nextInt( operands ), brackets + 1 ) ).append( " )" ) ;
+			else if( random.nextBoolean() )
+				e.append( identifier() ) ;
+			else
+				e.append( number() ) ;
+		}
+		return e.toString() ;
+	} // end of method expression
+
+	private String condition()
+	{
+		String right ;
+		switch( random.nextInt( 3 ) )
+		{
+			case 0 : right = identifier() ; break ;
+			case 1 : right = number() ; break ;
+			default : right = string() ;
+		}
+		return identifier() + " " + conditionalOperators[random.nextInt( conditionalOperators.length )] + " " + right ;
+	} // end of method condition
+
+	private String argumentList()
+	{
+		String args = identifier() ;
+		for( int n = random.nextInt( 3 ); n > 0; n-- )
+			args += ", " + identifier() ;
+		return args ;
+	} // end of method argumentList
+
+	/** Writes a program to standard output, and the lines of any injected errors to standard error. */
+	public static void main( String[] args ) throws IOException
+	{
+		long seed = 312, size = 0 ;
+		ProgramGenerator g ;
+		Map<String, String> options = new HashMap<String, String>() ;
+		for( int i = 0; i + 1 < args.length; i += 2 )
+			options.put( args[i], args[i + 1] ) ;
+		if( options.containsKey( "-seed" ) )
+			seed = Long.parseLong( options.get( "-seed" ) ) ;
+		g = new ProgramGenerator( seed ) ;
+		if( options.containsKey( "-statements" ) )
+			g.statements = Integer.parseInt( options.get( "-statements" ) ) ;
+		if( options.containsKey( "-depth" ) )
+			g.maxDepth = Integer.parseInt( options.get( "-depth" ) ) ;
+		if( options.containsKey( "-exprlen" ) )
+			g.expressionLength = Integer.parseInt( options.get( "-exprlen" ) ) ;
+		if( options.containsKey( "-comments" ) )
+			g.commentDensity = Double.parseDouble( options.get( "-comments" ) ) ;
+		if( options.containsKey( "-vocab" ) )
+			g.vocabulary = Integer.parseInt( options.get( "-vocab" ) ) ;
+		if( options.containsKey( "-errors" ) )
+			g.errorRate = Double.parseDouble( options.get( "-errors" ) ) ;
+		if( options.containsKey( "-size" ) )
+			size = Long.parseLong( options.get( "-size" ) ) ;
+
+		Writer w = new BufferedWriter( new OutputStreamWriter( System.out ) ) ;
+		g.write( w, size ) ;
+		w.flush() ;
+		for( int errorLine : g.getErrorLines() )
+			System.err.println( "error on line " + errorLine ) ;
+	} // end of main method
+} // end of class ProgramGenerator
@@ -0,0 +1,193 @@
+
+/**
+ *
+ * Scaling runs for the recogniser.  Generates programs of increasing size
+ * with ProgramGenerator, lexes and parses each one, and reports throughput,
+ * peak heap and the deepest nonterminal nesting reached against input size.
+ * Time per byte is compared with the smallest size to show whether the work
+ * grows linearly.  The generator's injected errors are checked against what
+ * the parser reports at the smallest size.
+ *
+ * Run with "make scaling", or "make scaling SIZES=1,10,100,1000" for sizes
+ * in megabytes.
+ *
+ **/
+
+import java.io.* ;
+import java.lang.management.* ;
+import java.util.* ;
+
+public class ScalingSuite
+{
+	/** Time per byte may grow by this much over the smallest size and still count as linear. */
+	private static final double linearTolerance = 1.5 ;
+	/** Stack to give the parsing thread, since the statement list recurses once per statement. */
+	private static final long parserStack = 1L << 30 ;
+
+	/** Drops events, but remembers the deepest nesting of nonterminals seen. */
+	static class DepthGenerate extends Generate
+	{
+		int depth, maxDepth ;
+
+		public void insertTerminal( Token token ) {}
+		public void commenceNonterminal( String name )
+		{
+			if( ++depth > maxDepth )
+				maxDepth = depth ;
+		}
+		public void finishNonterminal( String name )
+		{
+			depth-- ;
+		}
+		public void reportSuccess() {}
+	} // end of class DepthGenerate
+
+	/** The results for one size. */
+	static class Result
+	{
+		long bytes, tokens, lexNanos, parseNanos, peakHeap ;
+		int maxDepth ;
+		String outcome ;
+	} // end of class Result
+
+	/** @return the sum of the peak usage of every heap pool since the peaks were last reset. */
+	private static long peakHeap()
+	{
+		long peak = 0 ;
+		for( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+			if( pool.getType() == MemoryType.HEAP )
+				peak += pool.getPeakUsage().getUsed() ;
+		return peak ;
+	} // end of method peakHeap
+
+	private static void resetPeakHeap()
+	{
+		System.gc() ;
+		for( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+			if( pool.getType() == MemoryType.HEAP )
+				pool.resetPeakUsage() ;
+	} // end of method resetPeakHeap
+
+	/** Lexes and parses one file, on a thread with a large stack.
+
+	  @param fileName The program to run.
+	  @param recover Whether to collect every error rather than stop at the first.
+	  @param syntaxErrors Filled with the errors the parser reports.
+	  @return the measurements.
+	*/
+	static Result run( final String fileName, final boolean recover, final List<CompilationException> syntaxErrors ) throws Exception
+	{
+		final Result r = new Result() ;
+		r.bytes = new File( fileName ).length() ;
+		final Throwable[] failure = new Throwable[1] ;
+		Runnable work = () -> {
+			try
+			{
+				long start = System.nanoTime() ;
+				LexicalAnalyser lex = new LexicalAnalyser( fileName ) ;
+				while( lex.getNextToken().symbol != Token.eofSymbol )
+					r.tokens++ ;
+				r.lexNanos = System.nanoTime() - start ;
+
+				resetPeakHeap() ;
+				DepthGenerate generate = new DepthGenerate() ;
+				SyntaxAnalyser syn = new SyntaxAnalyser( fileName ) ;
+				syn.setGenerate( generate ) ;
+				if( recover )
+					syn.setErrorRecovery( Integer.MAX_VALUE ) ;
+				start = System.nanoTime() ;
+				syn.parse( new PrintStream( OutputStream.nullOutputStream() ) ) ;
+				r.parseNanos = System.nanoTime() - start ;
+				r.peakHeap = peakHeap() ;
+				r.maxDepth = generate.maxDepth ;
+				r.outcome = syn.errors.isEmpty() ? "ok" : syn.errors.size() + " errors" ;
+				if( syntaxErrors != null )
+					syntaxErrors.addAll( syn.errors ) ;
+			}
+			catch( StackOverflowError e )
+			{
+				r.outcome = "stack overflow" ;
+			}
+			catch( Throwable e )
+			{
+				failure[0] = e ;
+			}
+		} ;
+		Thread t = new Thread( null, work, "scaling", parserStack ) ;
+		t.start() ;
+		t.join() ;
+		if( failure[0] instanceof Exception )
+			throw (Exception) failure[0] ;
+		if( failure[0] != null )
+			throw new RuntimeException( failure[0] ) ;
+		return r ;
+	} // end of method run
+
+	/** Checks that each injected error is reported on the line it was injected at. */
+	private static void checkErrors( File dir ) throws Exception
+	{
+		ProgramGenerator g = new ProgramGenerator( 312 ) ;
+		g.statements = 500 ;
+		g.errorRate = 0.02 ;
+		File f = new File( dir, "errors.txt" ) ;
+		g.writeFile( f, 0 ) ;
+		List<CompilationException> reported = new ArrayList<CompilationException>() ;
+		run( f.getPath(), true, reported ) ;
+
+		List<Integer> found = new ArrayList<Integer>() ;
+		for( CompilationException ex : reported )
+		{
+			Throwable root = ex ;
+			while( root.getCause() != null )
+				root = root.getCause() ;
+			String message = root.getMessage() ;
+			if( message.startsWith( "Error at line " ) )
+				found.add( Integer.parseInt( message.substring( 14, message.indexOf( ' ', 14 ) ) ) ) ;
+		}
+		boolean match = found.equals( g.getErrorLines() ) ;
+		System.out.println( "# injected errors on lines " + g.getErrorLines() ) ;
+		System.out.println( "# reported errors on lines " + found + ( match ? " - match" : " - MISMATCH" ) ) ;
+		f.delete() ;
+	} // end of method checkErrors
+
+	public static void main( String[] args ) throws Exception
+	{
+		String sizes = args.length > 0 ? args[0] : "1,10,100" ;
+		File dir = new File( System.getProperty( "java.io.tmpdir" ) ) ;
+
+		// warm the JIT up so the smallest size is not timed cold
+		ProgramGenerator warm = new ProgramGenerator( 1 ) ;
+		File warmFile = new File( dir, "scaling-warmup.txt" ) ;
+		warm.writeFile( warmFile, 1 << 20 ) ;
+		for( int i = 0; i < 5; i++ )
+			run( warmFile.getPath(), false, null ) ;
+		warmFile.delete() ;
+
+		checkErrors( dir ) ;
+
+		System.out.println( String.format( "# %-10s %12s %10s %10s %12s %10s %10s  %s",
+			"MB", "tokens", "lex MB/s", "parse MB/s", "peak heap MB", "max depth", "ns/byte", "outcome" ) ) ;
+		double firstNanosPerByte = 0 ;
+		boolean linear = true ;
+		for( String size : sizes.split( "," ) )
+		{
+			long bytes = Long.parseLong( size.trim() ) << 20 ;
+			File f = new File( dir, "scaling-" + size.trim() + "MB.txt" ) ;
+			new ProgramGenerator( 312 ).writeFile( f, bytes ) ;
+			Result r = run( f.getPath(), false, null ) ;
+			f.delete() ;
+
+			double mb = r.bytes / ( 1024.0 * 1024.0 ) ;
+			double nanosPerByte = (double) ( r.lexNanos + r.parseNanos ) / r.bytes ;
+			if( firstNanosPerByte == 0 )
+				firstNanosPerByte = nanosPerByte ;
+			else if( nanosPerByte > firstNanosPerByte * linearTolerance )
+				linear = false ;
+			System.out.println( String.format( "%-12.1f %12d %10.1f %10.1f %12.1f %10d %10.2f  %s",
+				mb, r.tokens, mb * 1e9 / r.lexNanos, mb * 1e9 / r.parseNanos,
+				r.peakHeap / ( 1024.0 * 1024.0 ), r.maxDepth, nanosPerByte, r.outcome ) ) ;
+		}
+		System.out.println( linear ? "# time per byte stayed within " + linearTolerance + "x of the smallest size"
+			: "# NOT LINEAR: time per byte grew more than " + linearTolerance + "x" ) ;
+	} // end of main method
+} // end of class ScalingSuite